@@ -0,0 +1,170 @@
+package com.example.cryptocoin;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scrolls a 5,000 row list one step per frame on a device, reporting frame times and the
+ * allocations made on the main thread while scrolling. Results are logged under "ListScroll"
+ * and sent as instrumentation status, so they show up in the test output
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListScrollTest {
+
+    private static final String TAG = "ListScroll";
+    private static final int ROWS = 5000;
+    // the longest the scroll may run for, in frames
+    private static final int MAX_FRAMES = 3000;
+
+    private RecyclerView recyclerView;
+    private CryptoListAdapter adapter;
+    private final long[] frameNanos = new long[MAX_FRAMES];
+    private int frames;
+    private long allocations;
+    private long allocatedBytes;
+
+    @Test
+    public void scrollingFiveThousandRows_reportsFrameTimesAndAllocations() throws Exception {
+        final CryptoRows rows = rows();
+        final CountDownLatch scrolled = new CountDownLatch(1);
+
+        // a plain activity hosts the list, so no refresh or error screen gets in the way
+        ActivityScenario<ErrorPage> scenario = ActivityScenario.launch(ErrorPage.class);
+        scenario.onActivity(new ActivityScenario.ActivityAction<ErrorPage>() {
+            @Override
+            public void perform(ErrorPage activity) {
+                recyclerView = new RecyclerView(activity);
+                adapter = new CryptoListAdapter(activity, rows);
+                CryptoListActivity.setUpRecyclerView(recyclerView, adapter);
+                activity.setContentView(recyclerView);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        scenario.onActivity(new ActivityScenario.ActivityAction<ErrorPage>() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void perform(ErrorPage activity) {
+                // about a quarter of a screen a frame, the pace of a quick fling
+                final int step = Math.max(1, recyclerView.getHeight() / 4);
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private long lastFrame;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (lastFrame != 0) {
+                            frameNanos[frames++] = frameTimeNanos - lastFrame;
+                        }
+                        lastFrame = frameTimeNanos;
+                        if (frames == MAX_FRAMES || !recyclerView.canScrollVertically(1)) {
+                            Debug.stopAllocCounting();
+                            allocations = Debug.getThreadAllocCount();
+                            allocatedBytes = Debug.getThreadAllocSize();
+                            scrolled.countDown();
+                            return;
+                        }
+                        recyclerView.scrollBy(0, step);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+        assertTrue("scrolling timed out", scrolled.await(3, TimeUnit.MINUTES));
+
+        final int[] lastRow = new int[1];
+        final long[] rebindAllocations = new long[1];
+        final HashSet<Long> ids = new HashSet<>();
+        scenario.onActivity(new ActivityScenario.ActivityAction<ErrorPage>() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void perform(ErrorPage activity) {
+                lastRow[0] = ((LinearLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+
+                // binding a row to what it already shows must not allocate anything
+                CryptoListAdapter.CryptoViewHolder holder = adapter.createViewHolder(recyclerView, 0);
+                adapter.onBindViewHolder(holder, 0);
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                for (int i = 0; i < ROWS; i++) {
+                    adapter.onBindViewHolder(holder, 0);
+                }
+                Debug.stopAllocCounting();
+                rebindAllocations[0] = Debug.getThreadAllocCount();
+
+                for (int i = 0; i < ROWS; i++) {
+                    ids.add(adapter.getItemId(i));
+                }
+            }
+        });
+        scenario.close();
+
+        report(lastRow[0], rebindAllocations[0]);
+        assertTrue("scrolled to row " + lastRow[0], frames == MAX_FRAMES || lastRow[0] == ROWS - 1);
+        assertEquals(0, rebindAllocations[0]);
+        assertEquals(ROWS, ids.size());
+    }
+
+    private void report(int lastRow, long rebindAllocations) {
+        long[] sorted = Arrays.copyOf(frameNanos, frames);
+        Arrays.sort(sorted);
+        long median = percentile(sorted, 0.5);
+        // a frame that took more than one and a half of the usual interval missed a vsync
+        int janky = 0;
+        for (long nanos : sorted) {
+            if (nanos * 2 > median * 3) {
+                janky++;
+            }
+        }
+
+        Bundle results = new Bundle();
+        results.putInt("frames", frames);
+        results.putInt("rowsScrolled", lastRow + 1);
+        results.putDouble("frameMedianMs", median / 1e6);
+        results.putDouble("frameP90Ms", percentile(sorted, 0.9) / 1e6);
+        results.putDouble("frameP99Ms", percentile(sorted, 0.99) / 1e6);
+        results.putDouble("frameMaxMs", frames == 0 ? 0 : sorted[frames - 1] / 1e6);
+        results.putInt("jankyFrames", janky);
+        results.putLong("mainThreadAllocations", allocations);
+        results.putLong("mainThreadAllocatedBytes", allocatedBytes);
+        results.putDouble("allocationsPerRow", lastRow < 0 ? 0 : (double) allocations / (lastRow + 1));
+        results.putLong("rebindAllocations", rebindAllocations);
+        Log.i(TAG, results.toString());
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static CryptoRows rows() {
+        Crypto[] cryptos = new Crypto[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            String change = (i % 3 == 0 ? "-" : "") + (i % 100) + "." + (i % 7);
+            cryptos[i] = new Crypto(String.valueOf(i + 1), "C" + i, "Coin " + i, (i + 1) + ".25", change, "0");
+        }
+        return new CryptoArrayRows(cryptos);
+    }
+}
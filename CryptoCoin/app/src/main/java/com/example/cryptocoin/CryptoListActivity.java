@@ -4,48 +4,285 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Color;
+import android.graphics.Typeface;
 import android.os.Bundle;
-import android.text.TextUtils;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.text.format.DateUtils;
+import android.view.Gravity;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
-import androidx.loader.app.LoaderManager;
-import androidx.loader.content.AsyncTaskLoader;
-import androidx.loader.content.Loader;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import androidx.recyclerview.widget.SimpleItemAnimator;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main Activity
  */
-public class CryptoListActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<String> {
+public class CryptoListActivity extends AppCompatActivity implements TickerRepository.Listener {
+
+    // metrics are switched on before the clients below are built, and only in debug builds
+    static {
+        Metrics.setEnabled(BuildConfig.DEBUG);
+    }
 
     // set constant for API url
     private static final String API_BASE_URL = "https://api.coinlore.net/api/tickers/";
-
-    // set ID for loader
-    private static final int API_SEARCH_LOADER_ID = 17;
+    private static final String COIN_URL = "https://api.coinlore.net/api/ticker/";
+    // how long single coin requests are collected before they are sent as one
+    private static final long COIN_FETCH_WINDOW_MILLIS = 50;
+
+    // how long a page may take before it is asked for again, until real latencies are known
+    private static final long DEFAULT_HEDGE_MILLIS = 2000;
+
+    // coins fetched per request, and the most the list will ever hold
+    private static final int PAGE_SIZE = TickerPager.MAX_PAGE_SIZE;
+    private static final int MAX_COINS = 10000;
+    // validators kept by the list's fetchers: one per page, with room for a shorter last page
+    private static final int PAGE_URLS = (MAX_COINS + PAGE_SIZE - 1) / PAGE_SIZE + 16;
+
+    // rows kept bound just off screen, and spare rows kept for reuse, by the list
+    private static final int ROW_CACHE_SIZE = 10;
+    private static final int RECYCLED_ROWS = 20;
+
+    // file the last good list is saved to
+    private static final String SNAPSHOT_FILE = "ticker.snapshot";
+
+    // directory each coin's price history is recorded in, and how many coins from the top of the list get one
+    private static final String HISTORY_DIR = "history";
+    private static final int HISTORY_COINS = 100;
+
+    // file the user's portfolio is saved to
+    private static final String PORTFOLIO_FILE = "portfolio";
+
+    // gainers and losers named above the list
+    private static final int MARKET_TOP_COINS = 3;
+
+    // how often the list refreshes while it is visible, and the longest wait after failures
+    private static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 60 * 1000L;
+    private static final long MAX_REFRESH_BACKOFF_MILLIS = 15 * 60 * 1000L;
+
+    // every request the app makes goes through one client, so its kept-alive connections are reused
+    private static final HttpClient httpClient = new HttpClient();
+    // shared by every load so ETag / Last-Modified validators survive between refreshes, with
+    // room for every page so none is forgotten before the next refresh asks for it again
+    private static final HttpFetcher httpFetcher = new HttpFetcher(httpClient, PAGE_URLS);
+    private static final PriceSource coinlore = new CoinloreSource("coinlore", httpFetcher, API_BASE_URL);
+    // the same endpoint again, not a second provider: pages coinlore is slow with are asked for
+    // again while the first request still holds its connection, so the retry gets a connection
+    // of its own, which the API's load balancer will usually send to a different server. It
+    // doesn't help when the API itself is down
+    private static final PriceSource coinloreRetryHedge =
+            new CoinloreSource("coinlore-retry", new HttpFetcher(httpClient, PAGE_URLS), API_BASE_URL);
+    private static final PriceSourceRouter priceSources =
+            new PriceSourceRouter(coinlore, coinloreRetryHedge, DEFAULT_HEDGE_MILLIS);
+    private static final TickerPager tickerPager = new TickerPager(priceSources, PAGE_SIZE, MAX_COINS);
+    // every screen's single coin requests, merged into multi-coin calls. Batches have urls of
+    // their own, so they get a fetcher of their own rather than pushing pages out of the list's
+    private static final CoinFetchCoordinator coinFetchCoordinator =
+            new CoinFetchCoordinator(new HttpFetcher(httpClient), COIN_URL, COIN_FETCH_WINDOW_MILLIS);
+    // outlives every activity, so a rotated activity picks up the same data and refresh timing
+    private static TickerRepository tickerRepository;
+    // the user's holdings, priced from every list the repository publishes
+    private static Portfolio portfolio;
+    private static PortfolioStore portfolioStore;
+    private static final Executor portfolioSaver = Executors.newSingleThreadExecutor();
+    // recorded metrics can be shown over the list or exported
+    private static final Executor metricsExporter = Executors.newSingleThreadExecutor();
+    private static final long METRICS_OVERLAY_MILLIS = 1000;
+    // the user's price alerts, checked against every list the repository publishes
+    private static AlertEngine alertEngine;
 
     final String PREFS = "prefs";
     SharedPreferences mySharedPreferences;
     SharedPreferences.Editor myEditor;
     View frame_layout;
     SearchView searchBar;
-    Crypto[] dataList = {};
+    TextView marketSummary;
+    CryptoListAdapter mAdapter;
+    // list on screen, or null until the first complete list has been shown
+    TickerSnapshot snapshot;
+    // pages of the first load, shown while it is still downloading
+    Crypto[] streamedPages = {};
+    TickerRepository repository;
+    // keeps the list refreshing while the activity is visible
+    RefreshTicker refreshTicker;
+    // metrics shown over the list, or null when the overlay is off
+    TextView metricsOverlay;
+    final Handler overlayHandler = new Handler(Looper.getMainLooper());
+    final Runnable updateOverlay = new Runnable() {
+        @Override
+        public void run() {
+            if (metricsOverlay == null) {
+                return;
+            }
+            StringWriter table = new StringWriter();
+            try {
+                Metrics.dump(table);
+            } catch (IOException e) {
+                // a StringWriter doesn't throw
+            }
+            metricsOverlay.setText(table.toString());
+            overlayHandler.postDelayed(this, METRICS_OVERLAY_MILLIS);
+        }
+    };
+
+    /**
+     * @return the coordinator every screen fetches single coins through
+     */
+    static CoinFetchCoordinator getCoinFetchCoordinator() {
+        return coinFetchCoordinator;
+    }
+
+    /**
+     * Get the repository shared by every screen, creating it the first time. The saved list
+     * and the refresh interval are read then
+     * @param context any context of the app
+     * @return the repository
+     */
+    static synchronized TickerRepository getTickerRepository(Context context) {
+        if (tickerRepository == null) {
+            Context app = context.getApplicationContext();
+            long refreshInterval = app.getSharedPreferences("prefs", 0)
+                    .getLong("refreshInterval", DEFAULT_REFRESH_INTERVAL_MILLIS);
+            SnapshotCache snapshotCache = new SnapshotCache(new File(app.getFilesDir(), SNAPSHOT_FILE));
+            tickerRepository = new TickerRepository(tickerPager, snapshotCache, RefreshScheduler.SYSTEM_CLOCK,
+                    refreshInterval, Math.max(refreshInterval, MAX_REFRESH_BACKOFF_MILLIS));
+            tickerRepository.setPriceHistory(new PriceHistoryStore(new File(app.getFilesDir(), HISTORY_DIR),
+                    HISTORY_COINS));
+            tickerRepository.setIndicators(new CoinIndicators(CoinIndicators.DEFAULT_WINDOW));
+            tickerRepository.setAnalytics(new MarketAnalytics(
+                    new ForkJoinPool(Runtime.getRuntime().availableProcessors()), MARKET_TOP_COINS));
+        }
+        return tickerRepository;
+    }
+
+    /**
+     * Get the portfolio shared by every screen, reading it from disk the first time. It is
+     * repriced on the refresh thread whenever a new list arrives
+     * @param context any context of the app
+     * @return the portfolio
+     */
+    static synchronized Portfolio getPortfolio(Context context) {
+        if (portfolio == null) {
+            Context app = context.getApplicationContext();
+            portfolioStore = new PortfolioStore(new File(app.getFilesDir(), PORTFOLIO_FILE));
+            portfolio = portfolioStore.read();
+            final Portfolio priced = portfolio;
+            getTickerRepository(app).addListener(new TickerRepository.Listener() {
+                @Override
+                public void onPage(Crypto[] page, int start) {}
+
+                @Override
+                public void onSnapshot(TickerSnapshot snapshot, CryptoSearchIndex searchIndex,
+                                       CryptoSortOrders sortOrders) {
+                    priced.updatePrices(snapshot);
+                }
+
+                @Override
+                public void onRefreshFailed(IOException e) {}
+            }, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    // pricing is cheap, so do it straight away on whichever thread published
+                    command.run();
+                }
+            });
+        }
+        return portfolio;
+    }
+
+    /**
+     * Get the alert engine shared by every screen, creating it the first time. Alerts are
+     * checked on the refresh thread whenever a new list arrives, and shown as toasts. They are
+     * not saved, so they last only as long as the app's process
+     * @param context any context of the app
+     * @return the alert engine
+     */
+    static synchronized AlertEngine getAlertEngine(Context context) {
+        if (alertEngine == null) {
+            final Context app = context.getApplicationContext();
+            final AlertEngine engine = new AlertEngine();
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            final AlertEngine.Listener showAlert = new AlertEngine.Listener() {
+                @Override
+                public void onAlert(final PriceAlert alert, long value) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            Toast.makeText(app, alert.describe(), Toast.LENGTH_LONG).show();
+                        }
+                    });
+                }
+            };
+            getTickerRepository(app).addListener(new TickerRepository.Listener() {
+                @Override
+                public void onPage(Crypto[] page, int start) {}
+
+                @Override
+                public void onSnapshot(TickerSnapshot snapshot, CryptoSearchIndex searchIndex,
+                                       CryptoSortOrders sortOrders) {
+                    engine.evaluate(snapshot, showAlert);
+                }
+
+                @Override
+                public void onRefreshFailed(IOException e) {}
+            }, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    // only coins with alerts are looked at, so check straight away on whichever thread published
+                    command.run();
+                }
+            });
+            alertEngine = engine;
+        }
+        return alertEngine;
+    }
+
+    /**
+     * Save the portfolio in the background after the user changes it
+     */
+    static void savePortfolio() {
+        final Portfolio saved;
+        final PortfolioStore store;
+        synchronized (CryptoListActivity.class) {
+            saved = portfolio;
+            store = portfolioStore;
+        }
+        if (saved == null) {
+            return;
+        }
+        portfolioSaver.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.write(saved);
+                } catch (IOException e) {
+                    // the portfolio stays in memory and is saved again on the next change
+                }
+            }
+        });
+    }
 
     /**
      * When activity is created, create all aspects of the page and apply any saved preferences
@@ -54,21 +291,29 @@ public class CryptoListActivity extends AppCompatActivity implements LoaderManag
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Metrics.startFirstRow();
         setContentView(R.layout.cryptolist_activity);
 
         // initialise shared preferences and the editor
         mySharedPreferences = getSharedPreferences(PREFS, 0);
         myEditor = mySharedPreferences.edit();
 
-        // initialise loader with ID
-        getSupportLoaderManager().initLoader(API_SEARCH_LOADER_ID, null, this);
-
-        // create and populate recycler view with internet data
-        makeAPISearchQuery();
-
         // get elements to change color if necessary
         frame_layout = (View)findViewById(R.id.frame_layout);
         searchBar = (SearchView) findViewById(R.id.searchbar);
+        marketSummary = (TextView) findViewById(R.id.market_summary);
+
+        // the repository is created once per process and outlives this activity
+        repository = getTickerRepository(this);
+        refreshTicker = new RefreshTicker(repository.getScheduler());
+
+        // create the recycler view up front, the saved list or pages of coins are added to it as they arrive
+        createRecyclerView(new CryptoArrayRows(streamedPages));
+        mAdapter.setSortOrder(mySharedPreferences.getInt("sortKey", CryptoListAdapter.LIST_ORDER),
+                mySharedPreferences.getBoolean("sortHighestFirst", false));
+
+        // get the current list straight away if there is one, and every update after that, on the main thread
+        repository.addListener(this, ContextCompat.getMainExecutor(this));
 
         // check preferences file been already created
         if (mySharedPreferences != null && mySharedPreferences.contains("backColor")) {
@@ -80,123 +325,126 @@ public class CryptoListActivity extends AppCompatActivity implements LoaderManag
     }
 
     /**
-     * Create a bundle containing the URL of the API, create an AsyncTaskLoader with that bundle,
-     * then restart the loader if it hasn't already started
+     * When the activity becomes visible, start refreshing the list. After a rotation the refresh
+     * timing carries on from the previous activity, so nothing is fetched again early
      */
-    private void makeAPISearchQuery(){
-        // create a bundle for the query, including the API URL
-        Bundle queryBundle = new Bundle();
-
-        queryBundle.putString("API_URL", API_BASE_URL);
-
-        LoaderManager loaderManager = getSupportLoaderManager();
-
-        // get loader from the ID
-        Loader<String> apiSearchLoader = loaderManager.getLoader(API_SEARCH_LOADER_ID);
-
-        // if the loader was null, initialize it, otherwise restart it.
-        if (apiSearchLoader == null) {
-            loaderManager.initLoader(API_SEARCH_LOADER_ID, queryBundle, this);
-        } else {
-            loaderManager.restartLoader(API_SEARCH_LOADER_ID, queryBundle, this);
-        }
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refreshTicker.start();
+        overlayHandler.post(updateOverlay);
     }
 
     /**
-     * When a loader is created for asynchronously accessing data from the internet, this method
-     * starts a load of the url it is provided
-     * @param id loader id
-     * @param args bundle of url and any extra information
-     * @return created loader
+     * When the activity is no longer visible, stop refreshing so no data or battery is spent on
+     * prices nobody sees
      */
-    @NonNull
     @Override
-    public Loader<String> onCreateLoader(int id, final Bundle args) {
-        //  return a new AsyncTaskLoader<String> as an anonymous inner class with 'this' as the constructor's parameter
-        return new AsyncTaskLoader<String>(this) {
-
-            @Override
-            protected void onStartLoading() {
-                // if no arguments were passed, no query to perform
-                if (args == null) {
-                    return;
-                }
-                forceLoad();
-            }
-
-            @Override
-            public String loadInBackground() {
-                // get the string for the URL from the bundle passed to onCreateLoader
-                String queryUrlString = args.getString("API_URL");
-
-                // if the URL is null or empty, return null
-                if (queryUrlString == null || TextUtils.isEmpty(queryUrlString)) {
-                    return null;
-                }
-
-                try {
-                    // get the data from the internet using the URL
-                    URL apiUrl = new URL(queryUrlString);
-                    return getResponseFromHttpUrl(apiUrl);
-                } catch (IOException e) {
-                    // if a network error occurs, send user to the error page
-                    showErrorMessage();
-                    return null;
-                }
-            }
-        };
+    protected void onStop() {
+        super.onStop();
+        refreshTicker.stop();
+        overlayHandler.removeCallbacks(updateOverlay);
     }
 
     /**
-     * When the asynchronous task loader finishes, this is called
-     * @param loader the loader in question
-     * @param data the results provided from the async call
+     * Stop listening for updates. If the user is leaving rather than rotating the screen, a
+     * refresh still in flight is cancelled too
      */
     @Override
-    public void onLoadFinished(Loader<String> loader, String data) {
-        // if no data returned, show error page
-        if (null == data) {
-            showErrorMessage();
-        } else {
-            // otherwise start and populate the recycler view
-            dataList = parseJSON(data);
-            createRecyclerView(parseJSON(data));
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeListener(this);
+        if (isFinishing()) {
+            repository.cancel();
         }
     }
 
     /**
-     * When the loader is reset, do nothing
-     * @param loader loader in question
+     * Add a newly downloaded page of coins to the recycler view
+     * @param page coins on the page
+     * @param start position of the first coin of the page in the whole list
      */
     @Override
-    public void onLoaderReset(@NonNull Loader<String> loader) {}
+    public void onPage(Crypto[] page, int start) {
+        // if a full list is already showing, keep it until the new one has completely loaded
+        if (snapshot != null) {
+            return;
+        }
+
+        // the first page of a load replaces whatever was shown before
+        Crypto[] shown = Arrays.copyOf(start == 0 ? new Crypto[0] : streamedPages, start + page.length);
+        System.arraycopy(page, 0, shown, start, page.length);
+        streamedPages = shown;
+        mAdapter.setCryptos(new CryptoArrayRows(shown));
+    }
 
     /**
-     * Open an HTTP connection to the url provided and attempt to get a string response
-     * @param url url to retrieve data from
-     * @return the string of data provided from the url
-     * @throws IOException url could provide nothing, or not be valid
+     * Show a complete list, either the saved one or a newly refreshed one
+     * @param data the list
+     * @param searchIndex search index already built for the list
+     * @param sortOrders sort orders already computed for the list
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-        // open http connection
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-        // open stream from the https response
+    @Override
+    public void onSnapshot(TickerSnapshot data, CryptoSearchIndex searchIndex, CryptoSortOrders sortOrders) {
+        // traced so the main thread cost of a refresh shows up in systrace / the profiler
+        Trace.beginSection("CryptoListActivity.onSnapshot");
         try {
-            InputStream in = urlConnection.getInputStream();
+            if (data == snapshot) {
+                return;
+            }
+            // swap in the complete list; rows already streamed in compare as unchanged
+            snapshot = data;
+            streamedPages = new Crypto[0];
+            mAdapter.setCryptos(data.rows, searchIndex, sortOrders);
+            showMarketSummary(data.rows);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Show the market-wide figures the repository worked out for a list above it: the average
+     * 24 hour move, how many coins rose and fell, the middle half of the moves and the biggest
+     * gainers and losers
+     * @param rows list on screen
+     */
+    private void showMarketSummary(CryptoRows rows) {
+        MarketAnalytics.Summary summary = repository.getMarketSummary();
+        if (summary == null || !summary.describes(rows) || summary.coins == 0) {
+            marketSummary.setText("");
+            return;
+        }
+        // the bands are the 5th, 25th, 50th, 75th and 95th percentiles
+        StringBuilder text = new StringBuilder(160)
+                .append(String.format(Locale.US, "Market %+.2f%% (24h), %d up, %d down, middle half %+.2f%% to %+.2f%%",
+                        summary.meanChange, summary.advancers, summary.decliners, summary.bands[1], summary.bands[3]));
+        appendCoins(text.append("\nTop: "), rows, summary.gainers);
+        appendCoins(text.append("  Bottom: "), rows, summary.losers);
+        marketSummary.setText(text);
+    }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+    private static void appendCoins(StringBuilder text, CryptoRows rows, int[] coins) {
+        for (int i = 0; i < coins.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(rows.symbol(coins[i])).append(' ').append(rows.dailyChangeText(coins[i]));
+        }
+    }
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                // return http response text
-                return scanner.next();
-            } else {
-                return null;
+    /**
+     * When a refresh fails, keep showing the list already on screen, or show the error page if
+     * there isn't one. Only the first failure in a row is reported, later retries fail quietly
+     * @param e why the refresh failed
+     */
+    @Override
+    public void onRefreshFailed(IOException e) {
+        if (snapshot != null) {
+            if (repository.getScheduler().getConsecutiveFailures() <= 1) {
+                showStaleMessage();
             }
-        } finally {
-            urlConnection.disconnect();
+        } else {
+            showErrorMessage();
         }
     }
 
@@ -215,71 +463,67 @@ public class CryptoListActivity extends AppCompatActivity implements LoaderManag
     }
 
     /**
-     * Transform JSON data provided by the API into a list of crypto items
-     * @param data string data containing JSON
-     * @return list of crypto objects
+     * When the list could not be refreshed, tell the user how old the prices on screen are
      */
-    private Crypto[] parseJSON(String data){
-        // parse the returned JSON data, so the list given to the recycler view has the correct data
-
-        ArrayList<Crypto> cryptos = new ArrayList<>();
-        Crypto[] list = {};
-
-        try {
-            JSONObject json = new JSONObject(new JSONTokener(data));
-            JSONArray array = json.getJSONArray("data");
-
-            for(int i = 0; i<array.length(); i++){
-                JSONObject obj = array.getJSONObject(i);
-                String coinSymbol = obj.getString("symbol");
-                String coinName = obj.getString("name");
-                String coinPrice = obj.getString("price_usd");
-                String dailyPercentageChange = obj.getString("percent_change_24h");
-                String hourlyPercentageChange = obj.getString("percent_change_1h");
-
-                Crypto crypto = new Crypto(coinSymbol, coinName, coinPrice, dailyPercentageChange, hourlyPercentageChange);
-                cryptos.add(crypto);
-            }
-
-            list = cryptos.toArray(new Crypto[0]);
-
-        }catch(Exception e){
-            showErrorMessage();
-        }
-
-        return list;
+    private void showStaleMessage() {
+        CharSequence age = DateUtils.getRelativeTimeSpanString(snapshot.fetchedAt,
+                System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS);
+        Toast.makeText(getApplicationContext(), "Offline, showing prices from " + age,
+                Toast.LENGTH_LONG).show();
     }
 
     /**
      * Create the adapter for the recycler view and set the instructions for when a user
-     * types into the search bar
-     * @param cryptoList the list of crypto objects that were parsed from the HTTP resonse
+     * types into the search bar. Called once, later lists are handed to the same adapter so
+     * scroll position and bound rows are kept
+     * @param cryptoList the first list of crypto objects to show
      */
-    private void createRecyclerView(Crypto[] cryptoList){
+    private void createRecyclerView(CryptoRows cryptoList){
         RecyclerView mRecyclerView = (RecyclerView) findViewById(R.id.recyclerview);
 
-        CryptoListAdapter mAdapter = new CryptoListAdapter(this, cryptoList);
+        mAdapter = new CryptoListAdapter(this, cryptoList);
 
-        mRecyclerView.setAdapter(mAdapter);
-
-        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        setUpRecyclerView(mRecyclerView, mAdapter);
 
         // set what to do when user makes a search
         searchBar.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                mAdapter.getFilter().filter(query);
+                mAdapter.filter(query);
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                mAdapter.getFilter().filter(newText);
+                mAdapter.filter(newText);
                 return true;
             }
         });
     }
 
+    /**
+     * Attach the adapter to a recycler view and tune the view for flinging through long lists
+     * @param recyclerView the recycler view
+     * @param adapter the list's adapter
+     */
+    static void setUpRecyclerView(RecyclerView recyclerView, CryptoListAdapter adapter) {
+        recyclerView.setAdapter(adapter);
+
+        LinearLayoutManager layoutManager = new LinearLayoutManager(recyclerView.getContext());
+        // rows coming on screen are bound in the gaps between frames while flinging
+        layoutManager.setItemPrefetchEnabled(true);
+        recyclerView.setLayoutManager(layoutManager);
+
+        // the list always fills the screen, so row changes never need it measured again
+        recyclerView.setHasFixedSize(true);
+        // rows just scrolled off are kept bound for scrolling back, and enough spare rows are
+        // kept for a fast fling never to inflate new ones
+        recyclerView.setItemViewCacheSize(ROW_CACHE_SIZE);
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(0, RECYCLED_ROWS);
+        // a changed price is rebound in place, rather than cross-faded through a second row
+        ((SimpleItemAnimator) recyclerView.getItemAnimator()).setSupportsChangeAnimations(false);
+    }
+
     /**
      * Create the options menu
      * @param menu menu layout
@@ -289,6 +533,8 @@ public class CryptoListActivity extends AppCompatActivity implements LoaderManag
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.menu, menu);
+        menu.findItem(R.id.metrics_overlay).setVisible(Metrics.isEnabled());
+        menu.findItem(R.id.export_metrics).setVisible(Metrics.isEnabled());
         return true;
     }
 
@@ -311,11 +557,104 @@ public class CryptoListActivity extends AppCompatActivity implements LoaderManag
                 myEditor.commit();
                 applySavedPreferences();
                 return true;
+            case R.id.metrics_overlay:
+                toggleMetricsOverlay();
+                return true;
+            case R.id.export_metrics:
+                exportMetrics();
+                return true;
+            case R.id.sort_list_order:
+                return setSortOrder(CryptoListAdapter.LIST_ORDER, false);
+            case R.id.sort_price_high:
+                return setSortOrder(CryptoSortOrders.PRICE, true);
+            case R.id.sort_price_low:
+                return setSortOrder(CryptoSortOrders.PRICE, false);
+            case R.id.sort_daily_gainers:
+                return setSortOrder(CryptoSortOrders.DAILY_CHANGE, true);
+            case R.id.sort_daily_losers:
+                return setSortOrder(CryptoSortOrders.DAILY_CHANGE, false);
+            case R.id.sort_hourly_gainers:
+                return setSortOrder(CryptoSortOrders.HOURLY_CHANGE, true);
+            case R.id.sort_hourly_losers:
+                return setSortOrder(CryptoSortOrders.HOURLY_CHANGE, false);
+            case R.id.sort_trend_up:
+                return setSortOrder(CryptoSortOrders.TREND, true);
+            case R.id.sort_trend_down:
+                return setSortOrder(CryptoSortOrders.TREND, false);
+            case R.id.sort_volatility_high:
+                return setSortOrder(CryptoSortOrders.VOLATILITY, true);
+            case R.id.sort_volatility_low:
+                return setSortOrder(CryptoSortOrders.VOLATILITY, false);
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
+    /**
+     * Show or hide the stage timings and counters over the bottom of the list, updated every second
+     */
+    private void toggleMetricsOverlay() {
+        if (metricsOverlay != null) {
+            ((ViewGroup) metricsOverlay.getParent()).removeView(metricsOverlay);
+            metricsOverlay = null;
+            overlayHandler.removeCallbacks(updateOverlay);
+            return;
+        }
+        metricsOverlay = new TextView(this);
+        metricsOverlay.setTypeface(Typeface.MONOSPACE);
+        metricsOverlay.setTextSize(10);
+        metricsOverlay.setTextColor(Color.WHITE);
+        metricsOverlay.setBackgroundColor(0xC0000000);
+        metricsOverlay.setPadding(16, 16, 16, 16);
+        addContentView(metricsOverlay, new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT,
+                FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM));
+        overlayHandler.post(updateOverlay);
+    }
+
+    /**
+     * Write the stage timings and counters to a file in the app's external files directory,
+     * where adb can pull it from, e.g. to compare builds
+     */
+    private void exportMetrics() {
+        File dir = getExternalFilesDir(null);
+        final File file = new File(dir != null ? dir : getFilesDir(), "metrics-" + System.currentTimeMillis() + ".txt");
+        final Context app = getApplicationContext();
+        final Handler mainHandler = overlayHandler;
+        metricsExporter.execute(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try (Writer out = new FileWriter(file)) {
+                    Metrics.dump(out);
+                    message = "Metrics written to " + file.getPath();
+                } catch (IOException e) {
+                    message = "Could not write metrics: " + e.getMessage();
+                }
+                final String shown = message;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(app, shown, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show the list in a new order, and remember it for next time
+     * @param sortKey value to sort by, see CryptoListAdapter.setSortOrder
+     * @param highestFirst true to start with the highest value
+     * @return true, the menu item was handled
+     */
+    private boolean setSortOrder(int sortKey, boolean highestFirst) {
+        myEditor.putInt("sortKey", sortKey);
+        myEditor.putBoolean("sortHighestFirst", highestFirst);
+        myEditor.apply();
+        mAdapter.setSortOrder(sortKey, highestFirst);
+        return true;
+    }
+
     /**
      * Apply the users choice of colour theme
      */
@@ -2,29 +2,323 @@ package com.example.cryptocoin;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Filter;
 import android.widget.TextView;
 
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
- * Adapter for the recycler view in 'CryptoListActivity'
+ * Adapter for the recycler view in 'CryptoListActivity'. The adapter lives as long as the
+ * activity; each new list is compared against the one on screen on a background thread, and
+ * only rows that were added, removed or changed are updated. Rows can be shown in the list's
+ * own order or sorted, using orders computed once per list off the main thread. Binding a row
+ * allocates nothing: its text was prepared when the coin was parsed, colours are looked up once,
+ * and views are only touched when what they show changed
  */
 public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.CryptoViewHolder> {
-    private Crypto[] mCryptoList;
-    private final Crypto[] clonedCryptoList;
+    // sort key for showing coins in the order the list has them
+    public static final int LIST_ORDER = -1;
+
+    // every adapter computes its list differences on this one background thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    // search results' position arrays kept for later searches once they leave the screen
+    private static final int SPARE_POSITIONS = 2;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // rows on screen: positions into mRows, in display order
+    private Selection mShown;
+    private volatile CryptoRows clonedCryptoList;
+    // every row of the latest list in its own order, shared by everything that shows it unfiltered
+    private volatile Selection mAllRows;
+    private final ArrayBlockingQueue<int[]> mSparePositions = new ArrayBlockingQueue<>(SPARE_POSITIONS);
+    private CharSequence mQuery;
+    // bumped on every submitted list, so a difference that is already out of date is dropped
+    private int mGeneration;
+    // search index for the latest complete list, built in the background before the user searches
+    private volatile CryptoSearchIndex mSearchIndex;
+    // sort orders for the latest complete list, and the one the user picked
+    private volatile CryptoSortOrders mSortOrders;
+    private volatile int mSortKey = LIST_ORDER;
+    private volatile boolean mHighestFirst;
     private final LayoutInflater mInflator;
+    private final int mRisingColour;
+    private final int mFallingColour;
+    // ids handed out to coins whose API id isn't a number, counting down from below NO_ID
+    private final HashMap<String, Long> mOtherIds = new HashMap<>();
+    private long mNextOtherId = RecyclerView.NO_ID - 1;
 
-    public CryptoListAdapter(Context context, Crypto[] cryptoList) {
+    public CryptoListAdapter(Context context, CryptoRows cryptoList) {
         mInflator = LayoutInflater.from(context);
-        this.mCryptoList = cryptoList;
+        // look the colours up once rather than on every bind
+        mRisingColour = ContextCompat.getColor(context, R.color.price_rising);
+        mFallingColour = ContextCompat.getColor(context, R.color.price_falling);
+        this.mShown = allRows(cryptoList);
+        clonedCryptoList = cryptoList;
+        // a coin keeps its views across new lists, sorts and searches
+        setHasStableIds(true);
+    }
+
+    /**
+     * Some rows of a list of coins, in the order they are shown
+     */
+    private static class Selection {
+        final CryptoRows rows;
+        final int[] positions;
+        // positions in use; the rest of a reused array is left over from an earlier search
+        final int size;
+        // true if positions is a spare of the filter's, handed back once off screen
+        final boolean spare;
+
+        Selection(CryptoRows rows, int[] positions) {
+            this(rows, positions, positions.length, false);
+        }
+
+        Selection(CryptoRows rows, int[] positions, int size, boolean spare) {
+            this.rows = rows;
+            this.positions = positions;
+            this.size = size;
+            this.spare = spare;
+        }
+
+        static Selection all(CryptoRows rows) {
+            int[] positions = new int[rows.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            return new Selection(rows, positions);
+        }
+    }
+
+    /**
+     * @return every row of a list in its own order, made once per list
+     */
+    private Selection allRows(CryptoRows rows) {
+        Selection all = mAllRows;
+        if (all == null || all.rows != rows) {
+            all = Selection.all(rows);
+            mAllRows = all;
+        }
+        return all;
+    }
+
+    /**
+     * Hand a search result's positions back to the filter. Must be called on the main thread,
+     * once the result is off screen or will never be shown
+     */
+    private void recycle(final Selection selection) {
+        if (!selection.spare) {
+            return;
+        }
+        // diffs already queued may still read it, so it only becomes spare after them
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSparePositions.offer(selection.positions);
+            }
+        });
+    }
+
+    /**
+     * Replace the whole list of coins, keeping any search the user has typed
+     * @param cryptoList new list of coins
+     */
+    public void setCryptos(CryptoRows cryptoList) {
+        setCryptos(cryptoList, null, null);
+    }
+
+    /**
+     * Replace the whole list of coins, keeping any search and sort order the user picked
+     * @param cryptoList new list of coins
+     * @param searchIndex index already built for the list, or null to build one here
+     * @param sortOrders sort orders already computed for the list, or null to compute them here
+     *                   if the list is shown sorted
+     */
+    public void setCryptos(final CryptoRows cryptoList, CryptoSearchIndex searchIndex, CryptoSortOrders sortOrders) {
         clonedCryptoList = cryptoList;
+        if (sortOrders != null && sortOrders.sorts(cryptoList)) {
+            mSortOrders = sortOrders;
+        }
+
+        if (searchIndex != null && searchIndex.indexes(cryptoList)) {
+            mSearchIndex = searchIndex;
+        } else {
+            // index the new list now, so the first keystroke doesn't wait for it
+            DIFF_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (clonedCryptoList == cryptoList) {
+                        mSearchIndex = new CryptoSearchIndex(cryptoList);
+                    }
+                }
+            });
+        }
+
+        showList(cryptoList);
+    }
+
+    /**
+     * Show the coins in a new order. Must be called on the main thread
+     * @param sortKey one of the CryptoSortOrders keys, or LIST_ORDER
+     * @param highestFirst true to start with the highest value
+     */
+    public void setSortOrder(int sortKey, boolean highestFirst) {
+        mSortKey = sortKey;
+        mHighestFirst = highestFirst;
+        showList(clonedCryptoList);
+    }
+
+    private boolean isFiltering() {
+        return mQuery != null && mQuery.length() > 0;
+    }
+
+    private boolean isSorting() {
+        return mSortKey != LIST_ORDER;
+    }
+
+    /**
+     * Show a list filtered and sorted the way the user picked. Must be called on the main thread
+     */
+    private void showList(final CryptoRows cryptoList) {
+        if (isFiltering()) {
+            filter.filter(mQuery);
+            return;
+        }
+        if (!isSorting()) {
+            submitList(allRows(cryptoList));
+            return;
+        }
+
+        CryptoSortOrders sortOrders = mSortOrders;
+        if (sortOrders != null && sortOrders.sorts(cryptoList)) {
+            // the order already exists, so showing it takes no sorting or copying
+            submitList(new Selection(cryptoList, sortOrders.order(mSortKey, mHighestFirst)));
+            return;
+        }
+
+        // keep the rows on screen until the new list is sorted, rather than showing it unsorted first
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (clonedCryptoList != cryptoList) {
+                    return;
+                }
+                mSortOrders = new CryptoSortOrders(cryptoList);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (clonedCryptoList == cryptoList) {
+                            showList(cryptoList);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show a new list, working out on a background thread which rows changed compared to the
+     * list on screen, then updating only those rows. Must be called on the main thread
+     * @param newList rows to show
+     */
+    private void submitList(final Selection newList) {
+        final Selection oldList = mShown;
+        final int generation = ++mGeneration;
+
+        if (oldList.size == 0 || newList.size == 0) {
+            // nothing to compare against, so there is no point in a background pass
+            mShown = newList;
+            recycle(oldList);
+            notifyDataSetChanged();
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long diffStart = Metrics.start();
+                // a refresh usually keeps every coin in place, which one pass finds without a full diff
+                final int[] changed = new int[newList.size];
+                final int changedCount = RowDiff.changedPositions(oldList.rows, oldList.positions, oldList.size,
+                        newList.rows, newList.positions, newList.size, changed);
+                if (changedCount >= 0) {
+                    Metrics.stop(Metrics.DIFF, diffStart);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != mGeneration) {
+                                recycle(newList);
+                                return;
+                            }
+                            recycle(mShown);
+                            mShown = newList;
+                            for (int i = 0; i < changedCount; i++) {
+                                notifyItemChanged(changed[i]);
+                            }
+                        }
+                    });
+                    return;
+                }
+
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new CryptoDiff(oldList, newList), false);
+                Metrics.stop(Metrics.DIFF, diffStart);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // a newer list was submitted while this one was being compared
+                        if (generation != mGeneration) {
+                            recycle(newList);
+                            return;
+                        }
+                        recycle(mShown);
+                        mShown = newList;
+                        result.dispatchUpdatesTo(CryptoListAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Compares two lists of coins, matching rows by coin id
+     */
+    private static class CryptoDiff extends DiffUtil.Callback {
+        private final Selection oldList;
+        private final Selection newList;
+
+        CryptoDiff(Selection oldList, Selection newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() { return oldList.size; }
+
+        @Override
+        public int getNewListSize() { return newList.size; }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return RowDiff.sameCoin(oldList.rows, oldList.positions[oldPosition],
+                    newList.rows, newList.positions[newPosition]);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return RowDiff.sameContents(oldList.rows, oldList.positions[oldPosition],
+                    newList.rows, newList.positions[newPosition]);
+        }
     }
 
     /**
@@ -47,33 +341,77 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
      */
     @Override
     public void onBindViewHolder(CryptoViewHolder holder, int position) {
-        Crypto mCurrent = mCryptoList[position];
+        long bindStart = Metrics.start();
+        CryptoRows rows = mShown.rows;
+        int row = mShown.positions[position];
 
         // set item text to the coin name
-        holder.cryptoItemView.setText(mCurrent.coinName);
-        int textColour;
+        String name = rows.name(row);
+        if (!name.equals(holder.boundName)) {
+            holder.cryptoItemView.setText(name);
+            holder.boundName = name;
+        }
 
-        // set item information text to percentage change
-        String pChange = mCurrent.dailyPercentageChange;
+        // set item information text to the percentage change prepared when the coin was parsed,
+        // making negative changes red and positive changes green
+        String change = rows.dailyChangeText(row);
+        if (!change.equals(holder.boundChange)) {
+            holder.cryptoInfoView.setText(change);
+            holder.boundChange = change;
+        }
+        int colour = rows.dailyNegative(row) ? mFallingColour : mRisingColour;
+        if (colour != holder.boundColour) {
+            holder.cryptoInfoView.setTextColor(colour);
+            holder.boundColour = colour;
+        }
+        Metrics.stop(Metrics.BIND, bindStart);
+        Metrics.rowBound();
+    }
 
-        if(pChange.contains("-")){
-            pChange = pChange + "%";
-            // make negative changes red
-            textColour = Color.parseColor("#FF5656");
-        }else{
-            pChange = "+" + pChange + "%";
-            // make positive changes green
-            textColour = Color.parseColor("#4CAF50");
+    /**
+     * @param position position in the list
+     * @return id of the coin at that position, the same in every list it appears in
+     */
+    @Override
+    public long getItemId(int position) {
+        String coinId = mShown.rows.id(mShown.positions[position]);
+        long id = numericId(coinId);
+        if (id >= 0) {
+            return id;
+        }
+        Long other = mOtherIds.get(coinId);
+        if (other == null) {
+            other = mNextOtherId--;
+            mOtherIds.put(coinId, other);
         }
-        holder.cryptoInfoView.setText(pChange);
-        holder.cryptoInfoView.setTextColor(textColour);
+        return other;
+    }
+
+    /**
+     * @return the coin id as a number, or -1 if it isn't one. Parsed by hand so ids that aren't
+     * numbers don't cost an exception
+     */
+    static long numericId(String coinId) {
+        int length = coinId.length();
+        if (length == 0 || length > 18) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < length; i++) {
+            char c = coinId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
     }
 
     /**
      * Count how many items in the list of crypto coins
      * @return integer count
      */
-    public int getItemCount() { return mCryptoList.length; }
+    public int getItemCount() { return mShown.size; }
 
     /**
      * Called when searching the recycler view
@@ -83,7 +421,19 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
         return filter;
     }
 
+    /**
+     * Filter the list by the user's search, remembering it so new pages are filtered too
+     * @param query user query
+     */
+    public void filter(CharSequence query) {
+        mQuery = query;
+        filter.filter(query);
+    }
+
     private Filter filter = new Filter() {
+        // only touched on the filter's own background thread
+        private int[] matches = {};
+
         /**
          * When user searches, create a list of items that match their query
          * @param charSequence user query
@@ -91,30 +441,83 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
          */
         @Override
         protected FilterResults performFiltering(CharSequence charSequence) {
-            Crypto[] filteredList;
-            ArrayList<Crypto> filteredListWIP = new ArrayList<Crypto>();
+            long filterStart = Metrics.start();
+            Selection filteredList;
+            CryptoRows allCryptos = clonedCryptoList;
+            // read once, the user may pick another order while this runs
+            int sortKey = mSortKey;
+            boolean highestFirst = mHighestFirst;
 
-            // if user types nothing, leave list as original
+            // if user types nothing, leave list as original, in the order picked
             if(charSequence == null || charSequence.length() == 0){
-                filteredList = clonedCryptoList;
+                CryptoSortOrders sortOrders = sortOrders(allCryptos, sortKey);
+                filteredList = sortOrders == null ? allRows(allCryptos)
+                        : new Selection(allCryptos, sortOrders.order(sortKey, highestFirst));
             } else{
-                // check user query matches any results and add them to the list to display
-                String query = charSequence.toString().trim().toLowerCase();
-                for (Crypto crypto : clonedCryptoList) {
-                    if (crypto.coinName.toLowerCase().contains(query)) {
-                        filteredListWIP.add(crypto);
+                // use the search index built for this list, building it here if it isn't ready yet
+                CryptoSearchIndex searchIndex = mSearchIndex;
+                if (searchIndex == null || !searchIndex.indexes(allCryptos)) {
+                    searchIndex = new CryptoSearchIndex(allCryptos);
+                    mSearchIndex = searchIndex;
+                }
+                // the result is shown, so it gets an array of its own, reused once it is off screen
+                int[] found = sparePositions(allCryptos.size());
+
+                // look the query up in the name and symbol index and show the coins that match
+                String query = charSequence.toString().trim();
+                CryptoSortOrders sortOrders = sortOrders(allCryptos, sortKey);
+                int count;
+                if (sortOrders == null) {
+                    count = searchIndex.search(query, found);
+                } else {
+                    // put the matches in the order picked, by walking the order computed for the list
+                    if (matches.length < allCryptos.size()) {
+                        matches = new int[allCryptos.size()];
                     }
+                    count = searchIndex.search(query, matches);
+                    count = sortOrders.select(sortKey, highestFirst, matches, count, found);
                 }
-                filteredList = filteredListWIP.toArray(new Crypto[0]);
+                filteredList = new Selection(allCryptos, found, count, true);
             }
 
             FilterResults results =  new FilterResults();
             results.values = filteredList;
+            Metrics.stop(Metrics.FILTER, filterStart);
 
             // return list of coins that match user query
             return results;
         }
 
+        /**
+         * @return an array of at least size positions, one a search result left behind if any is
+         * big enough
+         */
+        private int[] sparePositions(int size) {
+            int[] positions;
+            while ((positions = mSparePositions.poll()) != null) {
+                if (positions.length >= size) {
+                    return positions;
+                }
+            }
+            return new int[size];
+        }
+
+        /**
+         * @return sort orders for the list, computed here if they aren't ready yet, or null if
+         * the list is shown in its own order
+         */
+        private CryptoSortOrders sortOrders(CryptoRows allCryptos, int sortKey) {
+            if (sortKey == LIST_ORDER) {
+                return null;
+            }
+            CryptoSortOrders sortOrders = mSortOrders;
+            if (sortOrders == null || !sortOrders.sorts(allCryptos)) {
+                sortOrders = new CryptoSortOrders(allCryptos);
+                mSortOrders = sortOrders;
+            }
+            return sortOrders;
+        }
+
         /**
          * Set recycler view with new list of users queried coins
          * @param charSequence query
@@ -123,8 +526,7 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
         @Override
         protected void publishResults(CharSequence charSequence, FilterResults filterResults) {
             if(filterResults.values != null){
-                mCryptoList = (Crypto[]) filterResults.values;
-                notifyDataSetChanged();
+                submitList((Selection) filterResults.values);
             }
         }
     };
@@ -133,6 +535,10 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
         public final TextView cryptoItemView;
         public final TextView cryptoInfoView;
         final CryptoListAdapter mAdapter;
+        // what the views show, so a rebind to the same values leaves them alone
+        String boundName;
+        String boundChange;
+        int boundColour;
 
         public CryptoViewHolder(View itemView, CryptoListAdapter adapter) {
             super(itemView);
@@ -150,21 +556,12 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
          */
         @Override
         public void onClick(View v) {
-            String name = cryptoItemView.getText().toString();
-            String price = "";
-            String symbol = "";
-            String dailyPChange = "";
-            String hourlyPChange = "";
-
-            for (Crypto coin : mCryptoList) {
-                // gather information for correct coin
-                if (coin.coinName.equals(name)) {
-                    price = coin.coinPrice;
-                    symbol = coin.coinSymbol;
-                    dailyPChange = coin.dailyPercentageChange;
-                    hourlyPChange = coin.hourlyPercentageChange;
-                }
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
             }
+            // the detail screen looks the coin up by id, and keeps following it from there
+            String coinId = mShown.rows.id(mShown.positions[position]);
 
             // create an explicit intent
             Context context = itemView.getContext();
@@ -172,13 +569,7 @@ public class CryptoListAdapter extends RecyclerView.Adapter<CryptoListAdapter.Cr
             Class<CryptoMoreInfo> destinationActivity = CryptoMoreInfo.class;
 
             Intent intent = new Intent(context, destinationActivity);
-
-            // put all information into intent
-            intent.putExtra("name", name);
-            intent.putExtra("price", price);
-            intent.putExtra("symbol", symbol);
-            intent.putExtra("dailypchange", dailyPChange);
-            intent.putExtra("hourlypchange", hourlyPChange);
+            intent.putExtra(CryptoMoreInfo.EXTRA_COIN_ID, coinId);
 
             // go to destination activity
             context.startActivity(intent);
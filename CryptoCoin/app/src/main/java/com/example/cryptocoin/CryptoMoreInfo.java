@@ -2,35 +2,104 @@ package com.example.cryptocoin;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ShareCompat;
+import androidx.core.content.ContextCompat;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Activity user is taken to when they want more information about a certain cryptocurrency
+ * Activity user is taken to when they want more information about a certain cryptocurrency.
+ * It follows the coin's live price, charts its history, and lets the user add it to their
+ * portfolio or set price alerts on it
  */
-public class CryptoMoreInfo extends AppCompatActivity {
+public class CryptoMoreInfo extends AppCompatActivity
+        implements TickerRepository.Listener, PriceFeed.Listener, LivePrice.Display {
+
+    // intent extra holding the id of the coin to show
+    public static final String EXTRA_COIN_ID = "id";
+
+    // how often the coin is polled while the screen is visible
+    private static final long PRICE_POLL_MILLIS = 10 * 1000L;
+    private static final PriceFeed priceFeed =
+            new PollingPriceFeed(CryptoListActivity.getCoinFetchCoordinator(), PRICE_POLL_MILLIS);
+    private static final String DAILY_SUFFIX = " (24h)";
+    private static final String HOURLY_SUFFIX = " (1h)";
+    // how far back the chart goes, and the thread history is read and written on
+    private static final long CHART_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    private static final ExecutorService historyExecutor = Executors.newSingleThreadExecutor();
+    // ids for the alerts set on any coin
+    private static final AtomicInteger nextAlertId = new AtomicInteger();
 
     final String PREFS = "prefs";
     SharedPreferences mySharedPreferences;
     SharedPreferences.Editor myEditor;
     View layout;
     EditText convertEntry;
+    EditText alertEntry;
     TextView converted;
+    TextView title;
+    TextView symbol;
+    TextView price;
+    TextView DPercentage;
+    TextView HPercentage;
+    TextView holding;
+    TextView indicatorsText;
+    PriceChartView chart;
+    int risingColour;
+    int fallingColour;
+    TickerRepository repository;
+    RefreshTicker refreshTicker;
+    PriceHistoryStore history;
+    Portfolio portfolio;
+    AlertEngine alertEngine;
+    CoinIndicators indicators;
+    // latest price seen from either the list or the live feed
+    volatile long latestPrice = Portfolio.NO_PRICE;
+    String coinId = "";
     String coinName = "";
-    String coinPrice = "";
     String coinSymbol = "";
     String dailyPChange = "";
     String hourlyPChange = "";
 
+    // live prices arrive on the feed thread and are applied on the main thread
+    final LivePrice livePrice = new LivePrice();
+    final Handler mainHandler = new Handler(Looper.getMainLooper());
+    final Runnable applyLivePrice = new Runnable() {
+        @Override
+        public void run() {
+            livePrice.applyPending(CryptoMoreInfo.this);
+            showHolding();
+        }
+    };
+    // reused for the change texts and their suffixes, so a tick doesn't build Strings
+    final char[] dailyText = new char[32];
+    final char[] hourlyText = new char[32];
+    // what the holding text was last drawn from, the quantity is -1 while nothing is shown
+    long shownQuantity = -1;
+    long shownValue;
+    long shownProfit;
+    String quantityText = "";
+    final char[] amountText = new char[32];
+    char[] holdingText = new char[64];
+
     /**
-     * When activity is created, gather all data from the intent that sent it here and apply
+     * When activity is created, look up the coin named by the intent that sent it here and apply
      * any shared preferences
      * @param savedInstanceState bundle provided of data activity needs to create
      */
@@ -39,84 +108,341 @@ public class CryptoMoreInfo extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.crypto_more_info);
 
-        TextView title = (TextView) findViewById(R.id.moreInfoTitle);
-        TextView symbol = (TextView) findViewById(R.id.moreInfoSymbol);
-        TextView price = (TextView) findViewById(R.id.moreInfoPrice);
-        TextView DPercentage = (TextView) findViewById(R.id.moreInfoDPercentage);
-        TextView HPercentage = (TextView) findViewById(R.id.moreInfoHPercentage);
+        title = (TextView) findViewById(R.id.moreInfoTitle);
+        symbol = (TextView) findViewById(R.id.moreInfoSymbol);
+        price = (TextView) findViewById(R.id.moreInfoPrice);
+        DPercentage = (TextView) findViewById(R.id.moreInfoDPercentage);
+        HPercentage = (TextView) findViewById(R.id.moreInfoHPercentage);
+        holding = (TextView) findViewById(R.id.moreInfoHolding);
+        indicatorsText = (TextView) findViewById(R.id.moreInfoIndicators);
+        chart = (PriceChartView) findViewById(R.id.moreInfoChart);
         convertEntry = (EditText) findViewById(R.id.text_entry);
+        alertEntry = (EditText) findViewById(R.id.alert_entry);
         converted = (TextView) findViewById(R.id.convert_result);
         layout = (View) findViewById(R.id.linear_layout);
+        risingColour = ContextCompat.getColor(this, R.color.price_rising);
+        fallingColour = ContextCompat.getColor(this, R.color.price_falling);
 
-        // get all information from the intent that started this activity
+        // get the coin's id from the intent that started this activity
         Intent previousActivity = getIntent();
+        if (previousActivity.hasExtra(EXTRA_COIN_ID)) {
+            coinId = previousActivity.getStringExtra(EXTRA_COIN_ID);
+        }
 
-        if (previousActivity.hasExtra("name")) {
-            coinName = previousActivity.getStringExtra("name");
-            // set title text
-            title.setText(coinName);
+        // show the coin now if it is loaded, otherwise as soon as a list containing it arrives
+        repository = CryptoListActivity.getTickerRepository(this);
+        refreshTicker = new RefreshTicker(repository.getScheduler());
+        history = repository.getPriceHistory();
+        portfolio = CryptoListActivity.getPortfolio(this);
+        alertEngine = CryptoListActivity.getAlertEngine(this);
+        indicators = repository.getIndicators();
+        showCoin(repository.getRegistry().get(coinId));
+        repository.addListener(this, ContextCompat.getMainExecutor(this));
+
+        // get shared preferences and editor
+        mySharedPreferences = getSharedPreferences(PREFS, 0);
+        myEditor = mySharedPreferences.edit();
+
+        // check preferences file been already created
+        if (mySharedPreferences != null && mySharedPreferences.contains("backColor")) {
+            // if file exists and contains preferences, apply these
+            applySavedPreferences();
         }
-        if (previousActivity.hasExtra("price")) {
-            coinPrice = previousActivity.getStringExtra("price");
-            String displayPrice = "$" + coinPrice;
-            // set price text
-            price.setText(displayPrice);
+    }
+
+    /**
+     * While the activity is visible, keep the list, and so this coin, refreshing
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refreshTicker.start();
+        priceFeed.subscribe(coinId, this);
+        loadChart();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        refreshTicker.stop();
+        priceFeed.unsubscribe(this);
+        mainHandler.removeCallbacks(applyLivePrice);
+    }
+
+    /**
+     * Hand a live price over to the main thread. Called on the feed thread; a tick that
+     * arrives before the previous one was shown replaces it
+     * @param coin coin's latest data
+     */
+    @Override
+    public void onPrice(final Crypto coin) {
+        latestPrice = coin.priceFixed;
+        portfolio.updatePrice(coin.coinId, coin.priceFixed);
+        if (livePrice.offer(coin)) {
+            mainHandler.post(applyLivePrice);
         }
-        if (previousActivity.hasExtra("symbol")) {
-            coinSymbol = previousActivity.getStringExtra("symbol");
-            // set symbol text
-            symbol.setText(coinSymbol);
+        if (history != null) {
+            final long time = System.currentTimeMillis();
+            historyExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        history.append(coin.coinId, time, coin.priceFixed);
+                    } catch (IOException e) {
+                        // the tick is still shown, it just won't be in the chart
+                    }
+                }
+            });
         }
-        if (previousActivity.hasExtra("dailypchange")) {
-            dailyPChange = previousActivity.getStringExtra("dailypchange");
-            String displayPChange;
-            int textColour;
+    }
 
-            if(dailyPChange.contains("-")){
-                displayPChange = dailyPChange + "% (24h)";
-                // make negative changes red
-                textColour = Color.parseColor("#FF5656");
-            }
-            else{
-                displayPChange = "+" + dailyPChange + "% (24h)";
-                // make positive changes green
-                textColour = Color.parseColor("#4CAF50");
+    /**
+     * Read the coin's recorded prices off the main thread and chart them
+     */
+    private void loadChart() {
+        if (history == null) {
+            return;
+        }
+        final String id = coinId;
+        historyExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[] times = new long[PriceChartView.MAX_POINTS];
+                final long[] prices = new long[PriceChartView.MAX_POINTS];
+                long now = System.currentTimeMillis();
+                int read;
+                try {
+                    read = history.query(id, now - CHART_MILLIS, now, times, prices);
+                } catch (IOException e) {
+                    read = 0;
+                }
+                final int count = read;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        chart.setPoints(times, prices, count);
+                        if (count > 1) {
+                            chart.setLineColor(prices[count - 1] < prices[0] ? fallingColour : risingColour);
+                        }
+                    }
+                });
             }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeListener(this);
+    }
 
-            // set daily percentage change text and colour
-            DPercentage.setText(displayPChange);
-            DPercentage.setTextColor(textColour);
+    /**
+     * Show the coin from a newly streamed page, if it hasn't been found yet
+     */
+    @Override
+    public void onPage(Crypto[] page, int start) {
+        if (coinName.isEmpty()) {
+            showCoin(repository.getRegistry().get(coinId));
         }
-        if (previousActivity.hasExtra("hourlypchange")) {
-            String displayHPChange;
-            int textColour;
-            hourlyPChange = previousActivity.getStringExtra("hourlypchange");
+    }
 
-            if(hourlyPChange.contains("-")){
-                displayHPChange = hourlyPChange + "% (1h)";
-                // make negative changes red
-                textColour = Color.parseColor("#FF5656");
-            }
-            else{
-                displayHPChange = "+" + hourlyPChange + "% (1h)";
-                // make positive changes green
-                textColour = Color.parseColor("#4CAF50");
+    /**
+     * Show the coin's data from a new list
+     */
+    @Override
+    public void onSnapshot(TickerSnapshot snapshot, CryptoSearchIndex searchIndex, CryptoSortOrders sortOrders) {
+        showCoin(repository.getRegistry().get(coinId));
+        // pick up the prices recorded since the chart was last drawn
+        loadChart();
+    }
+
+    /**
+     * Keep showing the last known data when a refresh fails, the list screen reports failures
+     */
+    @Override
+    public void onRefreshFailed(IOException e) {}
+
+    /**
+     * Fill the page with a coin's data
+     * @param coin coin to show, or null if it isn't loaded yet
+     */
+    private void showCoin(Crypto coin) {
+        if (coin == null) {
+            return;
+        }
+
+        // set title and symbol text, which never change for a coin
+        if (!coin.coinName.equals(coinName)) {
+            coinName = coin.coinName;
+            title.setText(coinName);
+        }
+        if (!coin.coinSymbol.equals(coinSymbol)) {
+            coinSymbol = coin.coinSymbol;
+            symbol.setText(coinSymbol);
+        }
+
+        // set whichever of the price and change texts differ from what is shown
+        latestPrice = coin.priceFixed;
+        livePrice.apply(coin, this);
+        showHolding();
+        showIndicators();
+    }
+
+    /**
+     * Show the coin's moving averages, how far its price is from them and how volatile it has
+     * been, over the last few refreshes of the list
+     */
+    private void showIndicators() {
+        if (indicators == null) {
+            return;
+        }
+        double sma = indicators.sma(coinId);
+        double volatility = indicators.volatility(coinId);
+        if (sma != sma) {
+            indicatorsText.setText("");
+            return;
+        }
+        int window = indicators.getWindow();
+        char[] buffer = new char[32];
+        String smaText = new String(buffer, 0,
+                LivePrice.formatDollars(Math.round(sma * Crypto.PRICE_SCALE), buffer));
+        String emaText = new String(buffer, 0,
+                LivePrice.formatDollars(Math.round(indicators.ema(coinId) * Crypto.PRICE_SCALE), buffer));
+        String text = "SMA(" + window + ") " + smaText + "  EMA(" + window + ") " + emaText;
+        double trend = indicators.trend(coinId);
+        if (trend == trend) {
+            text += "\nvs SMA " + String.format(Locale.US, "%+.2f%%", trend);
+        }
+        if (volatility == volatility) {
+            text += "  Volatility " + String.format(Locale.US, "%.2f%%", volatility);
+        }
+        indicatorsText.setText(text);
+    }
+
+    /**
+     * Show how much of the coin the user holds, what it is worth and the profit or loss on it,
+     * or that it is on their watchlist if they hold none. Only redrawn when the quantity, value
+     * or profit moved, and written into reused buffers so a live tick builds no Strings
+     */
+    private void showHolding() {
+        int position = portfolio.indexOf(coinId);
+        if (position < 0) {
+            if (shownQuantity >= 0) {
+                shownQuantity = -1;
+                holding.setText("");
             }
+            return;
+        }
+        long quantity = portfolio.quantity(position);
+        long value = portfolio.value(position);
+        long profit = portfolio.profit(position);
+        if (quantity == shownQuantity && value == shownValue && profit == shownProfit) {
+            return;
+        }
+        if (quantity != shownQuantity) {
+            // only changes when the user adds to the position
+            quantityText = BigDecimal.valueOf(quantity, 8).stripTrailingZeros().toPlainString();
+        }
+        shownQuantity = quantity;
+        shownValue = value;
+        shownProfit = profit;
 
-            // set hourly percentage change text and colour
-            HPercentage.setText(displayHPChange);
-            HPercentage.setTextColor(textColour);
+        int length;
+        if (quantity == 0) {
+            length = appendHolding(0, "On your watchlist");
+        } else {
+            length = appendHolding(0, "You hold ");
+            length = appendHolding(length, quantityText);
+            length = appendHolding(length, " ");
+            length = appendHolding(length, portfolio.symbol(position));
+            length = appendHolding(length, ", worth ");
+            length = appendHolding(length, amountText, LivePrice.formatDollars(value, amountText));
+            length = appendHolding(length, profit >= 0 ? " (+" : " (");
+            length = appendHolding(length, amountText, LivePrice.formatDollars(profit, amountText));
+            length = appendHolding(length, ")");
         }
+        holding.setText(holdingText, 0, length);
+        holding.setTextColor(profit < 0 ? fallingColour : risingColour);
+    }
 
-        // get shared preferences and editor
-        mySharedPreferences = getSharedPreferences(PREFS, 0);
-        myEditor = mySharedPreferences.edit();
+    private int appendHolding(int length, String text) {
+        ensureHoldingText(length + text.length());
+        text.getChars(0, text.length(), holdingText, length);
+        return length + text.length();
+    }
 
-        // check preferences file been already created
-        if (mySharedPreferences != null && mySharedPreferences.contains("backColor")) {
-            // if file exists and contains preferences, apply these
-            applySavedPreferences();
+    private int appendHolding(int length, char[] text, int count) {
+        ensureHoldingText(length + count);
+        System.arraycopy(text, 0, holdingText, length, count);
+        return length + count;
+    }
+
+    // only a very long symbol or quantity outgrows the buffer
+    private void ensureHoldingText(int capacity) {
+        if (capacity > holdingText.length) {
+            holdingText = Arrays.copyOf(holdingText, Math.max(capacity, holdingText.length * 2));
+        }
+    }
+
+    /**
+     * When the user clicks the add to portfolio button, add the amount typed into the convert
+     * box to their holding, bought at the current price. With no amount the coin is added to
+     * their watchlist, as a position of zero coins
+     * @param v current view
+     */
+    public void addToPortfolio(View v) {
+        long quantity = Crypto.parseFixed(convertEntry.getText().toString());
+        long price = latestPrice;
+        if (quantity < 0 || price == Portfolio.NO_PRICE) {
+            Toast.makeText(getApplicationContext(), "Enter how many coins you bought", Toast.LENGTH_SHORT).show();
+            return;
         }
+        portfolio.add(coinId, coinSymbol, quantity, Portfolio.value(quantity, price));
+        portfolio.updatePrice(coinId, price);
+        CryptoListActivity.savePortfolio();
+        showHolding();
+    }
+
+    @Override
+    public void showPrice(char[] text, int length) {
+        price.setText(text, 0, length);
+    }
+
+    /**
+     * Set daily percentage change text, making negative changes red and positive changes green
+     */
+    @Override
+    public void showDailyChange(String text, boolean negative) {
+        // change text arrives ready to display, e.g. "+1.32%"
+        dailyPChange = text;
+        DPercentage.setText(dailyText, 0, withSuffix(text, DAILY_SUFFIX, dailyText));
+        DPercentage.setTextColor(negative ? fallingColour : risingColour);
+    }
+
+    /**
+     * Set hourly percentage change text, making negative changes red and positive changes green
+     */
+    @Override
+    public void showHourlyChange(String text, boolean negative) {
+        hourlyPChange = text;
+        HPercentage.setText(hourlyText, 0, withSuffix(text, HOURLY_SUFFIX, hourlyText));
+        HPercentage.setTextColor(negative ? fallingColour : risingColour);
+    }
+
+    @Override
+    public void showConverted(char[] text, int length) {
+        converted.setText(text, 0, length);
+    }
+
+    /**
+     * Copy a text and a suffix into a buffer, cutting the text short if it doesn't fit
+     * @return length written
+     */
+    private static int withSuffix(String text, String suffix, char[] out) {
+        int textLength = Math.min(text.length(), out.length - suffix.length());
+        text.getChars(0, textLength, out, 0);
+        suffix.getChars(0, suffix.length(), out, textLength);
+        return textLength + suffix.length();
     }
 
     /**
@@ -133,11 +459,16 @@ public class CryptoMoreInfo extends AppCompatActivity {
      */
     public void onClickShareTextButton(View v) {
         // when share button clicked, create string to share
+        // the change text always starts with its sign, e.g. "-1.32%"
         String sharingText = "";
-        if(dailyPChange.contains("-")){
-            sharingText = coinName + " is down " + dailyPChange.substring(1) + "% today. Is it time to invest?!";
+        if (dailyPChange.isEmpty()) {
+            // nothing to share until the coin has loaded
+            return;
+        }
+        if(dailyPChange.startsWith("-")){
+            sharingText = coinName + " is down " + dailyPChange.substring(1) + " today. Is it time to invest?!";
         }else{
-            sharingText = coinName + " is up " + dailyPChange + "% today. Is it time to sell?!";
+            sharingText = coinName + " is up " + dailyPChange.substring(1) + " today. Is it time to sell?!";
         }
         shareText(sharingText);
     }
@@ -162,25 +493,51 @@ public class CryptoMoreInfo extends AppCompatActivity {
                 .startChooser();
     }
 
+    /**
+     * When the user clicks the alert above button, alert them when the price rises above the
+     * price they typed
+     * @param v current view
+     */
+    public void alertAbove(View v) {
+        addAlert(true);
+    }
+
+    /**
+     * When the user clicks the alert below button, alert them when the price falls below the
+     * price they typed
+     * @param v current view
+     */
+    public void alertBelow(View v) {
+        addAlert(false);
+    }
+
+    private void addAlert(boolean above) {
+        long threshold = Crypto.parseFixed(alertEntry.getText().toString());
+        if (threshold <= 0 || coinSymbol.isEmpty()) {
+            Toast.makeText(getApplicationContext(), "Enter a price to be alerted at", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        PriceAlert alert = new PriceAlert(nextAlertId.incrementAndGet(), coinId, coinSymbol,
+                PriceAlert.PRICE, above, threshold);
+        // the engine may not have seen the coin in a list yet, so the price shown counts too
+        long price = latestPrice;
+        boolean holds = alertEngine.add(alert) || (price != Portfolio.NO_PRICE && alert.holdsAt(price));
+        // an alert only fires when the price crosses its threshold, say so if it already has
+        Toast.makeText(getApplicationContext(), holds ? alert.describe() + " already"
+                : "Alert set: " + alert.describe(), Toast.LENGTH_SHORT).show();
+    }
+
     /**
      * On entry of text into the convert box, and clicking the convert button, display the value
      * of their currency in dollars
      * @param v current view
      */
     public void currencyConvert(View v){
-        // get user's typed number and calculate coin worth
+        // get user's typed number and calculate coin worth, anything unreadable counts as zero
         String textEntered = convertEntry.getText().toString();
-        double coinPriceInt = 0.0;
-        double userCoins = 0.0;
-
-        try {
-            coinPriceInt = Double.parseDouble(coinPrice);
-            userCoins = Double.parseDouble(textEntered);
-        }catch(Exception e){}
-
-        double result = coinPriceInt * userCoins;
-        String strResult = "$" + result;
+        long userCoins = Math.max(0, Crypto.parseFixed(textEntered));
 
-        converted.setText(strResult);
+        // the converted value is shown now and then follows every new price
+        livePrice.setConvertCoins(userCoins, this);
     }
 }
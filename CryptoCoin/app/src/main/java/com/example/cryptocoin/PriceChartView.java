@@ -0,0 +1,110 @@
+package com.example.cryptocoin;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Line chart of a coin's price over time. Points are copied into arrays the view owns and the
+ * line is rebuilt only when they change, so drawing allocates nothing
+ */
+public class PriceChartView extends View {
+
+    // most points the chart draws, matching what a history query is asked for
+    public static final int MAX_POINTS = 200;
+
+    private final long[] times = new long[MAX_POINTS];
+    private final long[] prices = new long[MAX_POINTS];
+    private int count;
+    private final Path line = new Path();
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private boolean lineStale = true;
+
+    public PriceChartView(Context context) {
+        this(context, null);
+    }
+
+    public PriceChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(3 * getResources().getDisplayMetrics().density);
+        paint.setColor(0xFF878686);
+    }
+
+    /**
+     * Show a new set of points
+     * @param newTimes time of each point, oldest first
+     * @param newPrices price of each point, in 1/Crypto.PRICE_SCALE dollars
+     * @param newCount number of points to use from the arrays
+     */
+    public void setPoints(long[] newTimes, long[] newPrices, int newCount) {
+        count = Math.min(newCount, MAX_POINTS);
+        System.arraycopy(newTimes, 0, times, 0, count);
+        System.arraycopy(newPrices, 0, prices, 0, count);
+        lineStale = true;
+        invalidate();
+    }
+
+    /**
+     * Colour the line, e.g. to match whether the price is rising or falling
+     */
+    public void setLineColor(int color) {
+        if (paint.getColor() != color) {
+            paint.setColor(color);
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        lineStale = true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (count < 2) {
+            return;
+        }
+        if (lineStale) {
+            buildLine();
+            lineStale = false;
+        }
+        canvas.drawPath(line, paint);
+    }
+
+    /**
+     * Scale the points to fill the view, inside its padding
+     */
+    private void buildLine() {
+        line.reset();
+        long minPrice = prices[0];
+        long maxPrice = prices[0];
+        for (int i = 1; i < count; i++) {
+            minPrice = Math.min(minPrice, prices[i]);
+            maxPrice = Math.max(maxPrice, prices[i]);
+        }
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        double timeSpan = Math.max(1, times[count - 1] - times[0]);
+        double priceSpan = Math.max(1, maxPrice - minPrice);
+
+        for (int i = 0; i < count; i++) {
+            float x = left + (float) ((times[i] - times[0]) / timeSpan * width);
+            // a flat price is drawn across the middle
+            float y = maxPrice == minPrice ? top + height / 2
+                    : top + (float) ((maxPrice - prices[i]) / priceSpan * height);
+            if (i == 0) {
+                line.moveTo(x, y);
+            } else {
+                line.lineTo(x, y);
+            }
+        }
+    }
+}
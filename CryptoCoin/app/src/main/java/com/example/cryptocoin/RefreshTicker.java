@@ -0,0 +1,59 @@
+package com.example.cryptocoin;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Ticks a RefreshScheduler from the main thread while a screen is visible, waiting between
+ * ticks until the next refresh is due. Each visible screen owns one, started in onStart and
+ * stopped in onStop
+ */
+public class RefreshTicker {
+    // shortest wait between ticks, so a refresh that is due now can't spin the main thread
+    private static final long MIN_TICK_MILLIS = 1000L;
+
+    // tickers currently started, only touched on the main thread. When one activity opens
+    // another, the new one starts before the old one stops, and refreshes must carry on
+    private static int startedTickers;
+
+    private final RefreshScheduler scheduler;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean started;
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            scheduler.tick();
+            handler.postDelayed(this, Math.max(scheduler.millisUntilDue(), MIN_TICK_MILLIS));
+        }
+    };
+
+    public RefreshTicker(RefreshScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Start ticking, refreshing straight away if a refresh is due
+     */
+    public void start() {
+        if (!started) {
+            started = true;
+            startedTickers++;
+        }
+        scheduler.start();
+        handler.removeCallbacks(tick);
+        handler.post(tick);
+    }
+
+    /**
+     * Stop ticking. The scheduler is stopped too once no other screen is ticking it
+     */
+    public void stop() {
+        handler.removeCallbacks(tick);
+        if (started) {
+            started = false;
+            if (--startedTickers == 0) {
+                scheduler.stop();
+            }
+        }
+    }
+}
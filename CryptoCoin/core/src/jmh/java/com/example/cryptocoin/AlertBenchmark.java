@@ -0,0 +1,98 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of checking 10k alerts against a new list with the alert engine, and for comparison
+ * of checking every alert against its coin. Lists alternate between two refreshes so about one
+ * coin in fifty moves each time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlertBenchmark {
+
+    @Param({"1000", "5000"})
+    public int coins;
+
+    @Param({"10000"})
+    public int alerts;
+
+    private TickerSnapshot[] lists;
+    private int list;
+    private AlertEngine engine;
+    private PriceAlert[] all;
+    private boolean[] armed;
+    private int fired;
+    private final AlertEngine.Listener counter = new AlertEngine.Listener() {
+        @Override
+        public void onAlert(PriceAlert alert, long value) {
+            fired++;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        Crypto[] cryptos = BenchmarkData.cryptos(coins);
+        lists = new TickerSnapshot[] {
+                TickerSnapshot.of(cryptos, 0),
+                TickerSnapshot.of(BenchmarkData.refreshed(cryptos), 1),
+        };
+        CryptoRows rows = lists[0].rows;
+
+        Random random = new Random(alerts);
+        engine = new AlertEngine();
+        all = new PriceAlert[alerts];
+        armed = new boolean[alerts];
+        for (int i = 0; i < alerts; i++) {
+            // alerts bunch on the popular coins at the top of the list
+            int row = Math.min(random.nextInt(coins), random.nextInt(coins));
+            boolean onPrice = random.nextInt(3) > 0;
+            long price = rows.priceFixed(row);
+            long threshold = onPrice ? price + (random.nextInt(41) - 20) * price / 100 : random.nextInt(2001) - 1000;
+            all[i] = new PriceAlert(i, rows.id(row), rows.symbol(row),
+                    onPrice ? PriceAlert.PRICE : PriceAlert.HOURLY_CHANGE, random.nextBoolean(), threshold);
+            engine.add(all[i]);
+            armed[i] = true;
+        }
+    }
+
+    @Benchmark
+    public int engine() {
+        list ^= 1;
+        return engine.evaluate(lists[list], counter);
+    }
+
+    @Benchmark
+    public int everyAlert() {
+        list ^= 1;
+        CryptoRows rows = lists[list].rows;
+        HashMap<String, Integer> rowsById = CoinRegistry.index(rows);
+        int count = 0;
+        for (int i = 0; i < all.length; i++) {
+            PriceAlert alert = all[i];
+            long value = PriceAlert.valueOf(rows, rowsById.get(alert.coinId), alert.field);
+            long rearm = AlertEngine.rearmLevel(alert.field, alert.above, alert.threshold);
+            boolean past = alert.above ? value > alert.threshold : value < alert.threshold;
+            boolean back = alert.above ? value <= rearm : value >= rearm;
+            if (armed[i] && past) {
+                armed[i] = false;
+                count++;
+            } else if (!armed[i] && back) {
+                armed[i] = true;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the market figures scale with the threads they are split over, from one up to more
+ * than most phones have, and for comparison the sequential pass with full sorts they replace.
+ * Lists are large enough to be split many times
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalyticsBenchmark {
+
+    @Param({"10000", "100000"})
+    public int coins;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private CryptoRows rows;
+    private ForkJoinPool pool;
+    private MarketAnalytics analytics;
+
+    @Setup
+    public void setUp() {
+        rows = TickerSnapshot.of(BenchmarkData.cryptos(coins), 0).rows;
+        pool = new ForkJoinPool(threads);
+        analytics = new MarketAnalytics(pool, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public MarketAnalytics.Summary summarize() {
+        return analytics.summarize(rows);
+    }
+
+    @Benchmark
+    public double sortEverything() {
+        // a lower bound for the sequential way: one sort gives the bands and the extreme changes,
+        // though not which coins they belong to. The thread count makes no difference to it
+        int size = rows.size();
+        double[] changes = new double[size];
+        double sum = 0;
+        for (int row = 0; row < size; row++) {
+            changes[row] = rows.dailyChange(row);
+            sum += changes[row];
+        }
+        Arrays.sort(changes);
+        return sum + changes[size / 2] + changes[size - 1] + changes[0];
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.cryptocoin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Lists of coins and API payloads shaped like coinlore's, generated from a fixed seed so every
+ * run measures the same data
+ */
+final class BenchmarkData {
+
+    private static final String[] WORDS = {"Bit", "coin", "Ether", "eum", "Doge", "Lite", "Cash", "Gold",
+            "Swap", "Chain", "Link", "Moon", "Token", "X", "Shiba", "Inu"};
+
+    private BenchmarkData() {}
+
+    /**
+     * @return size coins with coinlore style ids, names made of common coin words, and prices
+     * spread over several orders of magnitude
+     */
+    static Crypto[] cryptos(int size) {
+        Random random = new Random(size);
+        Crypto[] cryptos = new Crypto[size];
+        for (int i = 0; i < size; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + (random.nextBoolean() ? " " : "")
+                    + WORDS[random.nextInt(WORDS.length)];
+            String symbol = name.substring(0, Math.min(3, name.length())).toUpperCase() + i;
+            cryptos[i] = new Crypto(String.valueOf(90 + i), symbol, name, price(random),
+                    change(random), change(random));
+        }
+        return cryptos;
+    }
+
+    /**
+     * @return the same coins as the list, with the price and changes of about one in fifty moved,
+     * as a refresh a minute later would have them
+     */
+    static Crypto[] refreshed(Crypto[] cryptos) {
+        Random random = new Random(cryptos.length + 1);
+        Crypto[] refreshed = cryptos.clone();
+        for (int i = 0; i < refreshed.length; i++) {
+            if (random.nextInt(50) == 0) {
+                Crypto old = refreshed[i];
+                refreshed[i] = new Crypto(old.coinId, old.coinSymbol, old.coinName, price(random),
+                        change(random), change(random));
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * @return the tickers endpoint's response for the coins, with every field the API sends
+     */
+    static byte[] tickersJson(Crypto[] cryptos) {
+        StringBuilder json = new StringBuilder(cryptos.length * 400).append("{\"data\":[");
+        for (int i = 0; i < cryptos.length; i++) {
+            Crypto crypto = cryptos[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(crypto.coinId)
+                    .append("\",\"symbol\":\"").append(crypto.coinSymbol)
+                    .append("\",\"name\":\"").append(crypto.coinName)
+                    .append("\",\"nameid\":\"").append(crypto.coinName.toLowerCase().replace(' ', '-'))
+                    .append("\",\"rank\":").append(i + 1)
+                    .append(",\"price_usd\":\"").append(crypto.coinPrice)
+                    .append("\",\"percent_change_24h\":\"").append(crypto.dailyPercentageChange)
+                    .append("\",\"percent_change_1h\":\"").append(crypto.hourlyPercentageChange)
+                    .append("\",\"percent_change_7d\":\"3.12\",\"price_btc\":\"0.00001234\"")
+                    .append(",\"market_cap_usd\":\"123456789.12\",\"volume24\":98765432.1")
+                    .append(",\"volume24a\":87654321.9,\"csupply\":\"19000000.00\"")
+                    .append(",\"tsupply\":\"19000000\",\"msupply\":\"21000000\"}");
+        }
+        json.append("],\"info\":{\"coins_num\":").append(cryptos.length).append(",\"time\":1650000000}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String price(Random random) {
+        int scale = random.nextInt(6);
+        long cents = 1 + random.nextInt(10000000);
+        return scale == 0 ? String.valueOf(cents)
+                : cents / 100 + "." + String.format("%0" + scale + "d", random.nextInt((int) Math.pow(10, scale)));
+    }
+
+    private static String change(Random random) {
+        return (random.nextInt(2001) - 1000) / 100.0 + "";
+    }
+}
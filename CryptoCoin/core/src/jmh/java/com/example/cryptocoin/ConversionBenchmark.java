@@ -0,0 +1,44 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the conversion maths run on every live price: valuing a quantity of a coin exactly
+ * and formatting it as dollars, against doing the same with BigDecimal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionBenchmark {
+
+    private long quantity;
+    private long price;
+    private final char[] buffer = new char[32];
+
+    @Setup
+    public void setUp() {
+        quantity = Crypto.parseFixed("2.75");
+        price = Crypto.parseFixed("41230.55123456");
+    }
+
+    @Benchmark
+    public int valueAndFormat() {
+        return LivePrice.formatDollars(Portfolio.value(quantity, price), buffer);
+    }
+
+    @Benchmark
+    public String valueAndFormatWithBigDecimal() {
+        return BigDecimal.valueOf(quantity, 8).multiply(BigDecimal.valueOf(price, 8))
+                .setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+}
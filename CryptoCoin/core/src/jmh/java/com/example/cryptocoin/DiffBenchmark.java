@@ -0,0 +1,63 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to find the rows a refresh changed, for a list shown in its own order and sorted by price
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiffBenchmark {
+
+    @Param({"100", "2000", "10000"})
+    public int coins;
+
+    private CryptoRows oldRows;
+    private CryptoRows newRows;
+    private int[] listOrder;
+    private int[] oldByPrice;
+    private int[] newByPrice;
+    private int[] changed;
+
+    @Setup
+    public void setUp() {
+        Crypto[] cryptos = BenchmarkData.cryptos(coins);
+        oldRows = TickerSnapshot.of(cryptos, 0).rows;
+        newRows = TickerSnapshot.of(BenchmarkData.refreshed(cryptos), 1).rows;
+        listOrder = new int[coins];
+        for (int i = 0; i < coins; i++) {
+            listOrder[i] = i;
+        }
+        oldByPrice = new CryptoSortOrders(oldRows).order(CryptoSortOrders.PRICE, true);
+        newByPrice = new CryptoSortOrders(newRows).order(CryptoSortOrders.PRICE, true);
+        changed = new int[coins];
+    }
+
+    @Benchmark
+    public int listOrder() {
+        return RowDiff.changedPositions(oldRows, listOrder, newRows, listOrder, changed);
+    }
+
+    @Benchmark
+    public int unchanged() {
+        return RowDiff.changedPositions(oldRows, listOrder, oldRows, listOrder, changed);
+    }
+
+    /**
+     * New prices move coins in a sorted list, which the one pass gives up on for a full diff
+     */
+    @Benchmark
+    public int sortedByPrice() {
+        return RowDiff.changedPositions(oldRows, oldByPrice, newRows, newByPrice, changed);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of filtering the list by a search, through the search index and, for comparison, the
+ * scan of every name and symbol the list used before it had one. Sorted filtering puts the
+ * matches in price order the way the list does when it is sorted
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    @Param({"100", "2000", "10000"})
+    public int coins;
+
+    // a single letter matches much of the list, a word some of it, and the last almost nothing
+    @Param({"b", "coin", "shiba inu"})
+    public String query;
+
+    private CryptoRows rows;
+    private CryptoSearchIndex index;
+    private CryptoSortOrders sortOrders;
+    private int[] matches;
+    private int[] sorted;
+
+    @Setup
+    public void setUp() {
+        rows = TickerSnapshot.of(BenchmarkData.cryptos(coins), 0).rows;
+        index = new CryptoSearchIndex(rows);
+        sortOrders = new CryptoSortOrders(rows);
+        matches = new int[coins];
+        sorted = new int[coins];
+    }
+
+    @Benchmark
+    public int indexSearch() {
+        return index.search(query, matches);
+    }
+
+    @Benchmark
+    public int indexSearchSorted() {
+        int count = index.search(query, matches);
+        return sortOrders.select(CryptoSortOrders.PRICE, true, matches, count, sorted);
+    }
+
+    @Benchmark
+    public int scan() {
+        String lower = query.toLowerCase();
+        int count = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.name(row).toLowerCase().contains(lower) || rows.symbol(row).toLowerCase().contains(lower)) {
+                matches[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public CryptoSearchIndex buildIndex() {
+        return new CryptoSearchIndex(rows);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap a parsed list keeps alive per coin, as Crypto objects and as columns. Each run parses
+ * the API's response, keeps only the rows, and reports how much the live heap grew, divided by
+ * the number of coins, as the bytesPerCoin counter next to the time. Heap is measured after
+ * collecting, so runs are slow and each is timed once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class FootprintBenchmark {
+
+    @Param({"1000", "10000"})
+    public int coins;
+
+    @Param({"objects", "columns"})
+    public String layout;
+
+    private byte[] json;
+
+    /**
+     * Extra results reported with each run
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerCoin;
+    }
+
+    @Setup
+    public void setUp() {
+        json = BenchmarkData.tickersJson(BenchmarkData.cryptos(coins));
+    }
+
+    @Benchmark
+    public CryptoRows retained(Footprint footprint) throws IOException {
+        long before = liveHeap();
+        CryptoRows rows = parse();
+        long after = liveHeap();
+        footprint.bytesPerCoin = (after - before) / (double) coins;
+        return rows;
+    }
+
+    // the parsed Crypto[] is only reachable from the rows if the rows are made of it
+    private CryptoRows parse() throws IOException {
+        Crypto[] cryptos = TickerParser.parse(new ByteArrayInputStream(json));
+        return "columns".equals(layout) ? new CryptoColumnStore(cryptos) : new CryptoArrayRows(cryptos);
+    }
+
+    private static long liveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the heap stops shrinking, one System.gc() may leave garbage behind
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of moving every coin's indicators on by one tick, as each refresh does, and for
+ * comparison of recomputing the same averages and volatility from each coin's last window
+ * prices. Ticks alternate between two lists so every price keeps moving
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IndicatorBenchmark {
+
+    @Param({"1000", "10000"})
+    public int coins;
+
+    @Param({"20", "100"})
+    public int window;
+
+    private CryptoRows[] ticks;
+    private int tick;
+    private CoinIndicators indicators;
+    // each coin's last window prices, for recomputing
+    private double[][] history;
+
+    @Setup
+    public void setUp() {
+        Crypto[] cryptos = BenchmarkData.cryptos(coins);
+        ticks = new CryptoRows[] {
+                TickerSnapshot.of(cryptos, 0).rows,
+                TickerSnapshot.of(BenchmarkData.refreshed(cryptos), 0).rows,
+        };
+        // fill every coin's window, so ticks drop old prices as well as add new ones
+        indicators = new CoinIndicators(window);
+        history = new double[coins][window];
+        for (int i = 0; i < window; i++) {
+            indicators.update(ticks[i % 2]);
+            for (int coin = 0; coin < coins; coin++) {
+                history[coin][i] = ticks[i % 2].priceFixed(coin) / (double) Crypto.PRICE_SCALE;
+            }
+        }
+    }
+
+    @Benchmark
+    public CoinIndicators.Values update() {
+        tick ^= 1;
+        return indicators.update(ticks[tick]);
+    }
+
+    @Benchmark
+    public double recompute() {
+        tick ^= 1;
+        CryptoRows rows = ticks[tick];
+        double total = 0;
+        for (int coin = 0; coin < coins; coin++) {
+            double[] prices = history[coin];
+            System.arraycopy(prices, 1, prices, 0, window - 1);
+            prices[window - 1] = rows.priceFixed(coin) / (double) Crypto.PRICE_SCALE;
+
+            double sum = 0;
+            for (double price : prices) {
+                sum += price;
+            }
+            double moveSum = 0;
+            double moveSquares = 0;
+            for (int i = 1; i < window; i++) {
+                double move = (prices[i] - prices[i - 1]) / prices[i - 1] * 100;
+                moveSum += move;
+                moveSquares += move * move;
+            }
+            int moves = window - 1;
+            double variance = (moveSquares - moveSum * moveSum / moves) / (moves - 1);
+            total += sum / window + Math.sqrt(Math.max(0, variance));
+        }
+        return total;
+    }
+}
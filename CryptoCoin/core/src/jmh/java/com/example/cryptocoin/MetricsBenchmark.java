@@ -0,0 +1,58 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What timing a hot path costs: a search of the list with and without being timed, with metrics
+ * on as in debug builds and off as in release builds. The difference should be well under a
+ * few percent of even the quickest search
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetricsBenchmark {
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    private CryptoSearchIndex index;
+    private int[] matches;
+
+    @Setup
+    public void setUp() {
+        Metrics.setEnabled(enabled);
+        Metrics.reset();
+        CryptoRows rows = TickerSnapshot.of(BenchmarkData.cryptos(2000), 0).rows;
+        index = new CryptoSearchIndex(rows);
+        matches = new int[rows.size()];
+    }
+
+    @Benchmark
+    public int search() {
+        return index.search("coin", matches);
+    }
+
+    @Benchmark
+    public int timedSearch() {
+        long start = Metrics.start();
+        int count = index.search("coin", matches);
+        Metrics.stop(Metrics.FILTER, start);
+        return count;
+    }
+
+    @Benchmark
+    public long startStop() {
+        long start = Metrics.start();
+        Metrics.stop(Metrics.BIND, start);
+        return start;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to turn a tickers response into coins, and into the column store the list is kept in
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    @Param({"100", "2000", "10000"})
+    public int coins;
+
+    private byte[] json;
+    private Crypto[] parsed;
+
+    @Setup
+    public void setUp() {
+        json = BenchmarkData.tickersJson(BenchmarkData.cryptos(coins));
+        parsed = BenchmarkData.cryptos(coins);
+    }
+
+    @Benchmark
+    public Crypto[] parse() throws IOException {
+        return TickerParser.parse(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public TickerSnapshot parseIntoColumns() throws IOException {
+        return TickerSnapshot.of(TickerParser.parse(new ByteArrayInputStream(json)), 0);
+    }
+
+    @Benchmark
+    public CryptoColumnStore buildColumns() {
+        return new CryptoColumnStore(parsed);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a tick and of reading back the range the detail chart shows, on a coin with
+ * a day of raw ticks, a week of minutes and three months of hours behind it. Queries either
+ * return every point or, as the chart does, evenly spaced points up to the chart's size
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PriceHistoryBenchmark {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final long START = 1650000000000L;
+    // points the detail chart draws, see PriceChartView.MAX_POINTS
+    private static final int CHART_POINTS = 200;
+
+    private File dir;
+    private PriceHistoryStore store;
+    private long now;
+    private final long[] times = new long[20000];
+    private final long[] prices = new long[20000];
+    private final long[] chartTimes = new long[CHART_POINTS];
+    private final long[] chartPrices = new long[CHART_POINTS];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("history", "");
+        dir.delete();
+        store = new PriceHistoryStore(dir, 10);
+        // a tick a minute for 90 days, compacted as the app would as it went
+        long price = 4000000000000L;
+        for (now = START; now < START + 90 * DAY; now += MINUTE) {
+            price += (now / MINUTE % 7 - 3) * 100000000L;
+            store.append("90", now, price);
+            if ((now - START) % DAY == 0) {
+                store.compact(now);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * A tick a second, compacting once a simulated day so the raw series stays a day long
+     */
+    @Benchmark
+    public void append() throws IOException {
+        now += 1000;
+        store.append("90", now, 4000000000000L + now % 1000);
+        if (now % DAY < 1000) {
+            store.compact(now);
+        }
+    }
+
+    @Benchmark
+    public int queryDay() throws IOException {
+        return store.query("90", now - DAY, now, times, prices);
+    }
+
+    @Benchmark
+    public int queryWeek() throws IOException {
+        return store.query("90", now - 7 * DAY, now, times, prices);
+    }
+
+    @Benchmark
+    public int queryAll() throws IOException {
+        return store.query("90", START, now, times, prices);
+    }
+
+    @Benchmark
+    public int queryWeekForChart() throws IOException {
+        return store.query("90", now - 7 * DAY, now, chartTimes, chartPrices);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.cryptocoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to compute every sort order of a list, against sorting Crypto objects with a comparator
+ * the way a list without precomputed orders would on each sort change
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortBenchmark {
+
+    @Param({"100", "2000", "10000"})
+    public int coins;
+
+    private Crypto[] cryptos;
+    private CryptoRows columns;
+    private CryptoRows objects;
+
+    private static final Comparator<Crypto> BY_PRICE = new Comparator<Crypto>() {
+        @Override
+        public int compare(Crypto a, Crypto b) {
+            return Long.compare(b.priceFixed, a.priceFixed);
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        cryptos = BenchmarkData.cryptos(coins);
+        columns = new CryptoColumnStore(cryptos);
+        objects = new CryptoArrayRows(cryptos);
+    }
+
+    @Benchmark
+    public CryptoSortOrders sortOrdersOfColumns() {
+        return new CryptoSortOrders(columns);
+    }
+
+    @Benchmark
+    public CryptoSortOrders sortOrdersOfObjects() {
+        return new CryptoSortOrders(objects);
+    }
+
+    @Benchmark
+    public Crypto[] comparatorSortByPrice() {
+        Crypto[] sorted = cryptos.clone();
+        Arrays.sort(sorted, BY_PRICE);
+        return sorted;
+    }
+}
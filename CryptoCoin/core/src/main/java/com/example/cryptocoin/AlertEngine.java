@@ -0,0 +1,369 @@
+package com.example.cryptocoin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Evaluates price alerts against each new list. Alerts are indexed by coin and by the value
+ * they watch, and kept sorted by threshold. Each watched coin remembers its price and changes
+ * from the last list, so a coin that didn't move costs one comparison and nothing more; only
+ * when a value changed are the alerts it crossed found, by binary search. Coins nobody has an
+ * alert on are never looked at.
+ *
+ * An alert fires once when its value crosses the threshold, then stays quiet until the value
+ * has moved back past the threshold by a margin (1% of the threshold for prices, half a
+ * percentage point for changes), so a price hovering around a threshold doesn't fire it over
+ * and over. A new alert never fires on the list it is first checked against: if its
+ * condition already holds there, it waits like a fired alert until the value has moved back.
+ * Alerts are only kept in memory, so they are gone once the app's process is. Safe to use from
+ * any thread
+ */
+public class AlertEngine {
+
+    /**
+     * Told about alerts as they fire
+     */
+    public interface Listener {
+        void onAlert(PriceAlert alert, long value);
+    }
+
+    // margin a value must move back past a threshold by before its alert can fire again
+    private static final long PRICE_HYSTERESIS_DIVISOR = 100;
+    private static final long CHANGE_HYSTERESIS = PriceAlert.CHANGE_SCALE / 2;
+
+    // alerts of each coin
+    private final HashMap<String, CoinAlerts> coins = new HashMap<>();
+    // coin of each alert, by alert id
+    private final HashMap<Integer, PriceAlert> alertsById = new HashMap<>();
+    private CoinAlerts[] watched = new CoinAlerts[0];
+    private boolean watchedStale;
+
+    // rows of every coin id in the list being evaluated, only built if a watched coin moved rows
+    private CryptoRows indexedRows;
+    private HashMap<String, Integer> rowsById;
+
+    /**
+     * Add an alert. If its condition already holds for the last value seen, or for the first
+     * value seen when none has been yet, it doesn't fire until the value moves back and crosses
+     * the threshold again
+     * @param alert alert to add, replacing any alert with the same id
+     * @return true if the condition already holds for the last value seen
+     */
+    public synchronized boolean add(PriceAlert alert) {
+        remove(alert.id);
+        alertsById.put(alert.id, alert);
+        CoinAlerts coin = coins.get(alert.coinId);
+        if (coin == null) {
+            coin = new CoinAlerts(alert.coinId);
+            coins.put(alert.coinId, coin);
+            watchedStale = true;
+        }
+        FieldAlerts field = coin.fields[alert.field];
+        if (field == null) {
+            field = new FieldAlerts(alert.field);
+            coin.fields[alert.field] = field;
+            // the new value hasn't been checked yet, so the coin mustn't be skipped next time
+            coin.seen = false;
+        }
+
+        boolean holds = field.seen && alert.holdsAt(field.lastValue);
+        (alert.above ? field.above : field.below).insert(alert, !holds);
+        return holds;
+    }
+
+    /**
+     * Remove an alert
+     * @param alertId id the alert was added with
+     * @return true if there was such an alert
+     */
+    public synchronized boolean remove(int alertId) {
+        PriceAlert alert = alertsById.remove(alertId);
+        if (alert == null) {
+            return false;
+        }
+        CoinAlerts coin = coins.get(alert.coinId);
+        FieldAlerts field = coin.fields[alert.field];
+        (alert.above ? field.above : field.below).remove(alert);
+        if (coin.isEmpty()) {
+            coins.remove(alert.coinId);
+            watchedStale = true;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of alerts
+     */
+    public synchronized int size() {
+        return alertsById.size();
+    }
+
+    /**
+     * Check every alert against a new list
+     * @param snapshot the list
+     * @param listener told about each alert that fires, while the engine is locked
+     * @return number of alerts fired
+     */
+    public synchronized int evaluate(TickerSnapshot snapshot, Listener listener) {
+        if (watchedStale) {
+            watched = coins.values().toArray(new CoinAlerts[0]);
+            watchedStale = false;
+        }
+        CryptoRows rows = snapshot.rows;
+        int rowCount = rows.size();
+        int fired = 0;
+        for (CoinAlerts coin : watched) {
+            // coins rarely change rank between refreshes, so the last row is usually still right
+            int row = coin.rowHint;
+            if (row < 0 || row >= rowCount || !rows.id(row).equals(coin.coinId)) {
+                row = findRow(rows, coin.coinId);
+                coin.rowHint = row;
+                if (row < 0) {
+                    continue;
+                }
+            }
+            if (!coin.moved(rows, row)) {
+                continue;
+            }
+            for (FieldAlerts field : coin.fields) {
+                if (field != null) {
+                    fired += field.update(PriceAlert.valueOf(rows, row, field.field), listener);
+                }
+            }
+        }
+        // don't keep the list alive until the next one
+        indexedRows = null;
+        rowsById = null;
+        return fired;
+    }
+
+    /**
+     * @return row of a coin in a list, or -1 if it isn't in it
+     */
+    private int findRow(CryptoRows rows, String coinId) {
+        if (indexedRows != rows) {
+            rowsById = CoinRegistry.index(rows);
+            indexedRows = rows;
+        }
+        Integer row = rowsById.get(coinId);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * Value an alert must move back past before it can fire again
+     */
+    static long rearmLevel(int field, boolean above, long threshold) {
+        long margin = field == PriceAlert.PRICE ? Math.abs(threshold) / PRICE_HYSTERESIS_DIVISOR : CHANGE_HYSTERESIS;
+        return above ? threshold - margin : threshold + margin;
+    }
+
+    /**
+     * Alerts of one coin
+     */
+    private static class CoinAlerts {
+        final String coinId;
+        final FieldAlerts[] fields = new FieldAlerts[3];
+        int rowHint = -1;
+        // the coin's values in the last list it was checked against
+        boolean seen;
+        long lastPrice;
+        double lastDaily;
+        double lastHourly;
+
+        CoinAlerts(String coinId) {
+            this.coinId = coinId;
+        }
+
+        /**
+         * Remember the coin's values in a new list
+         * @return true if any of them differ from the last list's
+         */
+        boolean moved(CryptoRows rows, int row) {
+            long price = rows.priceFixed(row);
+            double daily = rows.dailyChange(row);
+            double hourly = rows.hourlyChange(row);
+            // compared as Double.compare does, so an unreadable change matches itself
+            if (seen && price == lastPrice && Double.compare(daily, lastDaily) == 0
+                    && Double.compare(hourly, lastHourly) == 0) {
+                return false;
+            }
+            seen = true;
+            lastPrice = price;
+            lastDaily = daily;
+            lastHourly = hourly;
+            return true;
+        }
+
+        boolean isEmpty() {
+            for (FieldAlerts field : fields) {
+                if (field != null && (field.above.size > 0 || field.below.size > 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Alerts on one value of one coin, and the value they were last checked against
+     */
+    private static class FieldAlerts {
+        final int field;
+        final Thresholds above;
+        final Thresholds below;
+        boolean seen;
+        long lastValue;
+
+        FieldAlerts(int field) {
+            this.field = field;
+            above = new Thresholds(field, true);
+            below = new Thresholds(field, false);
+        }
+
+        /**
+         * Move to a new value, firing and rearming the alerts whose thresholds it crossed
+         * @return number of alerts fired
+         */
+        int update(long value, Listener listener) {
+            if (seen && value == lastValue) {
+                return 0;
+            }
+            int fired;
+            if (!seen) {
+                // nothing has crossed anything yet, alerts already past their thresholds just wait
+                fired = 0;
+                above.disarm(0, above.lowerBound(above.thresholds, value));
+                below.disarm(below.upperBound(below.thresholds, value), below.size);
+                seen = true;
+            } else if (value > lastValue) {
+                // above alerts with lastValue <= threshold < value fire,
+                // below alerts with lastValue < rearm level <= value rearm
+                fired = above.fire(above.lowerBound(above.thresholds, lastValue),
+                        above.lowerBound(above.thresholds, value), value, listener);
+                below.rearm(below.upperBound(below.rearmLevels, lastValue),
+                        below.upperBound(below.rearmLevels, value));
+            } else {
+                // below alerts with value < threshold <= lastValue fire,
+                // above alerts with value <= rearm level < lastValue rearm
+                fired = below.fire(below.upperBound(below.thresholds, value),
+                        below.upperBound(below.thresholds, lastValue), value, listener);
+                above.rearm(above.lowerBound(above.rearmLevels, value),
+                        above.lowerBound(above.rearmLevels, lastValue));
+            }
+            lastValue = value;
+            return fired;
+        }
+    }
+
+    /**
+     * Alerts in one direction, sorted by threshold. Rearm levels move with their thresholds, so
+     * they are in sorted order too
+     */
+    private static class Thresholds {
+        final int field;
+        final boolean above;
+        long[] thresholds = new long[4];
+        long[] rearmLevels = new long[4];
+        PriceAlert[] alerts = new PriceAlert[4];
+        boolean[] armed = new boolean[4];
+        int size;
+
+        Thresholds(int field, boolean above) {
+            this.field = field;
+            this.above = above;
+        }
+
+        void insert(PriceAlert alert, boolean isArmed) {
+            if (size == thresholds.length) {
+                int capacity = size * 2;
+                thresholds = Arrays.copyOf(thresholds, capacity);
+                rearmLevels = Arrays.copyOf(rearmLevels, capacity);
+                alerts = Arrays.copyOf(alerts, capacity);
+                armed = Arrays.copyOf(armed, capacity);
+            }
+            int at = upperBound(thresholds, alert.threshold);
+            int moved = size - at;
+            System.arraycopy(thresholds, at, thresholds, at + 1, moved);
+            System.arraycopy(rearmLevels, at, rearmLevels, at + 1, moved);
+            System.arraycopy(alerts, at, alerts, at + 1, moved);
+            System.arraycopy(armed, at, armed, at + 1, moved);
+            thresholds[at] = alert.threshold;
+            rearmLevels[at] = rearmLevel(field, above, alert.threshold);
+            alerts[at] = alert;
+            armed[at] = isArmed;
+            size++;
+        }
+
+        void remove(PriceAlert alert) {
+            for (int i = lowerBound(thresholds, alert.threshold); i < size; i++) {
+                if (alerts[i] == alert) {
+                    int moved = size - i - 1;
+                    System.arraycopy(thresholds, i + 1, thresholds, i, moved);
+                    System.arraycopy(rearmLevels, i + 1, rearmLevels, i, moved);
+                    System.arraycopy(alerts, i + 1, alerts, i, moved);
+                    System.arraycopy(armed, i + 1, armed, i, moved);
+                    alerts[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        int fire(int from, int to, long value, Listener listener) {
+            int fired = 0;
+            for (int i = from; i < to; i++) {
+                if (armed[i]) {
+                    armed[i] = false;
+                    listener.onAlert(alerts[i], value);
+                    fired++;
+                }
+            }
+            return fired;
+        }
+
+        void rearm(int from, int to) {
+            for (int i = from; i < to; i++) {
+                armed[i] = true;
+            }
+        }
+
+        void disarm(int from, int to) {
+            for (int i = from; i < to; i++) {
+                armed[i] = false;
+            }
+        }
+
+        /**
+         * @return index of the first of the first size values at or above value
+         */
+        int lowerBound(long[] values, long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return index of the first of the first size values above value
+         */
+        int upperBound(long[] values, long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches single coins for every screen that needs them, merging requests. Requests arriving
+ * within a short window are sent together as one call to the API's multi-coin form
+ * (/api/ticker/?id=a,b,c), and a request for a coin that is already being fetched waits for that
+ * fetch instead of starting another. Callbacks are called on the coordinator's own threads
+ */
+public class CoinFetchCoordinator {
+
+    /**
+     * Receives the result of one request
+     */
+    public interface Callback {
+        void onCoin(Crypto coin);
+        void onFailure(String coinId, IOException e);
+    }
+
+    // ids per call, keeping urls well inside what servers and proxies accept
+    static final int MAX_IDS_PER_REQUEST = 50;
+    private static final HttpFetcher.BodyParser<Crypto[]> TICKER_PARSER = new HttpFetcher.BodyParser<Crypto[]>() {
+        @Override
+        public Crypto[] parse(InputStream in) throws IOException {
+            return TickerParser.parse(in);
+        }
+    };
+
+    private final HttpFetcher fetcher;
+    private final String baseUrl;
+    private final long windowMillis;
+    private final HttpFetcher.BodyParser<Crypto[]> parser;
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "coin-fetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+    // windows are timed on one thread, and batches fetched on others so a slow call doesn't
+    // hold back the next window
+    private final ScheduledExecutorService windows = Executors.newSingleThreadScheduledExecutor(DAEMON_THREADS);
+    private final ExecutorService fetches = Executors.newCachedThreadPool(DAEMON_THREADS);
+
+    // callbacks waiting for the next batch, and for batches being fetched, by coin id
+    private HashMap<String, ArrayList<Callback>> pending = new HashMap<>();
+    private final HashMap<String, ArrayList<Callback>> inFlight = new HashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong joinedPending = new AtomicLong();
+    private final AtomicLong joinedInFlight = new AtomicLong();
+
+    /**
+     * @param fetcher fetcher used for every call
+     * @param baseUrl url of the single coin endpoint, without any query
+     * @param windowMillis how long requests are collected before they are sent
+     */
+    public CoinFetchCoordinator(HttpFetcher fetcher, String baseUrl, long windowMillis) {
+        this(fetcher, baseUrl, windowMillis, TICKER_PARSER);
+    }
+
+    /**
+     * @param parser reads each batch's response, for tests
+     */
+    CoinFetchCoordinator(HttpFetcher fetcher, String baseUrl, long windowMillis,
+                         HttpFetcher.BodyParser<Crypto[]> parser) {
+        this.fetcher = fetcher;
+        this.baseUrl = baseUrl;
+        this.windowMillis = windowMillis;
+        this.parser = parser;
+    }
+
+    /**
+     * Ask for a coin's latest data
+     * @param coinId id of the coin
+     * @param callback receives the coin, or why it couldn't be fetched
+     */
+    public void request(String coinId, Callback callback) {
+        requests.incrementAndGet();
+        boolean startWindow;
+        synchronized (this) {
+            ArrayList<Callback> fetching = inFlight.get(coinId);
+            if (fetching != null) {
+                fetching.add(callback);
+                joinedInFlight.incrementAndGet();
+                return;
+            }
+            ArrayList<Callback> waiting = pending.get(coinId);
+            if (waiting != null) {
+                waiting.add(callback);
+                joinedPending.incrementAndGet();
+                return;
+            }
+            waiting = new ArrayList<>(1);
+            waiting.add(callback);
+            // the first request of a window starts it
+            startWindow = pending.isEmpty();
+            pending.put(coinId, waiting);
+        }
+        if (startWindow) {
+            windows.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return requests made by callers
+     */
+    public long getRequests() { return requests.get(); }
+
+    /**
+     * @return calls made to the API
+     */
+    public long getCalls() { return calls.get(); }
+
+    /**
+     * @return requests answered by a call made for another request
+     */
+    public long getRequestsSaved() { return Math.max(0, requests.get() - calls.get()); }
+
+    /**
+     * @return requests for a coin another caller had already asked for in the same window
+     */
+    public long getJoinedPending() { return joinedPending.get(); }
+
+    /**
+     * @return requests for a coin that was already being fetched
+     */
+    public long getJoinedInFlight() { return joinedInFlight.get(); }
+
+    /**
+     * Send every request collected in the window, in as few calls as the API allows
+     */
+    private void flush() {
+        String[] ids;
+        synchronized (this) {
+            HashMap<String, ArrayList<Callback>> batch = pending;
+            pending = new HashMap<>();
+            inFlight.putAll(batch);
+            ids = batch.keySet().toArray(new String[0]);
+        }
+        // sorted, so the same coins always make the same url and its validators can be reused
+        Arrays.sort(ids);
+        for (int from = 0; from < ids.length; from += MAX_IDS_PER_REQUEST) {
+            final String[] batch = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + MAX_IDS_PER_REQUEST));
+            fetches.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetchBatch(batch);
+                }
+            });
+        }
+    }
+
+    private void fetchBatch(String[] ids) {
+        calls.incrementAndGet();
+        Crypto[] coins = null;
+        IOException failure = null;
+        try {
+            coins = fetcher.fetch(batchUrl(ids), parser).value;
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            // a malformed response mustn't leave the batch's coins in flight for good
+            failure = new IOException("Could not read coins " + Arrays.toString(ids), e);
+        }
+
+        HashMap<String, Crypto> byId = new HashMap<>();
+        if (coins != null) {
+            for (Crypto coin : coins) {
+                byId.put(coin.coinId, coin);
+            }
+        }
+        // later requests for these coins now start a new fetch, even if a callback throws
+        ArrayList<ArrayList<Callback>> waiting = new ArrayList<>(ids.length);
+        synchronized (this) {
+            for (String id : ids) {
+                waiting.add(inFlight.remove(id));
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            String id = ids[i];
+            Crypto coin = byId.get(id);
+            for (Callback callback : waiting.get(i)) {
+                if (coin != null) {
+                    callback.onCoin(coin);
+                } else {
+                    callback.onFailure(id, failure != null ? failure : new IOException("No coin " + id + " in response"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the url for a batch of coins
+     * @param ids ids of the coins
+     * @return batch url
+     * @throws IOException base url is not valid
+     */
+    URL batchUrl(String[] ids) throws IOException {
+        StringBuilder url = new StringBuilder(baseUrl);
+        url.append(baseUrl.indexOf('?') < 0 ? '?' : '&').append("id=");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                url.append(',');
+            }
+            url.append(ids[i]);
+        }
+        return new URL(url.toString());
+    }
+
+    /**
+     * @return ids of coins waiting for the next batch, for tests
+     */
+    synchronized String[] pendingIds() {
+        return pending.keySet().toArray(new String[0]);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.cryptocoin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Rolling indicators for every coin, moved on by one tick each time a new list arrives: the
+ * simple and exponential moving averages of the price over the last window ticks, and the
+ * volatility, the standard deviation of the percentage moves between those ticks.
+ *
+ * Each coin's recent prices and moves are kept in ring buffers in a few shared primitive
+ * arrays, with running sums, so a tick costs the same whatever the window and nothing is
+ * recomputed from history. The running sums are recomputed from the rings once per window to
+ * stop rounding errors building up. Indicators are NaN until a coin has enough ticks for them.
+ * Safe to use from any thread
+ */
+public class CoinIndicators {
+
+    /**
+     * Indicators for every row of one list, as they stood when the list arrived, for sorting by
+     */
+    public static class Values {
+        final CryptoRows rows;
+        // how far the price is above its moving average, in %
+        public final double[] trend;
+        // standard deviation of the moves between ticks, in %
+        public final double[] volatility;
+
+        Values(CryptoRows rows, double[] trend, double[] volatility) {
+            this.rows = rows;
+            this.trend = trend;
+            this.volatility = volatility;
+        }
+
+        /**
+         * @param list list of coins
+         * @return true if these values were computed for exactly that list
+         */
+        public boolean describes(CryptoRows list) {
+            return rows == list;
+        }
+    }
+
+    public static final int DEFAULT_WINDOW = 20;
+    private static final int INITIAL_COINS = 256;
+
+    private final int window;
+    // weight of each new price in the exponential moving average, as for a window-tick EMA
+    private final double alpha;
+
+    // slot of each coin id, slots are never reused
+    private final HashMap<String, Integer> slots = new HashMap<>();
+    private int coins;
+    // last window prices and moves of each coin, slot * window onwards
+    private double[] prices;
+    private double[] moves;
+    // per slot: ticks seen, running sums, latest price and EMA, and the update it was last moved on in
+    private int[] ticks;
+    private double[] priceSum;
+    private double[] moveSum;
+    private double[] moveSquares;
+    private double[] lastPrice;
+    private double[] ema;
+    private int[] updatedIn;
+    private int updates;
+
+    /**
+     * @param window number of ticks the averages and volatility look back over
+     */
+    public CoinIndicators(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2");
+        }
+        this.window = window;
+        alpha = 2.0 / (window + 1);
+        allocate(INITIAL_COINS);
+    }
+
+    /**
+     * @return number of ticks the indicators look back over
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Move every coin in a list on by one tick. A coin missing from the list keeps its
+     * indicators until it is back; if the list repeats a coin, only its first row counts
+     * @param rows new list of coins
+     * @return every row's indicators after the tick
+     */
+    public synchronized Values update(CryptoRows rows) {
+        int size = rows.size();
+        double[] trend = new double[size];
+        double[] volatility = new double[size];
+        updates++;
+        for (int row = 0; row < size; row++) {
+            int slot = slot(rows.id(row));
+            if (updatedIn[slot] != updates) {
+                updatedIn[slot] = updates;
+                push(slot, rows.priceFixed(row) / (double) Crypto.PRICE_SCALE);
+            }
+            trend[row] = trend(slot);
+            volatility[row] = volatility(slot);
+        }
+        return new Values(rows, trend, volatility);
+    }
+
+    /**
+     * @return the coin's average price over the last window ticks, or NaN if it hasn't been seen
+     */
+    public synchronized double sma(String coinId) {
+        Integer slot = slots.get(coinId);
+        return slot == null ? Double.NaN : sma(slot);
+    }
+
+    /**
+     * @return the coin's exponential moving average price, or NaN if it hasn't been seen
+     */
+    public synchronized double ema(String coinId) {
+        Integer slot = slots.get(coinId);
+        return slot == null ? Double.NaN : ema[slot];
+    }
+
+    /**
+     * @return how far the coin's price is above its moving average in %, or NaN before two ticks
+     */
+    public synchronized double trend(String coinId) {
+        Integer slot = slots.get(coinId);
+        return slot == null ? Double.NaN : trend(slot);
+    }
+
+    /**
+     * @return standard deviation of the coin's moves between ticks in %, or NaN before three ticks
+     */
+    public synchronized double volatility(String coinId) {
+        Integer slot = slots.get(coinId);
+        return slot == null ? Double.NaN : volatility(slot);
+    }
+
+    /**
+     * @return number of ticks seen for a coin
+     */
+    public synchronized int ticks(String coinId) {
+        Integer slot = slots.get(coinId);
+        return slot == null ? 0 : ticks[slot];
+    }
+
+    private int slot(String coinId) {
+        Integer slot = slots.get(coinId);
+        if (slot != null) {
+            return slot;
+        }
+        if (coins == ticks.length) {
+            allocate(coins * 2);
+        }
+        slots.put(coinId, coins);
+        return coins++;
+    }
+
+    private void allocate(int capacity) {
+        prices = prices == null ? new double[capacity * window] : Arrays.copyOf(prices, capacity * window);
+        moves = moves == null ? new double[capacity * window] : Arrays.copyOf(moves, capacity * window);
+        ticks = ticks == null ? new int[capacity] : Arrays.copyOf(ticks, capacity);
+        priceSum = grow(priceSum, capacity);
+        moveSum = grow(moveSum, capacity);
+        moveSquares = grow(moveSquares, capacity);
+        lastPrice = grow(lastPrice, capacity);
+        ema = grow(ema, capacity);
+        updatedIn = updatedIn == null ? new int[capacity] : Arrays.copyOf(updatedIn, capacity);
+    }
+
+    private static double[] grow(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Add a price to a coin's ring, dropping the one a window ago from the running sums
+     */
+    private void push(int slot, double price) {
+        int seen = ticks[slot];
+        int base = slot * window;
+
+        int position = base + seen % window;
+        if (seen >= window) {
+            priceSum[slot] -= prices[position];
+        }
+        prices[position] = price;
+        priceSum[slot] += price;
+
+        if (seen == 0) {
+            ema[slot] = price;
+        } else {
+            ema[slot] += alpha * (price - ema[slot]);
+            double previous = lastPrice[slot];
+            double move = previous > 0 ? (price - previous) / previous * 100 : 0;
+            // the first tick has no move, so moves run one behind prices
+            int moveIndex = base + (seen - 1) % window;
+            if (seen - 1 >= window) {
+                double dropped = moves[moveIndex];
+                moveSum[slot] -= dropped;
+                moveSquares[slot] -= dropped * dropped;
+            }
+            moves[moveIndex] = move;
+            moveSum[slot] += move;
+            moveSquares[slot] += move * move;
+        }
+        lastPrice[slot] = price;
+        ticks[slot] = ++seen;
+
+        if (seen % window == 0) {
+            resum(slot);
+        }
+    }
+
+    /**
+     * Recompute a coin's running sums from its rings, once per window so this stays O(1) a tick
+     */
+    private void resum(int slot) {
+        int base = slot * window;
+        int priceCount = Math.min(ticks[slot], window);
+        int moveCount = Math.min(ticks[slot] - 1, window);
+        double total = 0;
+        for (int i = 0; i < priceCount; i++) {
+            total += prices[base + i];
+        }
+        double sum = 0;
+        double squares = 0;
+        for (int i = 0; i < moveCount; i++) {
+            double move = moves[base + i];
+            sum += move;
+            squares += move * move;
+        }
+        priceSum[slot] = total;
+        moveSum[slot] = sum;
+        moveSquares[slot] = squares;
+    }
+
+    private double sma(int slot) {
+        int count = Math.min(ticks[slot], window);
+        return count == 0 ? Double.NaN : priceSum[slot] / count;
+    }
+
+    private double trend(int slot) {
+        if (ticks[slot] < 2) {
+            return Double.NaN;
+        }
+        double average = sma(slot);
+        return average > 0 ? (lastPrice[slot] / average - 1) * 100 : 0;
+    }
+
+    private double volatility(int slot) {
+        int count = Math.min(ticks[slot] - 1, window);
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double sum = moveSum[slot];
+        double variance = (moveSquares[slot] - sum * sum / count) / (count - 1);
+        return Math.sqrt(Math.max(0, variance));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.cryptocoin;
+
+import java.util.HashMap;
+
+/**
+ * Finds the latest data for a coin by its id in constant time. It follows the current
+ * snapshot, and while the first list is still downloading it also knows the coins on the pages
+ * that have arrived, so any row on screen can be looked up. Safe to use from any thread
+ */
+public class CoinRegistry {
+
+    private TickerSnapshot snapshot;
+    // row of each coin id in snapshot
+    private HashMap<String, Integer> rowsById = new HashMap<>();
+    // coins from pages of the first download, until a complete snapshot replaces them
+    private final HashMap<String, Crypto> streamed = new HashMap<>();
+
+    /**
+     * Follow a new snapshot
+     * @param fresh the snapshot
+     */
+    public void setSnapshot(TickerSnapshot fresh) {
+        // built outside the lock, lookups keep using the previous map meanwhile
+        HashMap<String, Integer> index = index(fresh.rows);
+        synchronized (this) {
+            snapshot = fresh;
+            rowsById = index;
+            streamed.clear();
+        }
+    }
+
+    /**
+     * Remember the coins on a page that arrived before any snapshot
+     * @param page coins on the page
+     */
+    public synchronized void addPage(Crypto[] page) {
+        if (snapshot != null) {
+            return;
+        }
+        for (Crypto coin : page) {
+            if (!streamed.containsKey(coin.coinId)) {
+                streamed.put(coin.coinId, coin);
+            }
+        }
+    }
+
+    /**
+     * Look a coin up by id
+     * @param coinId id the API identifies the coin by
+     * @return the coin's latest data, or null if no list has it
+     */
+    public synchronized Crypto get(String coinId) {
+        Integer row = rowsById.get(coinId);
+        if (row != null) {
+            return snapshot.rows.get(row);
+        }
+        return streamed.get(coinId);
+    }
+
+    /**
+     * @return the snapshot lookups currently resolve against, or null before the first one
+     */
+    public synchronized TickerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Map every coin id in a list to its row. If the API ever repeats an id, the first row wins,
+     * like the list order the user sees
+     * @param rows list of coins
+     * @return row of each id
+     */
+    static HashMap<String, Integer> index(CryptoRows rows) {
+        int size = rows.size();
+        HashMap<String, Integer> index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String id = rows.id(i);
+            if (!index.containsKey(id)) {
+                index.put(id, i);
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * The coinlore tickers endpoint (/api/tickers/), paged with its start and limit parameters.
+ * Pages are fetched through an HttpFetcher, so a page the server reports as unchanged is
+ * neither downloaded nor parsed
+ */
+public class CoinloreSource implements PriceSource {
+
+    private final String name;
+    private final HttpFetcher fetcher;
+    private final String baseUrl;
+
+    /**
+     * @param name name of the source, for stats
+     * @param fetcher fetcher used for every page, which remembers validators between fetches
+     * @param baseUrl url of the tickers endpoint, without any query
+     */
+    public CoinloreSource(String name, HttpFetcher fetcher, String baseUrl) {
+        this.name = name;
+        this.fetcher = fetcher;
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public HttpFetcher.Result<Crypto[]> fetchPage(int start, int limit) throws IOException {
+        return fetcher.fetch(pageUrl(start, limit), new HttpFetcher.BodyParser<Crypto[]>() {
+            @Override
+            public Crypto[] parse(InputStream in) throws IOException {
+                return TickerParser.parse(in);
+            }
+        });
+    }
+
+    /**
+     * Build the url for one page of the ticker list
+     * @param start index of the first coin
+     * @param limit number of coins to request
+     * @return page url
+     * @throws IOException base url is not valid
+     */
+    URL pageUrl(int start, int limit) throws IOException {
+        String separator = baseUrl.indexOf('?') < 0 ? "?" : "&";
+        return new URL(baseUrl + separator + "start=" + start + "&limit=" + limit);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.cryptocoin;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Crypto objects represent one cryptocurrency coin and contain all the information about it.
+ * Numbers are parsed once, when the coin is created, and the text shown for them is prepared
+ * at the same time, so showing a coin never needs any parsing or string building
+ */
+public class Crypto {
+    // prices are stored as fixed-point numbers with this many units to the dollar
+    public static final long PRICE_SCALE = 100000000L;
+    private static final int PRICE_DECIMALS = 8;
+
+    // key the API identifies the coin by, unique unlike names and symbols
+    public String coinId;
+    public String coinSymbol;
+    public String coinName;
+    // price as the API sent it, used for display
+    public String coinPrice;
+    // price in 1/PRICE_SCALE dollars
+    public long priceFixed;
+    public double dailyPercentageChange;
+    public double hourlyPercentageChange;
+    // percentage changes ready for display, e.g. "+1.32%" or "-0.5%"
+    public String dailyChangeText;
+    public String hourlyChangeText;
+    public boolean dailyNegative;
+    public boolean hourlyNegative;
+
+    /**
+     * Create a coin from the text the API sends, using its symbol as its id
+     * @param coinSymbol coin symbol
+     * @param coinName coin name
+     * @param coinPrice price in dollars
+     * @param dailyPercentageChange percentage change over 24 hours
+     * @param hourlyPercentageChange percentage change over 1 hour
+     */
+    public Crypto(String coinSymbol, String coinName, String coinPrice, String dailyPercentageChange, String hourlyPercentageChange){
+        this(coinSymbol, coinSymbol, coinName, coinPrice, dailyPercentageChange, hourlyPercentageChange);
+    }
+
+    /**
+     * Create a coin from the text the API sends
+     * @param coinId id the API identifies the coin by
+     * @param coinSymbol coin symbol
+     * @param coinName coin name
+     * @param coinPrice price in dollars
+     * @param dailyPercentageChange percentage change over 24 hours
+     * @param hourlyPercentageChange percentage change over 1 hour
+     */
+    public Crypto(String coinId, String coinSymbol, String coinName, String coinPrice, String dailyPercentageChange, String hourlyPercentageChange){
+        this(coinId, coinSymbol, coinName, coinPrice, parseFixed(coinPrice),
+                parsePercentage(dailyPercentageChange), changeText(dailyPercentageChange),
+                parsePercentage(hourlyPercentageChange), changeText(hourlyPercentageChange));
+    }
+
+    /**
+     * Create a coin from values that have already been parsed
+     * @param coinId id the API identifies the coin by
+     * @param coinSymbol coin symbol
+     * @param coinName coin name
+     * @param coinPrice price in dollars, as text for display
+     * @param priceFixed price in 1/PRICE_SCALE dollars
+     * @param dailyPercentageChange percentage change over 24 hours
+     * @param dailyChangeText display text for the 24 hour change
+     * @param hourlyPercentageChange percentage change over 1 hour
+     * @param hourlyChangeText display text for the 1 hour change
+     */
+    public Crypto(String coinId, String coinSymbol, String coinName, String coinPrice, long priceFixed,
+                  double dailyPercentageChange, String dailyChangeText,
+                  double hourlyPercentageChange, String hourlyChangeText){
+        this.coinId = coinId;
+        this.coinSymbol = coinSymbol;
+        this.coinName = coinName;
+        this.coinPrice = coinPrice;
+        this.priceFixed = priceFixed;
+        this.dailyPercentageChange = dailyPercentageChange;
+        this.hourlyPercentageChange = hourlyPercentageChange;
+        this.dailyChangeText = dailyChangeText;
+        this.hourlyChangeText = hourlyChangeText;
+        this.dailyNegative = dailyChangeText.startsWith("-");
+        this.hourlyNegative = hourlyChangeText.startsWith("-");
+    }
+
+    /**
+     * @return price in dollars as a double, for maths that doesn't need to be exact
+     */
+    public double getPrice() {
+        return (double) priceFixed / PRICE_SCALE;
+    }
+
+    /**
+     * Turn a percentage change sent by the API into display text, adding a '+' to rises
+     * @param change percentage change as text, e.g. "1.32" or "-0.5"
+     * @return display text, e.g. "+1.32%" or "-0.5%"
+     */
+    static String changeText(String change) {
+        String trimmed = change.trim();
+        if (trimmed.startsWith("-") || trimmed.startsWith("+")) {
+            return trimmed + "%";
+        }
+        return "+" + trimmed + "%";
+    }
+
+    /**
+     * Parse a percentage sent by the API, treating anything unreadable as no change
+     * @param change percentage change as text
+     * @return the percentage
+     */
+    static double parsePercentage(String change) {
+        try {
+            return Double.parseDouble(change.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse a dollar amount into 1/PRICE_SCALE dollars, without going through a double so no
+     * precision is lost. Digits past the eighth decimal place are rounded. Anything unreadable,
+     * or too large to hold, is treated as zero
+     * @param price dollar amount as text, e.g. "41230.55" or "0.00000123"
+     * @return the amount in 1/PRICE_SCALE dollars
+     */
+    public static long parseFixed(String price) {
+        String text = price.trim();
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        // plain decimals are by far the most common, so read those directly
+        long value = 0;
+        int decimals = -1;
+        boolean digits = false;
+        boolean roundUp = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (decimals < PRICE_DECIMALS) {
+                    if (value > (Long.MAX_VALUE - 9) / 10) {
+                        return 0;
+                    }
+                    value = value * 10 + (c - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (decimals == PRICE_DECIMALS) {
+                    // first digit past the last kept decimal place decides the rounding
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parseFixedSlow(text);
+            }
+        }
+        if (!digits) {
+            return 0;
+        }
+
+        for (int d = Math.max(decimals, 0); d < PRICE_DECIMALS; d++) {
+            if (value > Long.MAX_VALUE / 10) {
+                return 0;
+            }
+            value *= 10;
+        }
+        if (roundUp) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse amounts in forms the fast path doesn't read, such as "1.2E-7"
+     */
+    private static long parseFixedSlow(String text) {
+        try {
+            return new BigDecimal(text).movePointRight(PRICE_DECIMALS)
+                    .setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cryptocoin;
+
+/**
+ * Rows backed by an array of Crypto objects, used for short lists
+ */
+public class CryptoArrayRows implements CryptoRows {
+    private final Crypto[] cryptos;
+
+    public CryptoArrayRows(Crypto[] cryptos) {
+        this.cryptos = cryptos;
+    }
+
+    @Override
+    public int size() { return cryptos.length; }
+
+    @Override
+    public String id(int row) { return cryptos[row].coinId; }
+
+    @Override
+    public String symbol(int row) { return cryptos[row].coinSymbol; }
+
+    @Override
+    public String name(int row) { return cryptos[row].coinName; }
+
+    @Override
+    public String priceText(int row) { return cryptos[row].coinPrice; }
+
+    @Override
+    public long priceFixed(int row) { return cryptos[row].priceFixed; }
+
+    @Override
+    public double dailyChange(int row) { return cryptos[row].dailyPercentageChange; }
+
+    @Override
+    public double hourlyChange(int row) { return cryptos[row].hourlyPercentageChange; }
+
+    @Override
+    public String dailyChangeText(int row) { return cryptos[row].dailyChangeText; }
+
+    @Override
+    public String hourlyChangeText(int row) { return cryptos[row].hourlyChangeText; }
+
+    @Override
+    public boolean dailyNegative(int row) { return cryptos[row].dailyNegative; }
+
+    @Override
+    public boolean hourlyNegative(int row) { return cryptos[row].hourlyNegative; }
+
+    @Override
+    public Crypto get(int row) { return cryptos[row]; }
+}
@@ -0,0 +1,145 @@
+package com.example.cryptocoin;
+
+import java.util.HashMap;
+
+/**
+ * Rows stored as one primitive array per field rather than one object per coin, used for long
+ * lists. Numbers sit next to each other in memory, which keeps sort and filter passes over
+ * them cache friendly, and every string is stored once in a shared table and referred to by
+ * index, so repeated values such as common percentage changes cost four bytes per row
+ */
+public class CryptoColumnStore implements CryptoRows {
+    private static final byte DAILY_NEGATIVE = 1;
+    private static final byte HOURLY_NEGATIVE = 2;
+
+    private final String[] strings;
+    private final int[] coinIds;
+    private final int[] symbolIds;
+    private final int[] nameIds;
+    private final int[] priceTextIds;
+    private final int[] dailyTextIds;
+    private final int[] hourlyTextIds;
+    private final long[] priceFixed;
+    private final double[] dailyChange;
+    private final double[] hourlyChange;
+    private final byte[] flags;
+
+    /**
+     * Copy a list of coins into columns
+     * @param cryptos list of coins
+     */
+    public CryptoColumnStore(Crypto[] cryptos) {
+        int size = cryptos.length;
+        coinIds = new int[size];
+        symbolIds = new int[size];
+        nameIds = new int[size];
+        priceTextIds = new int[size];
+        dailyTextIds = new int[size];
+        hourlyTextIds = new int[size];
+        priceFixed = new long[size];
+        dailyChange = new double[size];
+        hourlyChange = new double[size];
+        flags = new byte[size];
+
+        StringTable table = new StringTable(size * 3);
+        for (int i = 0; i < size; i++) {
+            Crypto crypto = cryptos[i];
+            coinIds[i] = table.intern(crypto.coinId);
+            symbolIds[i] = table.intern(crypto.coinSymbol);
+            nameIds[i] = table.intern(crypto.coinName);
+            priceTextIds[i] = table.intern(crypto.coinPrice);
+            dailyTextIds[i] = table.intern(crypto.dailyChangeText);
+            hourlyTextIds[i] = table.intern(crypto.hourlyChangeText);
+            priceFixed[i] = crypto.priceFixed;
+            dailyChange[i] = crypto.dailyPercentageChange;
+            hourlyChange[i] = crypto.hourlyPercentageChange;
+            flags[i] = (byte) ((crypto.dailyNegative ? DAILY_NEGATIVE : 0)
+                    | (crypto.hourlyNegative ? HOURLY_NEGATIVE : 0));
+        }
+        strings = table.toArray();
+    }
+
+    @Override
+    public int size() { return priceFixed.length; }
+
+    @Override
+    public String id(int row) { return strings[coinIds[row]]; }
+
+    @Override
+    public String symbol(int row) { return strings[symbolIds[row]]; }
+
+    @Override
+    public String name(int row) { return strings[nameIds[row]]; }
+
+    @Override
+    public String priceText(int row) { return strings[priceTextIds[row]]; }
+
+    @Override
+    public long priceFixed(int row) { return priceFixed[row]; }
+
+    @Override
+    public double dailyChange(int row) { return dailyChange[row]; }
+
+    @Override
+    public double hourlyChange(int row) { return hourlyChange[row]; }
+
+    @Override
+    public String dailyChangeText(int row) { return strings[dailyTextIds[row]]; }
+
+    @Override
+    public String hourlyChangeText(int row) { return strings[hourlyTextIds[row]]; }
+
+    @Override
+    public boolean dailyNegative(int row) { return (flags[row] & DAILY_NEGATIVE) != 0; }
+
+    @Override
+    public boolean hourlyNegative(int row) { return (flags[row] & HOURLY_NEGATIVE) != 0; }
+
+    @Override
+    public Crypto get(int row) {
+        return new Crypto(id(row), symbol(row), name(row), priceText(row), priceFixed[row],
+                dailyChange[row], dailyChangeText(row), hourlyChange[row], hourlyChangeText(row));
+    }
+
+    /**
+     * Number of distinct strings held for the whole list
+     */
+    public int distinctStrings() {
+        return strings.length;
+    }
+
+    /**
+     * Gives each distinct string an index, only used while the store is being built
+     */
+    private static class StringTable {
+        private final HashMap<String, Integer> ids;
+        private String[] values;
+        private int count;
+
+        StringTable(int expected) {
+            ids = new HashMap<>(expected * 2);
+            values = new String[Math.max(expected, 16)];
+        }
+
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (count == values.length) {
+                String[] grown = new String[count * 2];
+                System.arraycopy(values, 0, grown, 0, count);
+                values = grown;
+            }
+            values[count] = value;
+            ids.put(value, count);
+            return count++;
+        }
+
+        String[] toArray() {
+            String[] result = new String[count];
+            System.arraycopy(values, 0, result, 0, count);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.cryptocoin;
+
+/**
+ * Read access to a list of coins by row, so the list can be stored either as Crypto objects or
+ * as columns of primitives without the code that shows it needing to know which
+ */
+public interface CryptoRows {
+    int size();
+
+    /**
+     * @return id the API identifies the coin by
+     */
+    String id(int row);
+
+    String symbol(int row);
+
+    String name(int row);
+
+    /**
+     * @return price as the API sent it, for display
+     */
+    String priceText(int row);
+
+    /**
+     * @return price in 1/Crypto.PRICE_SCALE dollars
+     */
+    long priceFixed(int row);
+
+    double dailyChange(int row);
+
+    double hourlyChange(int row);
+
+    /**
+     * @return 24 hour change ready for display, e.g. "+1.32%"
+     */
+    String dailyChangeText(int row);
+
+    /**
+     * @return 1 hour change ready for display, e.g. "-0.5%"
+     */
+    String hourlyChangeText(int row);
+
+    boolean dailyNegative(int row);
+
+    boolean hourlyNegative(int row);
+
+    /**
+     * @return the row as a Crypto object, which may be created on each call
+     */
+    Crypto get(int row);
+}
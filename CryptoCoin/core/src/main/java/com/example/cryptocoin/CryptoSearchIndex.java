@@ -0,0 +1,232 @@
+package com.example.cryptocoin;
+
+import java.util.Arrays;
+
+/**
+ * Search index over the names and symbols of one list of coins. It is built once per list as a
+ * sorted array of every suffix of every lower-cased name and symbol, so a "contains" search is
+ * two binary searches instead of a scan that lower-cases every name on every keystroke.
+ *
+ * Searching reuses the index's own buffers, so only one search may run at a time
+ */
+public class CryptoSearchIndex {
+
+    // ends each name and symbol, sorts before every other character
+    private static final char SEPARATOR = '\u0000';
+
+    private final CryptoRows rows;
+    // lower-cased names and symbols, each followed by SEPARATOR
+    private final char[] text;
+    // row of the coin each character of text belongs to
+    private final int[] owner;
+    // start of every suffix in text, sorted alphabetically
+    private final int[] suffixes;
+
+    // per-search scratch space, reused so searching allocates nothing
+    private final int[] matchStamp;
+    private int stamp;
+    private char[] queryBuffer = new char[32];
+
+    /**
+     * Build the index for a list of coins
+     * @param rows list of coins, searched by name and symbol
+     */
+    public CryptoSearchIndex(CryptoRows rows) {
+        this.rows = rows;
+        int size = rows.size();
+
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            length += rows.name(i).length() + rows.symbol(i).length() + 2;
+        }
+        text = new char[length];
+        owner = new int[length];
+
+        int pos = 0;
+        int suffixCount = 0;
+        for (int i = 0; i < size; i++) {
+            int start = pos;
+            pos = appendLowerCase(rows.name(i), pos);
+            pos = appendLowerCase(rows.symbol(i), pos);
+            Arrays.fill(owner, start, pos, i);
+            suffixCount += pos - start - 2;
+        }
+
+        suffixes = new int[suffixCount];
+        int next = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] != SEPARATOR) {
+                suffixes[next++] = i;
+            }
+        }
+        sortSuffixes(suffixes, new int[suffixes.length], 0, suffixes.length);
+
+        matchStamp = new int[size];
+    }
+
+    /**
+     * @param list list of coins
+     * @return true if this index was built for exactly that list
+     */
+    public boolean indexes(CryptoRows list) {
+        return rows == list;
+    }
+
+    /**
+     * @return number of coins in the index
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Find every coin whose name or symbol contains the query, ignoring case
+     * @param query text to look for
+     * @param out receives the positions of matching coins in the indexed list, in list order.
+     *            Must be at least size() long
+     * @return number of matching coins written to out
+     */
+    public int search(CharSequence query, int[] out) {
+        int length = query.length();
+        if (length == 0) {
+            int size = rows.size();
+            for (int i = 0; i < size; i++) {
+                out[i] = i;
+            }
+            return size;
+        }
+
+        if (queryBuffer.length < length) {
+            queryBuffer = new char[Math.max(length, queryBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = query.charAt(i);
+            if (c == SEPARATOR) {
+                return 0;
+            }
+            queryBuffer[i] = Character.toLowerCase(c);
+        }
+
+        // every suffix starting with the query sits in one run of the sorted array
+        int from = lowerBound(length, false);
+        int to = lowerBound(length, true);
+        if (from >= to) {
+            return 0;
+        }
+
+        // mark the coins the run belongs to, then collect them in list order
+        if (++stamp == 0) {
+            Arrays.fill(matchStamp, 0);
+            stamp = 1;
+        }
+        for (int i = from; i < to; i++) {
+            matchStamp[owner[suffixes[i]]] = stamp;
+        }
+        int count = 0;
+        for (int i = 0; i < matchStamp.length; i++) {
+            if (matchStamp[i] == stamp) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Binary search for the first suffix that is not before the query
+     * @param length query length
+     * @param afterPrefix if true, suffixes starting with the query count as before it, which
+     *                    finds the end of the run instead of its start
+     * @return index into suffixes
+     */
+    private int lowerBound(int length, boolean afterPrefix) {
+        int low = 0;
+        int high = suffixes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareToQuery(suffixes[mid], length);
+            if (cmp < 0 || (afterPrefix && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare the start of a suffix with the query
+     * @return negative, zero or positive as the suffix's first query-length characters are
+     * before, equal to, or after the query
+     */
+    private int compareToQuery(int suffix, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = text[suffix + i];
+            char q = queryBuffer[i];
+            if (c != q) {
+                return c - q;
+            }
+        }
+        return 0;
+    }
+
+    private int appendLowerCase(String value, int pos) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            // a separator inside a name would split it into two searchable parts
+            text[pos++] = c == SEPARATOR ? ' ' : c;
+        }
+        text[pos++] = SEPARATOR;
+        return pos;
+    }
+
+    private int compareSuffixes(int a, int b) {
+        while (true) {
+            char ca = text[a];
+            char cb = text[b];
+            if (ca != cb) {
+                return ca - cb;
+            }
+            if (ca == SEPARATOR) {
+                return 0;
+            }
+            a++;
+            b++;
+        }
+    }
+
+    /**
+     * Merge sort of suffix start positions, kept on primitive arrays so sorting doesn't box
+     */
+    private void sortSuffixes(int[] values, int[] scratch, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int value = values[i];
+                int j = i - 1;
+                while (j >= from && compareSuffixes(values[j], value) > 0) {
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                values[j + 1] = value;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        sortSuffixes(values, scratch, from, mid);
+        sortSuffixes(values, scratch, mid, to);
+        if (compareSuffixes(values[mid - 1], values[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(values, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareSuffixes(scratch[left], scratch[right]) <= 0)) {
+                values[i] = scratch[left++];
+            } else {
+                values[i] = scratch[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.cryptocoin;
+
+import java.util.Arrays;
+
+/**
+ * Every order one list of coins can be sorted in, computed once per list. Each order is a
+ * permutation of row positions, so switching between orders, or sorting the coins that match a
+ * search, only walks an array that already exists instead of sorting again.
+ *
+ * Coins with equal values keep their order from the list, and coins with no value for a key,
+ * e.g. an unreadable change, come last whichever way it is sorted. Selecting reuses a buffer of
+ * the orders' own, so only one select may run at a time
+ */
+public class CryptoSortOrders {
+
+    // values coins can be sorted by
+    public static final int PRICE = 0;
+    public static final int DAILY_CHANGE = 1;
+    public static final int HOURLY_CHANGE = 2;
+    // rolling indicators, see CoinIndicators; coins without enough ticks for one sort last
+    public static final int TREND = 3;
+    public static final int VOLATILITY = 4;
+    private static final int KEYS = 5;
+    // sort key of a row with no value, below every real one
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final CryptoRows rows;
+    // row positions sorted by each key, lowest first and highest first
+    private final int[][] ascending = new int[KEYS][];
+    private final int[][] descending = new int[KEYS][];
+
+    // per-select scratch space, reused so selecting allocates nothing
+    private final int[] selectStamp;
+    private int stamp;
+
+    /**
+     * Sort a list of coins every way it can be sorted, without indicators
+     * @param rows list of coins
+     */
+    public CryptoSortOrders(CryptoRows rows) {
+        this(rows, null);
+    }
+
+    /**
+     * Sort a list of coins every way it can be sorted
+     * @param rows list of coins
+     * @param indicators the list's indicators, or null if there are none, when sorting by an
+     *                   indicator keeps the list's order
+     */
+    public CryptoSortOrders(CryptoRows rows, CoinIndicators.Values indicators) {
+        this.rows = rows;
+        if (indicators != null && !indicators.describes(rows)) {
+            indicators = null;
+        }
+        int size = rows.size();
+        long[] keys = new long[size];
+        int[] scratch = new int[size];
+
+        for (int key = 0; key < KEYS; key++) {
+            for (int i = 0; i < size; i++) {
+                keys[i] = sortKey(rows, indicators, key, i);
+            }
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            sort(order, keys, scratch, 0, size);
+            // rows without a value sort to the front, move them to the back of both orders
+            int missing = 0;
+            while (missing < size && keys[order[missing]] == NO_VALUE) {
+                missing++;
+            }
+            descending[key] = reverse(order, keys, missing);
+            if (missing > 0) {
+                int[] valued = new int[size];
+                System.arraycopy(order, missing, valued, 0, size - missing);
+                System.arraycopy(order, 0, valued, size - missing, missing);
+                order = valued;
+            }
+            ascending[key] = order;
+        }
+
+        selectStamp = new int[size];
+    }
+
+    /**
+     * @param list list of coins
+     * @return true if these orders were computed for exactly that list
+     */
+    public boolean sorts(CryptoRows list) {
+        return rows == list;
+    }
+
+    /**
+     * Every row of the list in one order. The array is shared and must not be modified
+     * @param key PRICE, DAILY_CHANGE, HOURLY_CHANGE, TREND or VOLATILITY
+     * @param highestFirst true to start with the highest value
+     * @return row positions in sorted order
+     */
+    public int[] order(int key, boolean highestFirst) {
+        return highestFirst ? descending[key] : ascending[key];
+    }
+
+    /**
+     * Put some rows of the list, e.g. the coins matching a search, in sorted order
+     * @param key PRICE, DAILY_CHANGE, HOURLY_CHANGE, TREND or VOLATILITY
+     * @param highestFirst true to start with the highest value
+     * @param selected row positions to sort, in any order and without repeats
+     * @param count number of positions used in selected
+     * @param out receives the positions in sorted order, must be at least count long and not
+     *            be selected itself
+     * @return number of positions written, always count
+     */
+    public int select(int key, boolean highestFirst, int[] selected, int count, int[] out) {
+        if (++stamp == 0) {
+            Arrays.fill(selectStamp, 0);
+            stamp = 1;
+        }
+        for (int i = 0; i < count; i++) {
+            selectStamp[selected[i]] = stamp;
+        }
+
+        // walk the whole order and keep the marked rows, cheaper than sorting all but tiny selections
+        int[] order = order(key, highestFirst);
+        int written = 0;
+        for (int i = 0; i < order.length && written < count; i++) {
+            if (selectStamp[order[i]] == stamp) {
+                out[written++] = order[i];
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return the value a row is sorted by, as a long that compares the same way
+     */
+    private static long sortKey(CryptoRows rows, CoinIndicators.Values indicators, int key, int row) {
+        switch (key) {
+            case PRICE:
+                return rows.priceFixed(row);
+            case DAILY_CHANGE:
+                return sortableBits(rows.dailyChange(row));
+            case HOURLY_CHANGE:
+                return sortableBits(rows.hourlyChange(row));
+            case TREND:
+                return indicators == null ? 0 : sortableBits(indicators.trend[row]);
+            default:
+                return indicators == null ? 0 : sortableBits(indicators.volatility[row]);
+        }
+    }
+
+    /**
+     * Map a double onto a long with the same ordering, so one sort handles every key. NaN maps
+     * to NO_VALUE, below every number
+     */
+    private static long sortableBits(double value) {
+        if (value != value) {
+            return NO_VALUE;
+        }
+        long bits = Double.doubleToLongBits(value);
+        // negative doubles compare backwards as longs, so flip everything but their sign bit
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * The highest-first order: the lowest-first order backwards from its first valued row, with
+     * each run of equal values turned back round so ties stay in list order, then the rows
+     * without a value in list order
+     * @param missing number of rows without a value, at the front of order
+     */
+    private static int[] reverse(int[] order, long[] keys, int missing) {
+        int size = order.length;
+        int[] reversed = new int[size];
+        int end = size;
+        int out = 0;
+        while (end > missing) {
+            int start = end - 1;
+            while (start > missing && keys[order[start - 1]] == keys[order[end - 1]]) {
+                start--;
+            }
+            System.arraycopy(order, start, reversed, out, end - start);
+            out += end - start;
+            end = start;
+        }
+        System.arraycopy(order, 0, reversed, out, missing);
+        return reversed;
+    }
+
+    /**
+     * Stable merge sort of row positions by key, kept on primitive arrays so sorting doesn't box
+     */
+    private static void sort(int[] values, long[] keys, int[] scratch, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int value = values[i];
+                int j = i - 1;
+                while (j >= from && keys[values[j]] > keys[value]) {
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                values[j + 1] = value;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        sort(values, keys, scratch, from, mid);
+        sort(values, keys, scratch, mid, to);
+        if (keys[values[mid - 1]] <= keys[values[mid]]) {
+            return;
+        }
+
+        System.arraycopy(values, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && keys[scratch[left]] <= keys[scratch[right]])) {
+                values[i] = scratch[left++];
+            } else {
+                values[i] = scratch[right++];
+            }
+        }
+    }
+}
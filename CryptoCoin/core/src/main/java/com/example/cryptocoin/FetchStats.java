@@ -0,0 +1,69 @@
+package com.example.cryptocoin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte and latency counters for network fetches. Safe to update from any thread
+ */
+public class FetchStats {
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+    void recordDownload(long bytes, long latencyNanos) {
+        downloads.incrementAndGet();
+        bytesDownloaded.addAndGet(bytes);
+        recordLatency(latencyNanos);
+    }
+
+    void recordNotModified(long latencyNanos) {
+        notModified.incrementAndGet();
+        recordLatency(latencyNanos);
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    private void recordLatency(long latencyNanos) {
+        totalLatencyNanos.addAndGet(latencyNanos);
+        lastLatencyNanos.set(latencyNanos);
+    }
+
+    /**
+     * @return number of responses that were downloaded and parsed
+     */
+    public long getDownloads() { return downloads.get(); }
+
+    /**
+     * @return number of 304 responses answered from the previous result
+     */
+    public long getNotModified() { return notModified.get(); }
+
+    /**
+     * @return number of fetches that failed
+     */
+    public long getFailures() { return failures.get(); }
+
+    /**
+     * @return bytes received over the network, before decompression
+     */
+    public long getBytesDownloaded() { return bytesDownloaded.get(); }
+
+    /**
+     * @return latency of the most recent successful fetch in milliseconds
+     */
+    public long getLastLatencyMillis() { return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos.get()); }
+
+    /**
+     * @return average latency of successful fetches in milliseconds
+     */
+    public long getAverageLatencyMillis() {
+        long count = downloads.get() + notModified.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count);
+    }
+}
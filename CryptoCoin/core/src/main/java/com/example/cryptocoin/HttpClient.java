@@ -0,0 +1,308 @@
+package com.example.cryptocoin;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The app's one way onto the network. Connections are kept alive and reused between requests
+ * instead of being torn down after each one, so a refresh doesn't pay for a TCP and TLS
+ * handshake per page. At most maxConnections requests are open at once, every connection has
+ * connect and read timeouts, and requests that fail in a way worth retrying are tried again
+ * after a randomised, growing delay. A request that timed out isn't retried, so one slow server
+ * costs a single timeout rather than one per attempt. Safe to use from any thread
+ */
+public class HttpClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 15 * 1000;
+    // the list's pages, a hedged page and a batch of coins can all be in flight together
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 250;
+    // a body left unread is read to the end so its connection can be reused, unless it is longer
+    // than this, when dropping the connection is cheaper
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final Semaphore connections;
+    private final Random jitter = new Random();
+    private final AtomicLong retries = new AtomicLong();
+
+    /**
+     * A client with the default timeouts, connection limit and retries
+     */
+    public HttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS, DEFAULT_MAX_CONNECTIONS,
+                DEFAULT_MAX_RETRIES, DEFAULT_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * @param connectTimeoutMillis longest wait for a connection to be made
+     * @param readTimeoutMillis longest wait for the server between any two reads
+     * @param maxConnections most requests open at once, and most idle connections kept for reuse
+     * @param maxRetries times a failed request is tried again, 0 for never
+     * @param retryDelayMillis the first retry waits up to this long, each later one up to twice
+     *                         as long as the one before
+     */
+    public HttpClient(int connectTimeoutMillis, int readTimeoutMillis, int maxConnections, int maxRetries,
+                      long retryDelayMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+        connections = new Semaphore(maxConnections, true);
+        // the platform's keep-alive pool reads its size from here, so it only takes effect if
+        // set before the first connection is made
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+        }
+    }
+
+    /**
+     * @return number of times a request was tried again after failing
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Send a GET request, retrying it if the connection fails or the server answers with a
+     * temporary error, but not if it timed out
+     * @param url url to retrieve
+     * @param headers request header names and values, alternating
+     * @return the response, which must be closed so its connection can be reused
+     * @throws IOException the request failed after every retry, or was interrupted
+     */
+    public Response get(URL url, String... headers) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Response response;
+            try {
+                response = open(url, headers);
+            } catch (IOException e) {
+                // a timeout has already waited as long as the caller should, the next refresh
+                // tries again
+                if (attempt == maxRetries || e instanceof SocketTimeoutException
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                backOff(attempt);
+                continue;
+            }
+            if (!isRetryable(response.code) || attempt == maxRetries) {
+                return response;
+            }
+            response.close();
+            backOff(attempt);
+        }
+    }
+
+    private Response open(URL url, String[] headers) throws IOException {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection");
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                connection.setRequestProperty(headers[i], headers[i + 1]);
+            }
+            return new Response(connection, connection.getResponseCode());
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            connections.release();
+            throw e;
+        }
+    }
+
+    // too many requests, and server errors that are usually gone a moment later
+    private static boolean isRetryable(int code) {
+        return code == 429 || code == HttpURLConnection.HTTP_UNAVAILABLE || code == HttpURLConnection.HTTP_BAD_GATEWAY
+                || code == HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+    }
+
+    // waits a random time up to the attempt's delay, so clients that failed together don't all
+    // come back together
+    private void backOff(int attempt) throws InterruptedIOException {
+        retries.incrementAndGet();
+        long ceiling = retryDelayMillis << Math.min(attempt, 16);
+        long delay;
+        synchronized (jitter) {
+            delay = (long) (jitter.nextDouble() * ceiling);
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to retry");
+        }
+    }
+
+    /**
+     * A response whose body is read as it arrives. Closing it hands the connection back for
+     * the next request to reuse
+     */
+    public class Response implements Closeable {
+        public final int code;
+        private final HttpURLConnection connection;
+        private CountingInputStream raw;
+        private InputStream body;
+        private boolean closed;
+
+        Response(HttpURLConnection connection, int code) {
+            this.connection = connection;
+            this.code = code;
+        }
+
+        /**
+         * @return value of a response header, or null if it wasn't sent
+         */
+        public String header(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        /**
+         * @return the body, decompressed if the server gzipped it. Reads end with an
+         * InterruptedIOException once the reading thread is interrupted
+         * @throws IOException the body could not be opened
+         */
+        public InputStream body() throws IOException {
+            if (body == null) {
+                InputStream in = code >= HttpURLConnection.HTTP_BAD_REQUEST
+                        ? connection.getErrorStream() : connection.getInputStream();
+                raw = new CountingInputStream(in);
+                body = raw;
+                if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                    body = new GZIPInputStream(raw);
+                }
+            }
+            return body;
+        }
+
+        /**
+         * @return bytes of the body that came over the network so far, before any decompression
+         */
+        public long getBytesRead() {
+            return raw == null ? 0 : raw.count;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (raw == null && code != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    body();
+                }
+                if (raw == null || drain(raw)) {
+                    // the rest of the body has been read, so the connection goes back to the pool
+                    if (raw != null) {
+                        raw.close();
+                    }
+                } else {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+            } finally {
+                connections.release();
+            }
+        }
+    }
+
+    // reads what is left of a body, up to a limit, and says whether it got to the end
+    private static boolean drain(CountingInputStream in) throws IOException {
+        if (!in.hasBody()) {
+            return true;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        byte[] buffer = new byte[4096];
+        long limit = in.count + MAX_DRAIN_BYTES;
+        while (in.count < limit) {
+            if (in.read(buffer, 0, buffer.length) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the bytes that actually came over the network, before any decompression, and ends
+     * the download if the fetching thread is interrupted, e.g. by a cancelled hedged request
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        // an error response can come without a body
+        boolean hasBody() {
+            return in != null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkInterrupted();
+            int b = in == null ? -1 : super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkInterrupted();
+            int read = in == null ? -1 : super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in == null ? 0 : super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                super.close();
+            }
+        }
+
+        private static void checkInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Download cancelled");
+            }
+        }
+    }
+}
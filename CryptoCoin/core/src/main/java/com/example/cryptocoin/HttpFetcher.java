@@ -0,0 +1,171 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fetches and parses API responses, asking for gzip and remembering each url's ETag and
+ * Last-Modified validators. When the server answers 304 Not Modified, the result parsed from
+ * the previous response is handed back without downloading or parsing anything. Bodies are
+ * parsed as they stream in, over connections the HttpClient keeps alive between fetches
+ */
+public class HttpFetcher {
+
+    /**
+     * Turns a response body into a result
+     */
+    public interface BodyParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+
+    /**
+     * A parsed result, and whether it was reused because the server said nothing changed
+     */
+    public static class Result<T> {
+        public final T value;
+        public final boolean notModified;
+
+        Result(T value, boolean notModified) {
+            this.value = value;
+            this.notModified = notModified;
+        }
+    }
+
+    // validators and the result parsed from the response they came with, per url
+    private static class CacheEntry {
+        final String eTag;
+        final String lastModified;
+        final Object value;
+
+        CacheEntry(String eTag, String lastModified, Object value) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    // urls whose validators are kept by default; batched coin requests give every set of ids its
+    // own url, so only recently used urls are kept
+    public static final int DEFAULT_CACHED_URLS = 64;
+    private final LinkedHashMap<String, CacheEntry> cache;
+    private final FetchStats stats = new FetchStats();
+    private final HttpClient client;
+
+    /**
+     * A fetcher with a client of its own
+     */
+    public HttpFetcher() {
+        this(new HttpClient());
+    }
+
+    /**
+     * @param client client to make requests with, which may be shared with other fetchers so
+     *               they all reuse the same connections
+     */
+    public HttpFetcher(HttpClient client) {
+        this(client, DEFAULT_CACHED_URLS);
+    }
+
+    /**
+     * @param client client to make requests with, which may be shared with other fetchers so
+     *               they all reuse the same connections
+     * @param cachedUrls most urls whose validators are kept, least recently used go first. A
+     *                   fetcher walking a fixed set of urls, like the pages of the list, needs at
+     *                   least one per url or every url is forgotten before it comes round again
+     */
+    public HttpFetcher(HttpClient client, final int cachedUrls) {
+        this.client = client;
+        cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > cachedUrls;
+            }
+        };
+    }
+
+    /**
+     * @return byte and latency counters for every fetch made through this fetcher
+     */
+    public FetchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Fetch a url and parse its body, or reuse the last result if the server says it hasn't changed
+     * @param url url to retrieve data from
+     * @param parser turns the (decompressed) response body into a result
+     * @return the parsed result
+     * @throws IOException url could provide nothing, or not be valid
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> fetch(URL url, BodyParser<T> parser) throws IOException {
+        String key = url.toString();
+        CacheEntry cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+
+        long startNanos = System.nanoTime();
+        // ask for a compressed body, and send validators if there is a result to fall back on
+        String[] headers = {"Accept-Encoding", "gzip", null, null, null, null};
+        int headerCount = 2;
+        if (cached != null) {
+            if (cached.eTag != null) {
+                headers[headerCount++] = "If-None-Match";
+                headers[headerCount++] = cached.eTag;
+            }
+            if (cached.lastModified != null) {
+                headers[headerCount++] = "If-Modified-Since";
+                headers[headerCount++] = cached.lastModified;
+            }
+        }
+
+        HttpClient.Response response = null;
+        try {
+            long fetchStart = Metrics.start();
+            response = client.get(url, Arrays.copyOf(headers, headerCount));
+            Metrics.stop(Metrics.FETCH, fetchStart);
+            int code = response.code;
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                stats.recordNotModified(System.nanoTime() - startNanos);
+                Metrics.count(Metrics.HTTP_NOT_MODIFIED, 1);
+                return new Result<>((T) cached.value, true);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + code + " from " + url);
+            }
+
+            long parseStart = Metrics.start();
+            T value = parser.parse(response.body());
+            Metrics.stop(Metrics.PARSE, parseStart);
+            stats.recordDownload(response.getBytesRead(), System.nanoTime() - startNanos);
+            Metrics.count(Metrics.HTTP_DOWNLOADS, 1);
+            Metrics.count(Metrics.BYTES_DOWNLOADED, response.getBytesRead());
+
+            String eTag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+            synchronized (cache) {
+                if (eTag != null || lastModified != null) {
+                    cache.put(key, new CacheEntry(eTag, lastModified, value));
+                } else {
+                    cache.remove(key);
+                }
+            }
+            return new Result<>(value, false);
+        } catch (IOException e) {
+            stats.recordFailure();
+            Metrics.count(Metrics.HTTP_FAILURES, 1);
+            throw e;
+        } finally {
+            if (response != null) {
+                // hands the connection back for the next fetch instead of closing it
+                response.close();
+            }
+        }
+    }
+}
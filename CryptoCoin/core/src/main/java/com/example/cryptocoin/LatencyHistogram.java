@@ -0,0 +1,109 @@
+package com.example.cryptocoin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in fixed buckets, eight to every doubling from 1us to about 70 minutes, in the
+ * manner of an HdrHistogram, so any percentile can be read back to within 9% without keeping the
+ * samples. Recording is lock-free and allocates nothing. Safe to update from any thread
+ */
+public class LatencyHistogram {
+
+    // upper bound of each bucket in microseconds; anything slower goes in one last bucket
+    private static final int BUCKETS_PER_DOUBLING = 8;
+    private static final long[] BOUNDS_MICROS = new long[32 * BUCKETS_PER_DOUBLING + 1];
+
+    static {
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            BOUNDS_MICROS[i] = (long) Math.ceil(Math.pow(2, (double) i / BUCKETS_PER_DOUBLING));
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Count one latency
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * @return number of latencies counted
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return slowest latency counted in milliseconds
+     */
+    public long getMaxMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(maxMicros.get());
+    }
+
+    /**
+     * @return total of every latency counted in microseconds, for averages
+     */
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    /**
+     * Read a percentile back, rounded up to the top of the bucket it falls in
+     * @param percentile between 0 and 1, e.g. 0.95
+     * @return the latency in microseconds that percentile of latencies were at or under, or 0
+     * if nothing has been counted
+     */
+    public long percentileMicros(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // the top of the bucket, but never more than was actually seen
+                return Math.min(BOUNDS_MICROS[i], maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * @return index of the first bucket whose upper bound is at or above micros
+     */
+    private static int bucket(long micros) {
+        int low = 0;
+        int high = BOUNDS_MICROS.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BOUNDS_MICROS[mid] < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
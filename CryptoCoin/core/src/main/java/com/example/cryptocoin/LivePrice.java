@@ -0,0 +1,155 @@
+package com.example.cryptocoin;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands live prices for one coin from a feed thread to the main thread and works out what on
+ * screen has to change. Prices arriving faster than the main thread applies them are
+ * coalesced, so only the latest is ever applied, and applying one touches only the parts of
+ * the screen whose text changed. Text is formatted into reused buffers, so applying a price
+ * allocates nothing
+ */
+public class LivePrice {
+
+    /**
+     * The parts of a screen showing a live price. Called on the thread that calls applyPending
+     */
+    public interface Display {
+        void showPrice(char[] text, int length);
+        void showDailyChange(String text, boolean negative);
+        void showHourlyChange(String text, boolean negative);
+        void showConverted(char[] text, int length);
+    }
+
+    // longest text formatPrice can produce: "-$" and every digit of a long with its decimal point
+    private static final int MAX_TEXT = 32;
+
+    private final AtomicReference<Crypto> pending = new AtomicReference<>();
+
+    // what is on screen, only touched by the thread applying prices
+    private long shownPrice = Long.MIN_VALUE;
+    private String shownDaily;
+    private String shownHourly;
+    private long shownConverted = Long.MIN_VALUE;
+    // coins being converted, in 1/Portfolio.QUANTITY_SCALE coins, or -1 before the user converts
+    private long convertCoins = -1;
+    private final char[] priceText = new char[MAX_TEXT];
+    private final char[] convertedText = new char[MAX_TEXT];
+
+    /**
+     * Hand over a new price, from any thread
+     * @param coin coin's latest data
+     * @return true if the caller must arrange for applyPending to run, false if a run is
+     * already due and will pick this price up
+     */
+    public boolean offer(Crypto coin) {
+        return pending.getAndSet(coin) == null;
+    }
+
+    /**
+     * Show the latest price handed over, if any
+     * @param display screen to update
+     * @return number of parts of the screen that were updated
+     */
+    public int applyPending(Display display) {
+        Crypto coin = pending.getAndSet(null);
+        return coin == null ? 0 : apply(coin, display);
+    }
+
+    /**
+     * Show a coin's data, updating only what changed
+     * @param coin coin's data
+     * @param display screen to update
+     * @return number of parts of the screen that were updated
+     */
+    public int apply(Crypto coin, Display display) {
+        int updated = 0;
+        if (coin.priceFixed != shownPrice) {
+            shownPrice = coin.priceFixed;
+            display.showPrice(priceText, formatDollars(shownPrice, priceText));
+            updated++;
+            updated += updateConverted(display);
+        }
+        // change texts are shared Strings, so an unchanged one is usually the same object
+        if (shownDaily == null || !shownDaily.equals(coin.dailyChangeText)) {
+            shownDaily = coin.dailyChangeText;
+            display.showDailyChange(shownDaily, coin.dailyNegative);
+            updated++;
+        }
+        if (shownHourly == null || !shownHourly.equals(coin.hourlyChangeText)) {
+            shownHourly = coin.hourlyChangeText;
+            display.showHourlyChange(shownHourly, coin.hourlyNegative);
+            updated++;
+        }
+        return updated;
+    }
+
+    /**
+     * Set how many coins the user is converting to dollars. The converted value then follows
+     * every new price
+     * @param coins number of coins, in 1/Portfolio.QUANTITY_SCALE coins
+     * @param display screen to update
+     */
+    public void setConvertCoins(long coins, Display display) {
+        convertCoins = coins;
+        shownConverted = Long.MIN_VALUE;
+        updateConverted(display);
+    }
+
+    private int updateConverted(Display display) {
+        if (convertCoins < 0 || shownPrice == Long.MIN_VALUE) {
+            return 0;
+        }
+        // exact, a double would lose the last digits of large amounts
+        long converted = Portfolio.value(convertCoins, shownPrice);
+        if (converted == shownConverted) {
+            return 0;
+        }
+        shownConverted = converted;
+        display.showConverted(convertedText, formatDollars(converted, convertedText));
+        return 1;
+    }
+
+    /**
+     * Write an amount as dollars, e.g. "$41230.55" or "$0.00000123", with at least two decimal
+     * places and no trailing zeros past them
+     * @param fixed amount in 1/Crypto.PRICE_SCALE dollars
+     * @param out receives the text, at least 32 chars long
+     * @return length of the text
+     */
+    static int formatDollars(long fixed, char[] out) {
+        int length = 0;
+        // negate as a negative number, so Long.MIN_VALUE doesn't overflow
+        long value = fixed;
+        if (value < 0) {
+            out[length++] = '-';
+        } else {
+            value = -value;
+        }
+        out[length++] = '$';
+
+        long whole = -(value / Crypto.PRICE_SCALE);
+        long fraction = -(value % Crypto.PRICE_SCALE);
+
+        // whole dollars, written backwards into the end of the buffer then moved into place
+        int end = out.length;
+        int start = end;
+        do {
+            out[--start] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0);
+        System.arraycopy(out, start, out, length, end - start);
+        length += end - start;
+
+        // eight decimal places, trimmed back to two
+        out[length++] = '.';
+        int decimalsStart = length;
+        for (long unit = Crypto.PRICE_SCALE / 10; unit > 0; unit /= 10) {
+            out[length++] = (char) ('0' + fraction / unit % 10);
+        }
+        while (length > decimalsStart + 2 && out[length - 1] == '0') {
+            length--;
+        }
+        return length;
+    }
+}
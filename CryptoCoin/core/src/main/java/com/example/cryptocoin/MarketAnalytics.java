@@ -0,0 +1,394 @@
+package com.example.cryptocoin;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Market-wide figures for a whole list: how the market moved on average, how many coins rose
+ * and fell, the biggest gainers and losers over 24 hours, and percentile bands of the 24 hour
+ * change.
+ *
+ * The list is split into ranges on a fork/join pool. Each range is read once, into a primitive
+ * array of changes and running totals, and keeps its own best and worst coins in bounded heaps,
+ * which are merged as the ranges join. The percentiles are then picked out of the changes by a
+ * quickselect that partitions once for all the bands and forks the two sides, so nothing is ever
+ * fully sorted. Safe to use from any thread
+ */
+public class MarketAnalytics {
+
+    // percentiles of the 24 hour change each summary holds
+    public static final double[] BANDS = {0.05, 0.25, 0.5, 0.75, 0.95};
+    // rows read per task, enough that splitting costs little next to the reading
+    static final int LEAF_ROWS = 4096;
+    // ranges this short are sorted rather than split further when selecting
+    private static final int SELECT_SORT_ROWS = 32;
+
+    /**
+     * Figures for one list
+     */
+    public static class Summary {
+        final CryptoRows rows;
+        public final int coins;
+        public final int advancers;
+        public final int decliners;
+        // equal-weighted average 24 hour change, in %
+        public final double meanChange;
+        // rows of the biggest gainers, biggest first, and of the biggest losers, biggest first
+        public final int[] gainers;
+        public final int[] losers;
+        // 24 hour change at each of BANDS, in %
+        public final double[] bands;
+
+        Summary(CryptoRows rows, int advancers, int decliners, double meanChange, int[] gainers,
+                int[] losers, double[] bands) {
+            this.rows = rows;
+            this.coins = rows.size();
+            this.advancers = advancers;
+            this.decliners = decliners;
+            this.meanChange = meanChange;
+            this.gainers = gainers;
+            this.losers = losers;
+            this.bands = bands;
+        }
+
+        /**
+         * @param list list of coins
+         * @return true if this summary was computed for exactly that list
+         */
+        public boolean describes(CryptoRows list) {
+            return rows == list;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int topCount;
+
+    /**
+     * @param pool pool the work is split over
+     * @param topCount number of gainers and of losers to find
+     */
+    public MarketAnalytics(ForkJoinPool pool, int topCount) {
+        this.pool = pool;
+        this.topCount = topCount;
+    }
+
+    /**
+     * Work out the figures for a list. Blocks until they are ready
+     * @param rows list of coins
+     * @return the list's figures
+     */
+    public Summary summarize(CryptoRows rows) {
+        int size = rows.size();
+        double[] changes = new double[size];
+        Totals totals = pool.invoke(new Gather(rows, changes, topCount, 0, size));
+
+        double[] bands = new double[BANDS.length];
+        if (size > 0) {
+            int[] ranks = ranks(size);
+            pool.invoke(new Select(changes, 0, size, ranks, 0, ranks.length));
+            for (int i = 0; i < BANDS.length; i++) {
+                bands[i] = changes[rank(BANDS[i], size)];
+            }
+        }
+        return new Summary(rows, totals.advancers, totals.decliners, size == 0 ? 0 : totals.sum / size,
+                totals.gainers.rowsBestFirst(), totals.losers.rowsBestFirst(), bands);
+    }
+
+    /**
+     * @return position a percentile falls at in a sorted list of size values, by nearest rank
+     */
+    static int rank(double percentile, int size) {
+        return Math.max(0, Math.min(size - 1, (int) Math.ceil(percentile * size) - 1));
+    }
+
+    // the positions of every band, ascending and without repeats
+    private static int[] ranks(int size) {
+        int[] ranks = new int[BANDS.length];
+        int count = 0;
+        for (double band : BANDS) {
+            int rank = rank(band, size);
+            if (count == 0 || ranks[count - 1] != rank) {
+                ranks[count++] = rank;
+            }
+        }
+        return Arrays.copyOf(ranks, count);
+    }
+
+    /**
+     * @return a change as the figures count it, an unreadable one as no change
+     */
+    static double change(CryptoRows rows, int row) {
+        double change = rows.dailyChange(row);
+        return change != change ? 0 : change;
+    }
+
+    /**
+     * What a range of rows adds up to
+     */
+    private static class Totals {
+        double sum;
+        int advancers;
+        int decliners;
+        final TopRows gainers;
+        final TopRows losers;
+
+        Totals(int topCount) {
+            gainers = new TopRows(topCount);
+            losers = new TopRows(topCount);
+        }
+
+        void add(Totals other) {
+            sum += other.sum;
+            advancers += other.advancers;
+            decliners += other.decliners;
+            gainers.addAll(other.gainers);
+            losers.addAll(other.losers);
+        }
+    }
+
+    /**
+     * Reads a range of rows into the changes array and totals it, splitting it in half while it
+     * is longer than LEAF_ROWS
+     */
+    private static class Gather extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final CryptoRows rows;
+        private final double[] changes;
+        private final int topCount;
+        private final int from;
+        private final int to;
+
+        Gather(CryptoRows rows, double[] changes, int topCount, int from, int to) {
+            this.rows = rows;
+            this.changes = changes;
+            this.topCount = topCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                Gather left = new Gather(rows, changes, topCount, from, mid);
+                left.fork();
+                Totals right = new Gather(rows, changes, topCount, mid, to).compute();
+                Totals totals = left.join();
+                totals.add(right);
+                return totals;
+            }
+
+            Totals totals = new Totals(topCount);
+            double sum = 0;
+            int advancers = 0;
+            int decliners = 0;
+            for (int row = from; row < to; row++) {
+                double change = change(rows, row);
+                changes[row] = change;
+                sum += change;
+                if (change > 0) {
+                    advancers++;
+                } else if (change < 0) {
+                    decliners++;
+                }
+                totals.gainers.offer(change, row);
+                totals.losers.offer(-change, row);
+            }
+            totals.sum = sum;
+            totals.advancers = advancers;
+            totals.decliners = decliners;
+            return totals;
+        }
+    }
+
+    /**
+     * Moves the values at the given ranks of a range into place, as a sort would leave them.
+     * Each pass partitions the range three ways around a pivot, then carries on into whichever
+     * sides still hold a wanted rank, forking one side if both do
+     */
+    private static class Select extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final int from;
+        private final int to;
+        private final int[] ranks;
+        private final int firstRank;
+        private final int lastRank;
+
+        Select(double[] values, int from, int to, int[] ranks, int firstRank, int lastRank) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.ranks = ranks;
+            this.firstRank = firstRank;
+            this.lastRank = lastRank;
+        }
+
+        @Override
+        protected void compute() {
+            int lo = from;
+            int hi = to;
+            int first = firstRank;
+            int last = lastRank;
+            while (first < last) {
+                if (hi - lo <= SELECT_SORT_ROWS) {
+                    Arrays.sort(values, lo, hi);
+                    return;
+                }
+                double pivot = medianOfThree(values[lo], values[(lo + hi) >>> 1], values[hi - 1]);
+
+                // [lo, less) below the pivot, [less, i) equal, (greater, hi) above
+                int less = lo;
+                int i = lo;
+                int greater = hi - 1;
+                while (i <= greater) {
+                    double value = values[i];
+                    if (value < pivot) {
+                        values[i++] = values[less];
+                        values[less++] = value;
+                    } else if (value > pivot) {
+                        values[i] = values[greater];
+                        values[greater--] = value;
+                    } else {
+                        i++;
+                    }
+                }
+
+                // ranks below less are on the left, ranks above greater on the right, the rest are done
+                int leftEnd = first;
+                while (leftEnd < last && ranks[leftEnd] < less) {
+                    leftEnd++;
+                }
+                int rightStart = leftEnd;
+                while (rightStart < last && ranks[rightStart] <= greater) {
+                    rightStart++;
+                }
+
+                boolean left = first < leftEnd;
+                boolean right = rightStart < last;
+                if (left && right) {
+                    Select side = new Select(values, greater + 1, hi, ranks, rightStart, last);
+                    if (hi - greater > LEAF_ROWS) {
+                        side.fork();
+                        new Select(values, lo, less, ranks, first, leftEnd).compute();
+                        side.join();
+                    } else {
+                        new Select(values, lo, less, ranks, first, leftEnd).compute();
+                        side.compute();
+                    }
+                    return;
+                } else if (left) {
+                    hi = less;
+                    last = leftEnd;
+                } else if (right) {
+                    lo = greater + 1;
+                    first = rightStart;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static double medianOfThree(double a, double b, double c) {
+            return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+        }
+    }
+
+    /**
+     * The rows with the highest keys seen, at most capacity of them, held in a binary min-heap of
+     * primitives so the lowest kept key is always at the root. On equal keys the earlier row,
+     * nearer the top of the market, ranks higher
+     */
+    static class TopRows {
+        private final double[] keys;
+        private final int[] rows;
+        private int size;
+
+        TopRows(int capacity) {
+            keys = new double[capacity];
+            rows = new int[capacity];
+        }
+
+        /**
+         * Keep a row if it ranks among the highest seen
+         */
+        void offer(double key, int row) {
+            if (size < keys.length) {
+                keys[size] = key;
+                rows[size] = row;
+                siftUp(size++);
+            } else if (size > 0 && ranksAbove(key, row, keys[0], rows[0])) {
+                keys[0] = key;
+                rows[0] = row;
+                siftDown(0, size);
+            }
+        }
+
+        void addAll(TopRows other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.keys[i], other.rows[i]);
+            }
+        }
+
+        /**
+         * @return the kept rows, highest ranked first. Empties the heap
+         */
+        int[] rowsBestFirst() {
+            int[] best = new int[size];
+            // heap sort: the lowest ranked row at the root goes to the back each time
+            for (int end = size - 1; end >= 0; end--) {
+                best[end] = rows[0];
+                keys[0] = keys[end];
+                rows[0] = rows[end];
+                siftDown(0, end);
+            }
+            size = 0;
+            return best;
+        }
+
+        private static boolean ranksAbove(double key, int row, double otherKey, int otherRow) {
+            return key > otherKey || (key == otherKey && row < otherRow);
+        }
+
+        private void siftUp(int child) {
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!ranksAbove(keys[parent], rows[parent], keys[child], rows[child])) {
+                    return;
+                }
+                swap(parent, child);
+                child = parent;
+            }
+        }
+
+        private void siftDown(int parent, int end) {
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= end) {
+                    return;
+                }
+                if (child + 1 < end && ranksAbove(keys[child], rows[child], keys[child + 1], rows[child + 1])) {
+                    child++;
+                }
+                if (!ranksAbove(keys[parent], rows[parent], keys[child], rows[child])) {
+                    return;
+                }
+                swap(parent, child);
+                parent = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where time and bytes go, from the network to the rows on screen. Each stage of getting a list
+ * shown has a latency histogram, timed like this:
+ *
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.stop(Metrics.PARSE, start);
+ *
+ * and counters cover bytes downloaded and cache hits. Recording is lock-free and allocates
+ * nothing, so it can stay on the hot paths. Recording is off until setEnabled turns it on, as
+ * debug builds do; while off, start returns 0 and nothing is recorded, which costs one volatile
+ * read per call. Safe to use from any thread
+ */
+public final class Metrics {
+
+    // stages
+    // waiting for the server, up to the response headers
+    public static final int FETCH = 0;
+    // turning a response body into coins
+    public static final int PARSE = 1;
+    // packing a list into columns
+    public static final int PACK = 2;
+    // building a list's search index
+    public static final int INDEX = 3;
+    // computing a list's sort orders
+    public static final int SORT = 4;
+    // filtering a list by a search
+    public static final int FILTER = 5;
+    // finding which rows on screen a new list changed
+    public static final int DIFF = 6;
+    // binding one row
+    public static final int BIND = 7;
+    // from the list screen starting to its first row being bound
+    public static final int FIRST_ROW = 8;
+    // market-wide figures for a list
+    public static final int ANALYTICS = 9;
+    private static final String[] STAGE_NAMES = {"fetch", "parse", "pack", "index", "sort", "filter",
+            "diff", "bind", "first row", "analytics"};
+
+    // counters
+    public static final int BYTES_DOWNLOADED = 0;
+    // responses downloaded, and answered by the server as unchanged, for the http cache hit ratio
+    public static final int HTTP_DOWNLOADS = 1;
+    public static final int HTTP_NOT_MODIFIED = 2;
+    public static final int HTTP_FAILURES = 3;
+    // cold starts that had a saved list to show, and that didn't
+    public static final int SNAPSHOT_HITS = 4;
+    public static final int SNAPSHOT_MISSES = 5;
+    public static final int ROWS_BOUND = 6;
+    private static final String[] COUNTER_NAMES = {"bytes downloaded", "http downloads", "http not modified",
+            "http failures", "saved list hits", "saved list misses", "rows bound"};
+
+    private static volatile boolean enabled;
+    private static final LatencyHistogram[] stages = new LatencyHistogram[STAGE_NAMES.length];
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    // when the list screen started waiting for its first row, or 0 once it has been shown
+    private static final AtomicLong firstRowStart = new AtomicLong();
+
+    static {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {}
+
+    /**
+     * Turn recording on or off. Off, every call returns straight away
+     * @param on true to record, as debug builds do
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start timing a stage
+     * @return the time to hand to stop, or 0 if metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finish timing a stage
+     * @param stage one of the stage constants
+     * @param start what start returned
+     */
+    public static void stop(int stage, long start) {
+        if (start != 0) {
+            stages[stage].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Add to a counter
+     * @param counter one of the counter constants
+     * @param amount how much to add
+     */
+    public static void count(int counter, long amount) {
+        if (enabled) {
+            counters.addAndGet(counter, amount);
+        }
+    }
+
+    /**
+     * Start timing until the first row is bound, e.g. when the list screen is created
+     */
+    public static void startFirstRow() {
+        if (enabled) {
+            firstRowStart.set(System.nanoTime());
+        }
+    }
+
+    /**
+     * Note that a row was bound, which finishes the time to first row if it is being timed
+     */
+    public static void rowBound() {
+        if (!enabled) {
+            return;
+        }
+        counters.incrementAndGet(ROWS_BOUND);
+        long start = firstRowStart.get();
+        if (start != 0 && firstRowStart.compareAndSet(start, 0)) {
+            stages[FIRST_ROW].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return latencies of a stage
+     */
+    public static LatencyHistogram stage(int stage) {
+        return stages[stage];
+    }
+
+    /**
+     * @return value of a counter
+     */
+    public static long counter(int counter) {
+        return counters.get(counter);
+    }
+
+    /**
+     * @return share of http requests the server answered as unchanged, between 0 and 1
+     */
+    public static double httpCacheHitRatio() {
+        return ratio(counters.get(HTTP_NOT_MODIFIED), counters.get(HTTP_DOWNLOADS));
+    }
+
+    /**
+     * @return share of cold starts that had a saved list to show, between 0 and 1
+     */
+    public static double snapshotHitRatio() {
+        return ratio(counters.get(SNAPSHOT_HITS), counters.get(SNAPSHOT_MISSES));
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public static void reset() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            counters.set(i, 0);
+        }
+        firstRowStart.set(0);
+    }
+
+    /**
+     * Write every stage and counter as a table, for the debug overlay or a file
+     * @param out where to write
+     * @throws IOException out could not be written to
+     */
+    public static void dump(Writer out) throws IOException {
+        out.write(String.format(Locale.US, "%-10s %8s %9s %9s %9s %9s%n", "stage", "count", "mean ms", "p50 ms",
+                "p99 ms", "max ms"));
+        for (int i = 0; i < stages.length; i++) {
+            LatencyHistogram histogram = stages[i];
+            long count = histogram.getCount();
+            out.write(String.format(Locale.US, "%-10s %8d %9.3f %9.3f %9.3f %9.3f%n", STAGE_NAMES[i], count,
+                    count == 0 ? 0 : histogram.getTotalMicros() / 1000.0 / count,
+                    histogram.percentileMicros(0.5) / 1000.0, histogram.percentileMicros(0.99) / 1000.0,
+                    histogram.percentileMicros(1) / 1000.0));
+        }
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            out.write(String.format(Locale.US, "%-18s %d%n", COUNTER_NAMES[i], counters.get(i)));
+        }
+        out.write(String.format(Locale.US, "%-18s %.1f%%%n", "http cache hits", 100 * httpCacheHitRatio()));
+        out.write(String.format(Locale.US, "%-18s %.1f%%%n", "saved list hits", 100 * snapshotHitRatio()));
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price feed that polls the coinlore single coin endpoint (/api/ticker/?id=) for each
+ * subscription. Polls go through a CoinFetchCoordinator, so polls of several coins that fall due
+ * together share one call, and an unchanged price is not delivered again
+ */
+public class PollingPriceFeed implements PriceFeed {
+
+    // default time requests are collected for before they are sent together
+    static final long COALESCE_MILLIS = 50;
+
+    private final CoinFetchCoordinator coordinator;
+    private final long periodMillis;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "price-feed");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    private final HashMap<Listener, Poll> polls = new HashMap<>();
+
+    /**
+     * @param fetcher fetcher used for every poll
+     * @param baseUrl url of the single coin endpoint, without any query
+     * @param periodMillis time between the end of one poll and the start of the next
+     */
+    public PollingPriceFeed(HttpFetcher fetcher, String baseUrl, long periodMillis) {
+        this(new CoinFetchCoordinator(fetcher, baseUrl, COALESCE_MILLIS), periodMillis);
+    }
+
+    /**
+     * @param coordinator coordinator every poll is made through, which may be shared with other
+     *                    screens
+     * @param periodMillis time between one poll being asked for and the next
+     */
+    public PollingPriceFeed(CoinFetchCoordinator coordinator, long periodMillis) {
+        this.coordinator = coordinator;
+        this.periodMillis = periodMillis;
+    }
+
+    @Override
+    public synchronized void subscribe(String coinId, Listener listener) {
+        unsubscribe(listener);
+        Poll poll = new Poll(coinId, listener);
+        poll.future = executor.scheduleWithFixedDelay(poll, 0, periodMillis, TimeUnit.MILLISECONDS);
+        polls.put(listener, poll);
+    }
+
+    @Override
+    public synchronized void unsubscribe(Listener listener) {
+        Poll poll = polls.remove(listener);
+        if (poll != null) {
+            poll.cancelled = true;
+            poll.future.cancel(false);
+        }
+    }
+
+    /**
+     * Asks for one coin, delivering it when it changed since the last delivery
+     */
+    private class Poll implements Runnable, CoinFetchCoordinator.Callback {
+        private final String coinId;
+        private final Listener listener;
+        private ScheduledFuture<?> future;
+        // a request already made when the poll is cancelled is answered but not delivered
+        private volatile boolean cancelled;
+        // null until the first delivery. Answers arrive on whichever of the coordinator's pool
+        // threads fetched them, so it is only read and set while holding the poll's lock
+        private Crypto lastDelivered;
+
+        Poll(String coinId, Listener listener) {
+            this.coinId = coinId;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            coordinator.request(coinId, this);
+        }
+
+        @Override
+        public void onCoin(Crypto coin) {
+            synchronized (this) {
+                // a batch answered with a 304 hands back the same coins as last time
+                if (lastDelivered != null && lastDelivered.priceFixed == coin.priceFixed
+                        && lastDelivered.dailyChangeText.equals(coin.dailyChangeText)
+                        && lastDelivered.hourlyChangeText.equals(coin.hourlyChangeText)) {
+                    return;
+                }
+                if (cancelled) {
+                    return;
+                }
+                lastDelivered = coin;
+            }
+            listener.onPrice(coin);
+        }
+
+        @Override
+        public void onFailure(String coinId, IOException e) {
+            // the next poll tries again, the screen keeps the last price meanwhile
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.cryptocoin;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The coins the user holds, how much they paid for them, and what they are worth now. All
+ * amounts are fixed-point longs: quantities in 1/QUANTITY_SCALE coins and money in
+ * 1/Crypto.PRICE_SCALE dollars, so sums and differences are exact.
+ *
+ * Totals are kept up to date incrementally. A new list only recomputes the positions whose price
+ * changed, and adjusts the totals by the difference, so a refresh costs one price comparison per
+ * position rather than a multiplication and a sum over all of them. Positions are stored in
+ * parallel primitive arrays. Safe to use from any thread
+ */
+public class Portfolio {
+
+    // quantities use the same eight decimal places as prices, so Crypto.parseFixed reads them
+    public static final long QUANTITY_SCALE = Crypto.PRICE_SCALE;
+    // price of a position whose coin hasn't been in any list yet
+    public static final long NO_PRICE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final BigInteger BIG_QUANTITY_SCALE = BigInteger.valueOf(QUANTITY_SCALE);
+
+    private final HashMap<String, Integer> positionsById = new HashMap<>();
+    private String[] coinIds = new String[INITIAL_CAPACITY];
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private long[] costs = new long[INITIAL_CAPACITY];
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    // row each position's coin was found at in the last list, checked first in the next one
+    private int[] rowHints = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private long totalValue;
+    private long totalCost;
+    // cost of the positions that have a price, so profit only counts what can be valued
+    private long pricedCost;
+
+    // rows of every coin id in the list being priced, only built if a coin moved rows
+    private CryptoRows indexedRows;
+    private HashMap<String, Integer> rowsById;
+
+    /**
+     * Add coins to a position, opening it if the coin isn't held yet
+     * @param coinId id of the coin
+     * @param symbol coin's symbol, for showing the position
+     * @param quantity coins bought, in 1/QUANTITY_SCALE coins
+     * @param cost amount paid for them, in 1/Crypto.PRICE_SCALE dollars
+     * @return index of the position
+     */
+    public synchronized int add(String coinId, String symbol, long quantity, long cost) {
+        if (quantity < 0 || cost < 0) {
+            throw new IllegalArgumentException("Quantity and cost can't be negative");
+        }
+        Integer existing = positionsById.get(coinId);
+        int position;
+        if (existing != null) {
+            position = existing;
+            symbols[position] = symbol;
+        } else {
+            if (size == coinIds.length) {
+                grow();
+            }
+            position = size++;
+            positionsById.put(coinId, position);
+            coinIds[position] = coinId;
+            symbols[position] = symbol;
+            quantities[position] = 0;
+            costs[position] = 0;
+            prices[position] = NO_PRICE;
+            values[position] = 0;
+            rowHints[position] = -1;
+        }
+
+        quantities[position] += quantity;
+        costs[position] += cost;
+        totalCost += cost;
+        if (prices[position] != NO_PRICE) {
+            pricedCost += cost;
+            setValue(position, value(quantities[position], prices[position]));
+        }
+        return position;
+    }
+
+    /**
+     * Close a position. The last position takes its index
+     * @param coinId id of the coin
+     * @return true if the coin was held
+     */
+    public synchronized boolean remove(String coinId) {
+        Integer removed = positionsById.remove(coinId);
+        if (removed == null) {
+            return false;
+        }
+        int position = removed;
+        totalCost -= costs[position];
+        if (prices[position] != NO_PRICE) {
+            pricedCost -= costs[position];
+        }
+        long removedValue = values[position];
+
+        int last = --size;
+        if (position != last) {
+            coinIds[position] = coinIds[last];
+            symbols[position] = symbols[last];
+            quantities[position] = quantities[last];
+            costs[position] = costs[last];
+            prices[position] = prices[last];
+            values[position] = values[last];
+            rowHints[position] = rowHints[last];
+            positionsById.put(coinIds[position], position);
+        }
+        coinIds[last] = null;
+        symbols[last] = null;
+        moveTotalValue(removedValue, 0);
+        return true;
+    }
+
+    /**
+     * Price every position from a new list. Positions whose price didn't change are left alone,
+     * and a coin missing from the list keeps its last price
+     * @param snapshot the list
+     * @return number of positions recomputed
+     */
+    public synchronized int updatePrices(TickerSnapshot snapshot) {
+        CryptoRows rows = snapshot.rows;
+        int rowCount = rows.size();
+        int updated = 0;
+        for (int i = 0; i < size; i++) {
+            // coins rarely change rank between refreshes, so the last row is usually still right
+            int row = rowHints[i];
+            if (row < 0 || row >= rowCount || !rows.id(row).equals(coinIds[i])) {
+                row = findRow(rows, coinIds[i]);
+                rowHints[i] = row;
+                if (row < 0) {
+                    continue;
+                }
+            }
+            if (reprice(i, rows.priceFixed(row))) {
+                updated++;
+            }
+        }
+        // don't keep the list alive until the next one
+        indexedRows = null;
+        rowsById = null;
+        return updated;
+    }
+
+    /**
+     * Price one position, e.g. from a live tick
+     * @param coinId id of the coin
+     * @param priceFixed coin's price in 1/Crypto.PRICE_SCALE dollars
+     * @return true if the position's value was recomputed
+     */
+    public synchronized boolean updatePrice(String coinId, long priceFixed) {
+        Integer position = positionsById.get(coinId);
+        return position != null && reprice(position, priceFixed);
+    }
+
+    /**
+     * @param coinId id of the coin
+     * @return index of the coin's position, or -1 if it isn't held
+     */
+    public synchronized int indexOf(String coinId) {
+        Integer position = positionsById.get(coinId);
+        return position == null ? -1 : position;
+    }
+
+    public synchronized int size() { return size; }
+
+    public synchronized String coinId(int position) { return coinIds[checked(position)]; }
+
+    public synchronized String symbol(int position) { return symbols[checked(position)]; }
+
+    /**
+     * @return coins held, in 1/QUANTITY_SCALE coins
+     */
+    public synchronized long quantity(int position) { return quantities[checked(position)]; }
+
+    /**
+     * @return amount paid, in 1/Crypto.PRICE_SCALE dollars
+     */
+    public synchronized long cost(int position) { return costs[checked(position)]; }
+
+    /**
+     * @return latest price, or NO_PRICE if the coin hasn't been priced yet
+     */
+    public synchronized long price(int position) { return prices[checked(position)]; }
+
+    /**
+     * @return what the position is worth at its latest price, zero if it has none
+     */
+    public synchronized long value(int position) { return values[checked(position)]; }
+
+    /**
+     * @return value less cost, zero if the position has no price yet
+     */
+    public synchronized long profit(int position) {
+        checked(position);
+        return prices[position] == NO_PRICE ? 0 : values[position] - costs[position];
+    }
+
+    /**
+     * @return what every priced position is worth, in 1/Crypto.PRICE_SCALE dollars, or
+     * Long.MAX_VALUE if that is too large to hold
+     */
+    public synchronized long getTotalValue() {
+        return totalValue;
+    }
+
+    /**
+     * @return amount paid for every position, in 1/Crypto.PRICE_SCALE dollars
+     */
+    public synchronized long getTotalCost() {
+        return totalCost;
+    }
+
+    /**
+     * @return total value less the cost of the positions that have a price
+     */
+    public synchronized long getTotalProfit() {
+        return totalValue - pricedCost;
+    }
+
+    /**
+     * Worth of a quantity of coins at a price, rounded to the nearest 1/Crypto.PRICE_SCALE dollar
+     * @param quantity coins, in 1/QUANTITY_SCALE coins
+     * @param priceFixed price in 1/Crypto.PRICE_SCALE dollars
+     * @return value in 1/Crypto.PRICE_SCALE dollars, or Long.MAX_VALUE if it is too large to hold
+     */
+    static long value(long quantity, long priceFixed) {
+        if (quantity == 0 || priceFixed <= 0) {
+            return 0;
+        }
+        // split both into whole units and fractions, so no partial product overflows:
+        // q * p / S = qWhole * p + qFraction * pWhole + qFraction * pFraction / S
+        long quantityWhole = quantity / QUANTITY_SCALE;
+        long quantityFraction = quantity % QUANTITY_SCALE;
+        long priceWhole = priceFixed / QUANTITY_SCALE;
+        long priceFraction = priceFixed % QUANTITY_SCALE;
+        if (quantityWhole <= Long.MAX_VALUE / 2 / priceFixed) {
+            long whole = quantityWhole * priceFixed + quantityFraction * priceWhole;
+            long fraction = (quantityFraction * priceFraction + QUANTITY_SCALE / 2) / QUANTITY_SCALE;
+            if (whole >= 0 && whole <= Long.MAX_VALUE - fraction) {
+                return whole + fraction;
+            }
+        }
+        // only holdings worth billions get here
+        BigInteger exact = BigInteger.valueOf(quantity).multiply(BigInteger.valueOf(priceFixed))
+                .add(BigInteger.valueOf(QUANTITY_SCALE / 2)).divide(BIG_QUANTITY_SCALE);
+        return exact.bitLength() < 64 ? exact.longValue() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Give a position a new price, adjusting the totals by how much its value moved
+     * @return true if the price changed
+     */
+    private boolean reprice(int position, long priceFixed) {
+        long oldPrice = prices[position];
+        if (oldPrice == priceFixed) {
+            return false;
+        }
+        if (oldPrice == NO_PRICE) {
+            pricedCost += costs[position];
+        }
+        prices[position] = priceFixed;
+        setValue(position, value(quantities[position], priceFixed));
+        return true;
+    }
+
+    private void setValue(int position, long value) {
+        long oldValue = values[position];
+        values[position] = value;
+        moveTotalValue(oldValue, value);
+    }
+
+    /**
+     * Adjust the total value for one position's value moving. A total too large to hold stays at
+     * Long.MAX_VALUE rather than wrapping round to a negative one
+     */
+    private void moveTotalValue(long oldValue, long newValue) {
+        if (totalValue == Long.MAX_VALUE) {
+            // the true total was lost when it saturated, so it is added up again until it fits
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total = values[i] > Long.MAX_VALUE - total ? Long.MAX_VALUE : total + values[i];
+            }
+            totalValue = total;
+            return;
+        }
+        // the total holds the old value, so taking it off can't overflow, only adding the new can
+        long total = totalValue - oldValue;
+        totalValue = newValue > Long.MAX_VALUE - total ? Long.MAX_VALUE : total + newValue;
+    }
+
+    /**
+     * @return row of a coin in a list, or -1 if it isn't in it
+     */
+    private int findRow(CryptoRows rows, String coinId) {
+        if (indexedRows != rows) {
+            rowsById = CoinRegistry.index(rows);
+            indexedRows = rows;
+        }
+        Integer row = rowsById.get(coinId);
+        return row == null ? -1 : row;
+    }
+
+    private int checked(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size);
+        }
+        return position;
+    }
+
+    private void grow() {
+        int capacity = coinIds.length * 2;
+        coinIds = Arrays.copyOf(coinIds, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        costs = Arrays.copyOf(costs, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        values = Arrays.copyOf(values, capacity);
+        rowHints = Arrays.copyOf(rowHints, capacity);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.cryptocoin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps the user's portfolio on disk. The file is a small header (magic, version, position
+ * count) followed by each position's coin id, symbol, quantity and cost. Prices aren't saved,
+ * the next list prices every position again
+ */
+public class PortfolioStore {
+
+    private static final int MAGIC = 0x50464f4c; // "PFOL"
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    public PortfolioStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the saved portfolio
+     * @return the saved portfolio, or an empty one if there is none or it can't be read
+     */
+    public Portfolio read() {
+        Portfolio portfolio = new Portfolio();
+        if (!file.isFile()) {
+            return portfolio;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return portfolio;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String coinId = in.readUTF();
+                String symbol = in.readUTF();
+                long quantity = in.readLong();
+                long cost = in.readLong();
+                portfolio.add(coinId, symbol, quantity, cost);
+            }
+            return portfolio;
+        } catch (IOException | IllegalArgumentException e) {
+            // a damaged file loses the portfolio rather than showing part of it
+            return new Portfolio();
+        }
+    }
+
+    /**
+     * Save a portfolio, replacing the previous one. The new file is written next to the old one
+     * and renamed over it, so a crash part way through never loses the saved portfolio
+     * @param portfolio portfolio to save
+     * @throws IOException file could not be written
+     */
+    public void write(Portfolio portfolio) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        // hold the portfolio still while it is written, so the file matches one moment
+        synchronized (portfolio) {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                int size = portfolio.size();
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeUTF(portfolio.coinId(i));
+                    out.writeUTF(portfolio.symbol(i));
+                    out.writeLong(portfolio.quantity(i));
+                    out.writeLong(portfolio.cost(i));
+                }
+            }
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
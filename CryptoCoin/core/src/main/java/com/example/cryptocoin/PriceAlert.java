@@ -0,0 +1,97 @@
+package com.example.cryptocoin;
+
+import java.math.BigDecimal;
+
+/**
+ * One threshold alert, e.g. "BTC above $45000" or "ETH 1h change below -5%". Thresholds are
+ * fixed-point: prices in 1/Crypto.PRICE_SCALE dollars and changes in 1/CHANGE_SCALE percent
+ */
+public class PriceAlert {
+
+    // values an alert can watch
+    public static final int PRICE = 0;
+    public static final int DAILY_CHANGE = 1;
+    public static final int HOURLY_CHANGE = 2;
+
+    // changes are kept to hundredths of a percent, as precise as the API gives them
+    public static final long CHANGE_SCALE = 100;
+
+    public final int id;
+    public final String coinId;
+    public final String symbol;
+    public final int field;
+    // true to alert when the value rises above the threshold, false when it falls below
+    public final boolean above;
+    public final long threshold;
+
+    /**
+     * @param id caller's id for the alert, used to remove it
+     * @param coinId id of the coin to watch
+     * @param symbol coin's symbol, for describing the alert
+     * @param field PRICE, DAILY_CHANGE or HOURLY_CHANGE
+     * @param above true to alert when the value rises above the threshold, false when it falls
+     *              below it
+     * @param threshold in 1/Crypto.PRICE_SCALE dollars for PRICE, or 1/CHANGE_SCALE percent for
+     *                  the changes
+     */
+    public PriceAlert(int id, String coinId, String symbol, int field, boolean above, long threshold) {
+        if (field < PRICE || field > HOURLY_CHANGE) {
+            throw new IllegalArgumentException("Unknown field " + field);
+        }
+        this.id = id;
+        this.coinId = coinId;
+        this.symbol = symbol;
+        this.field = field;
+        this.above = above;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Read the value an alert of some field watches from a list
+     * @return the value in the field's fixed-point units
+     */
+    static long valueOf(CryptoRows rows, int row, int field) {
+        switch (field) {
+            case PRICE:
+                return rows.priceFixed(row);
+            case DAILY_CHANGE:
+                return Math.round(rows.dailyChange(row) * CHANGE_SCALE);
+            default:
+                return Math.round(rows.hourlyChange(row) * CHANGE_SCALE);
+        }
+    }
+
+    /**
+     * @param value a value of the watched field, in its fixed-point units
+     * @return true if the alert's condition holds at that value
+     */
+    public boolean holdsAt(long value) {
+        return above ? value > threshold : value < threshold;
+    }
+
+    /**
+     * @return the alert as a sentence, e.g. "BTC price is above $45000.00"
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder(symbol);
+        switch (field) {
+            case PRICE:
+                text.append(" price is ");
+                break;
+            case DAILY_CHANGE:
+                text.append(" 24h change is ");
+                break;
+            default:
+                text.append(" 1h change is ");
+                break;
+        }
+        text.append(above ? "above " : "below ");
+        if (field == PRICE) {
+            char[] buffer = new char[32];
+            text.append(buffer, 0, LivePrice.formatDollars(threshold, buffer));
+        } else {
+            text.append(BigDecimal.valueOf(threshold, 2).stripTrailingZeros().toPlainString()).append('%');
+        }
+        return text.toString();
+    }
+}
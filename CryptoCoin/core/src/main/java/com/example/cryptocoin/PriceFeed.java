@@ -0,0 +1,28 @@
+package com.example.cryptocoin;
+
+/**
+ * A source of live prices for single coins. Implementations may poll the API or receive
+ * pushed updates; listeners are called on the feed's own thread
+ */
+public interface PriceFeed {
+
+    /**
+     * Receives each new price for a coin
+     */
+    interface Listener {
+        void onPrice(Crypto coin);
+    }
+
+    /**
+     * Start sending a coin's prices to a listener
+     * @param coinId id of the coin to follow
+     * @param listener receives the coin's data each time it changes
+     */
+    void subscribe(String coinId, Listener listener);
+
+    /**
+     * Stop sending prices to a listener
+     * @param listener listener passed to subscribe
+     */
+    void unsubscribe(Listener listener);
+}
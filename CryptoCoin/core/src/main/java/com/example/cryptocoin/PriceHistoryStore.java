@@ -0,0 +1,386 @@
+package com.example.cryptocoin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only price history per coin, kept at three resolutions: every recorded tick, one point
+ * per minute and one point per hour. New ticks are appended to the raw series; compaction rolls
+ * raw ticks older than a day into minute points and minute points older than a week into hour
+ * points, so the history of a coin stays small however long the app is used.
+ *
+ * Each series is one file of fixed-size records sorted by time, behind a small header holding
+ * the record count. Files are memory-mapped, so a range query is two binary searches and a read
+ * of only the records it returns. A file is only open while it is being mapped: the mapping
+ * stays valid after its channel is closed, so the series kept mapped between refreshes, every
+ * resolution of each recorded coin, cost address space but no file descriptors. Safe to use
+ * from any thread
+ */
+public class PriceHistoryStore {
+
+    static final int RAW = 0;
+    static final int MINUTE = 1;
+    static final int HOUR = 2;
+
+    private static final String[] SUFFIXES = {".raw", ".min", ".hour"};
+    // width of the points each resolution holds
+    private static final long[] BUCKET_MILLIS = {0, 60 * 1000L, 60 * 60 * 1000L};
+    // how long points stay at each resolution before being rolled into the next
+    static final long RAW_RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+    static final long MINUTE_RETENTION_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    private static final long COMPACT_INTERVAL_MILLIS = 60 * 60 * 1000L;
+
+    private static final int MAGIC = 0x50484953; // "PHIS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // time, closing price, lowest price, highest price
+    static final int RECORD_BYTES = 32;
+    private static final int INITIAL_CAPACITY = 256;
+    // mapped series kept open between calls, beyond every resolution of the recorded coins
+    private static final int EXTRA_OPEN_SERIES = 32;
+
+    private final File dir;
+    private final int maxCoins;
+    // enough that recording a list never closes a series it will need again on the next refresh
+    private final int maxOpenSeries;
+    private int mapped;
+    private long lastCompactedAt = Long.MIN_VALUE;
+
+    // recently used series, least recently used first
+    private final LinkedHashMap<String, Series> open = new LinkedHashMap<String, Series>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+            if (size() > maxOpenSeries) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * @param dir directory holding the series files, created if missing
+     * @param maxCoins record(TickerSnapshot) keeps history for this many coins from the top of
+     *                 the list
+     */
+    public PriceHistoryStore(File dir, int maxCoins) {
+        this.dir = dir;
+        this.maxCoins = maxCoins;
+        maxOpenSeries = SUFFIXES.length * maxCoins + EXTRA_OPEN_SERIES;
+    }
+
+    /**
+     * Record the price of the coins at the top of a snapshot, and compact the history if it
+     * hasn't been compacted for a while
+     * @param snapshot snapshot to record
+     * @throws IOException history could not be written
+     */
+    public synchronized void record(TickerSnapshot snapshot) throws IOException {
+        CryptoRows rows = snapshot.rows;
+        int count = Math.min(rows.size(), maxCoins);
+        for (int i = 0; i < count; i++) {
+            long price = rows.priceFixed(i);
+            series(rows.id(i), RAW).append(snapshot.fetchedAt, price, price, price);
+        }
+        if (lastCompactedAt == Long.MIN_VALUE || snapshot.fetchedAt - lastCompactedAt >= COMPACT_INTERVAL_MILLIS) {
+            compact(snapshot.fetchedAt);
+        }
+    }
+
+    /**
+     * Record one price of one coin, e.g. a live tick
+     * @param coinId id of the coin
+     * @param time when the price was current, in milliseconds since the epoch
+     * @param priceFixed price in 1/Crypto.PRICE_SCALE dollars
+     * @throws IOException history could not be written
+     */
+    public synchronized void append(String coinId, long time, long priceFixed) throws IOException {
+        series(coinId, RAW).append(time, priceFixed, priceFixed, priceFixed);
+    }
+
+    /**
+     * Read a coin's prices over a time range, oldest first, from whichever resolutions hold that
+     * range. If there are more points than fit in the output arrays, evenly spaced points are
+     * returned, always including the latest
+     * @param coinId id of the coin
+     * @param from start of the range, inclusive
+     * @param to end of the range, inclusive
+     * @param times receives the time of each point
+     * @param prices receives the price of each point, in 1/Crypto.PRICE_SCALE dollars
+     * @return number of points written
+     * @throws IOException history could not be read
+     */
+    public synchronized int query(String coinId, long from, long to, long[] times, long[] prices) throws IOException {
+        int max = Math.min(times.length, prices.length);
+        if (max == 0 || from > to) {
+            return 0;
+        }
+
+        // resolutions hold consecutive stretches of time, so read hours, then minutes, then ticks
+        Series[] series = new Series[3];
+        int[] starts = new int[3];
+        int[] ends = new int[3];
+        int total = 0;
+        for (int r = HOUR; r >= RAW; r--) {
+            if (!file(coinId, r).isFile()) {
+                continue;
+            }
+            series[r] = series(coinId, r);
+            starts[r] = series[r].lowerBound(from);
+            ends[r] = series[r].lowerBound(to == Long.MAX_VALUE ? to : to + 1);
+            total += Math.max(0, ends[r] - starts[r]);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        // keep every stride-th point, counting back from the latest so it is always included
+        long stride = (total + max - 1) / max;
+        long skip = (total - 1) % stride;
+        int written = 0;
+        for (int r = HOUR; r >= RAW; r--) {
+            for (int i = starts[r]; i < ends[r]; i++) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                times[written] = series[r].time(i);
+                prices[written] = series[r].price(i);
+                written++;
+                skip = stride - 1;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Roll raw ticks older than a day into minute points, and minute points older than a week
+     * into hour points, for every coin
+     * @param now current time in milliseconds since the epoch
+     * @throws IOException history could not be rewritten
+     */
+    public synchronized void compact(long now) throws IOException {
+        lastCompactedAt = now;
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(SUFFIXES[RAW])) {
+                continue;
+            }
+            String key = name.substring(0, name.length() - SUFFIXES[RAW].length());
+            rollUp(key, RAW, MINUTE, now - RAW_RETENTION_MILLIS);
+            if (new File(dir, key + SUFFIXES[MINUTE]).isFile()) {
+                rollUp(key, MINUTE, HOUR, now - MINUTE_RETENTION_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Close every open file. The store reopens them when next used
+     */
+    public synchronized void close() {
+        for (Series series : open.values()) {
+            series.close();
+        }
+        open.clear();
+    }
+
+    /**
+     * Move the points of one resolution that are older than a cut-off into the next coarser
+     * one, one point per bucket holding the bucket's closing, lowest and highest prices
+     */
+    private void rollUp(String key, int fromResolution, int toResolution, long cutoff) throws IOException {
+        Series source = seriesForKey(key, fromResolution);
+        long bucketMillis = BUCKET_MILLIS[toResolution];
+        // only whole buckets are rolled up, the rest waits for the next compaction
+        long end = bucketStart(cutoff, bucketMillis);
+        int rolled = source.lowerBound(end);
+        if (rolled == 0) {
+            return;
+        }
+
+        Series target = seriesForKey(key, toResolution);
+        long bucket = Long.MIN_VALUE;
+        long close = 0;
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < rolled; i++) {
+            long time = source.time(i);
+            long start = bucketStart(time, bucketMillis);
+            if (start != bucket) {
+                if (bucket != Long.MIN_VALUE) {
+                    target.append(bucket, close, low, high);
+                }
+                bucket = start;
+                low = source.low(i);
+                high = source.high(i);
+            } else {
+                low = Math.min(low, source.low(i));
+                high = Math.max(high, source.high(i));
+            }
+            close = source.price(i);
+        }
+        target.append(bucket, close, low, high);
+        source.removeFirst(rolled);
+    }
+
+    private Series series(String coinId, int resolution) throws IOException {
+        return seriesForKey(fileKey(coinId), resolution);
+    }
+
+    private Series seriesForKey(String key, int resolution) throws IOException {
+        String name = key + SUFFIXES[resolution];
+        Series series = open.get(name);
+        if (series == null) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            series = new Series(new File(dir, name));
+            open.put(name, series);
+            mapped++;
+        }
+        return series;
+    }
+
+    /**
+     * @return number of times a series file has been opened and mapped
+     */
+    synchronized int getMappedCount() {
+        return mapped;
+    }
+
+    private File file(String coinId, int resolution) {
+        return new File(dir, fileKey(coinId) + SUFFIXES[resolution]);
+    }
+
+    /**
+     * @return start of the bucket a time falls in
+     */
+    private static long bucketStart(long time, long bucketMillis) {
+        return time - ((time % bucketMillis) + bucketMillis) % bucketMillis;
+    }
+
+    /**
+     * Turn a coin id into something safe to use in a file name
+     */
+    static String fileKey(String coinId) {
+        StringBuilder key = new StringBuilder(coinId.length());
+        for (int i = 0; i < coinId.length(); i++) {
+            char c = coinId.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_';
+            key.append(safe ? c : '_');
+        }
+        return key.toString();
+    }
+
+    /**
+     * One memory-mapped file of records sorted by time. The file is opened only to map it
+     */
+    private static class Series {
+        private final File path;
+        private MappedByteBuffer buffer;
+        private int count;
+        private int capacity;
+
+        Series(File path) throws IOException {
+            this.path = path;
+            long size = path.length();
+            if (size >= HEADER_BYTES) {
+                map((int) ((size - HEADER_BYTES) / RECORD_BYTES));
+                if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+                    count = Math.max(0, Math.min(buffer.getInt(8), capacity));
+                    return;
+                }
+            }
+            // a new or unreadable file starts empty
+            map(INITIAL_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            setCount(0);
+        }
+
+        private void map(int records) throws IOException {
+            long size = HEADER_BYTES + (long) records * RECORD_BYTES;
+            try (RandomAccessFile file = new RandomAccessFile(path, "rw");
+                 FileChannel channel = file.getChannel()) {
+                if (channel.size() < size) {
+                    file.setLength(size);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            capacity = records;
+        }
+
+        private void setCount(int newCount) {
+            count = newCount;
+            buffer.putInt(8, newCount);
+        }
+
+        void append(long time, long price, long low, long high) throws IOException {
+            // keep the file sorted, a tick older than the last one recorded is dropped
+            if (count > 0 && time < time(count - 1)) {
+                return;
+            }
+            if (count == capacity) {
+                map(Math.max(capacity * 2, INITIAL_CAPACITY));
+            }
+            int offset = HEADER_BYTES + count * RECORD_BYTES;
+            buffer.putLong(offset, time);
+            buffer.putLong(offset + 8, price);
+            buffer.putLong(offset + 16, low);
+            buffer.putLong(offset + 24, high);
+            setCount(count + 1);
+        }
+
+        long time(int index) { return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES); }
+
+        long price(int index) { return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES + 8); }
+
+        long low(int index) { return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES + 16); }
+
+        long high(int index) { return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES + 24); }
+
+        /**
+         * @return index of the first record at or after the time
+         */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (time(mid) < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Drop the oldest records, moving the rest to the front of the file
+         */
+        void removeFirst(int removed) {
+            int remaining = count - removed;
+            for (int i = 0; i < remaining * RECORD_BYTES; i += 8) {
+                int to = HEADER_BYTES + i;
+                buffer.putLong(to, buffer.getLong(to + removed * RECORD_BYTES));
+            }
+            setCount(remaining);
+        }
+
+        void close() {
+            // the records are already in the mapped file, this only makes sure they reach the disk
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+
+/**
+ * Somewhere the ticker list can be fetched from, a page at a time. Coins must be identified by
+ * coinlore's ids, which the rest of the app keys everything on
+ */
+public interface PriceSource {
+
+    /**
+     * @return short name of the source, for stats and logs
+     */
+    String getName();
+
+    /**
+     * Fetch and parse a single page of the list. May be interrupted, which should end the fetch
+     * as soon as it notices
+     * @param start index of the first coin
+     * @param limit number of coins to request
+     * @return the coins on that page, and whether they were reused from the last fetch
+     * @throws IOException page could not be fetched or parsed
+     */
+    HttpFetcher.Result<Crypto[]> fetchPage(int start, int limit) throws IOException;
+}
@@ -0,0 +1,206 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches pages from a primary source, hedging with a backup. If the primary hasn't answered
+ * within its own 95th percentile latency the same page is asked of the backup, the first good
+ * answer is used and the other request is cancelled. If the primary fails outright the backup
+ * is asked straight away, so the list only fails when both sources do. Each source's latency is
+ * kept in a histogram, which is also where the hedge delay comes from. The backup may be the
+ * same endpoint as the primary, in which case it is a retry on another connection rather than
+ * a second provider
+ */
+public class PriceSourceRouter implements PriceSource {
+
+    // latencies a source needs before its percentile is trusted over the default hedge delay
+    static final int MIN_SAMPLES = 20;
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final PriceSource primary;
+    private final PriceSource backup;
+    private final long defaultHedgeMillis;
+    private final LatencyHistogram primaryLatency = new LatencyHistogram();
+    private final LatencyHistogram backupLatency = new LatencyHistogram();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "price-source");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong backupWins = new AtomicLong();
+
+    /**
+     * @param primary source asked first
+     * @param backup source asked when the primary is slow or fails
+     * @param defaultHedgeMillis hedge delay used until the primary has MIN_SAMPLES latencies
+     */
+    public PriceSourceRouter(PriceSource primary, PriceSource backup, long defaultHedgeMillis) {
+        this.primary = primary;
+        this.backup = backup;
+        this.defaultHedgeMillis = defaultHedgeMillis;
+    }
+
+    @Override
+    public String getName() {
+        return primary.getName() + "+" + backup.getName();
+    }
+
+    @Override
+    public HttpFetcher.Result<Crypto[]> fetchPage(int start, int limit) throws IOException {
+        requests.incrementAndGet();
+        LinkedBlockingQueue<Attempt> answered = new LinkedBlockingQueue<>();
+        Attempt first = new Attempt(primary, primaryLatency, start, limit, answered);
+        Attempt second = null;
+        try {
+            Attempt answer = answered.poll(getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            if (answer == null) {
+                hedges.incrementAndGet();
+                second = new Attempt(backup, backupLatency, start, limit, answered);
+                answer = answered.take();
+            }
+            // a failure while the other source is still going waits for that one
+            int outstanding = second == null ? 0 : 1;
+            while (answer.failure != null) {
+                if (second == null) {
+                    failovers.incrementAndGet();
+                    second = new Attempt(backup, backupLatency, start, limit, answered);
+                    outstanding = 1;
+                }
+                if (outstanding == 0) {
+                    // both failed, report the primary's reason
+                    throw first.failure;
+                }
+                outstanding--;
+                answer = answered.take();
+            }
+
+            if (answer == first) {
+                if (second != null) {
+                    second.cancel();
+                }
+            } else {
+                first.cancel();
+                backupWins.incrementAndGet();
+            }
+            return answer.result;
+        } catch (InterruptedException e) {
+            first.cancel();
+            if (second != null) {
+                second.cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Page fetch cancelled");
+        }
+    }
+
+    /**
+     * @return how long the primary gets before the backup is asked too
+     */
+    public long getHedgeDelayMillis() {
+        if (primaryLatency.getCount() < MIN_SAMPLES) {
+            return defaultHedgeMillis;
+        }
+        return Math.max(1, TimeUnit.MICROSECONDS.toMillis(primaryLatency.percentileMicros(HEDGE_PERCENTILE)));
+    }
+
+    /**
+     * @return latencies of the primary source's answers, including requests it lost to the
+     *         backup but not ones that failed
+     */
+    public LatencyHistogram getPrimaryLatency() { return primaryLatency; }
+
+    /**
+     * @return latencies of the backup source's answers, including requests it lost to the
+     *         primary but not ones that failed
+     */
+    public LatencyHistogram getBackupLatency() { return backupLatency; }
+
+    /**
+     * @return pages asked for
+     */
+    public long getRequests() { return requests.get(); }
+
+    /**
+     * @return pages the backup was asked for because the primary was slow
+     */
+    public long getHedges() { return hedges.get(); }
+
+    /**
+     * @return pages the backup was asked for because the primary failed
+     */
+    public long getFailovers() { return failovers.get(); }
+
+    /**
+     * @return pages the backup answered first
+     */
+    public long getBackupWins() { return backupWins.get(); }
+
+    /**
+     * One source's request for a page, running on the router's threads
+     */
+    private class Attempt implements Runnable {
+        private final PriceSource source;
+        private final LatencyHistogram latency;
+        private final int start;
+        private final int limit;
+        private final LinkedBlockingQueue<Attempt> answered;
+        private final long startNanos = System.nanoTime();
+        // set once the latency has been counted, by whichever of finishing or cancelling is first
+        private final AtomicBoolean counted = new AtomicBoolean();
+        private final Future<?> future;
+        HttpFetcher.Result<Crypto[]> result;
+        IOException failure;
+
+        Attempt(PriceSource source, LatencyHistogram latency, int start, int limit,
+                LinkedBlockingQueue<Attempt> answered) {
+            this.source = source;
+            this.latency = latency;
+            this.start = start;
+            this.limit = limit;
+            this.answered = answered;
+            future = executor.submit(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = source.fetchPage(start, limit);
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(source.getName() + " failed", e);
+            }
+            // a failure can come back much faster than an answer, and counting it would make a
+            // failing source look fast, so only answers are counted
+            if (counted.compareAndSet(false, true) && failure == null) {
+                latency.record(System.nanoTime() - startNanos);
+            }
+            answered.add(this);
+        }
+
+        void cancel() {
+            // a cancelled request took at least this long, and leaving it out would make a
+            // slow source look fast
+            if (counted.compareAndSet(false, true)) {
+                latency.record(System.nanoTime() - startNanos);
+            }
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.cryptocoin;
+
+/**
+ * Decides when the ticker should be refreshed. Whoever owns it calls tick() from a timer, and
+ * a refresh is started when one is due. At most one refresh is in flight: ticks that arrive
+ * while one is running are counted and dropped. After a failed refresh the wait before the
+ * next one doubles for every failure in a row, up to a limit, and goes back to the normal
+ * interval after a success.
+ *
+ * The scheduler keeps no timer of its own and reads time only through its Clock, so it can be
+ * driven by a Handler in the app and by a fake clock in tests. Safe to use from any thread
+ */
+public class RefreshScheduler {
+
+    /**
+     * Source of the current time in milliseconds. Only differences between readings are used
+     */
+    public interface Clock {
+        long nowMillis();
+    }
+
+    /**
+     * A refresh. It may finish on any thread, but must call done exactly once
+     */
+    public interface Refresh {
+        void start(Completion done);
+    }
+
+    /**
+     * Reports how a refresh ended
+     */
+    public interface Completion {
+        void finished(boolean success);
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nowMillis() {
+            return System.nanoTime() / 1000000L;
+        }
+    };
+
+    private final Refresh refresh;
+    private final Clock clock;
+    private final long intervalMillis;
+    private final long maxBackoffMillis;
+
+    private boolean running;
+    private boolean inFlight;
+    // when the next refresh is due; starts in the past so the first tick refreshes
+    private long nextDueAt = Long.MIN_VALUE;
+    private long startedAt;
+    private int consecutiveFailures;
+
+    // metrics
+    private long refreshes;
+    private long failures;
+    private long skippedTicks;
+    private long lastLatencyMillis = -1;
+
+    /**
+     * @param refresh refresh to run when one is due
+     * @param clock time source
+     * @param intervalMillis time between the end of one successful refresh and the next
+     * @param maxBackoffMillis longest wait after failures
+     */
+    public RefreshScheduler(Refresh refresh, Clock clock, long intervalMillis, long maxBackoffMillis) {
+        if (intervalMillis <= 0 || maxBackoffMillis < intervalMillis) {
+            throw new IllegalArgumentException("Bad refresh interval");
+        }
+        this.refresh = refresh;
+        this.clock = clock;
+        this.intervalMillis = intervalMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Let ticks start refreshes, e.g. when the list becomes visible. If a refresh became due
+     * while stopped, the next tick starts it
+     */
+    public synchronized void start() {
+        running = true;
+    }
+
+    /**
+     * Ignore ticks until start() is called again, e.g. when the list is no longer visible.
+     * A refresh already in flight is left to finish
+     */
+    public synchronized void stop() {
+        running = false;
+    }
+
+    /**
+     * Start a refresh if one is due
+     * @return true if a refresh was started
+     */
+    public boolean tick() {
+        synchronized (this) {
+            if (!running) {
+                return false;
+            }
+            if (inFlight) {
+                // coalesce: the refresh already running will bring the data this tick wanted
+                skippedTicks++;
+                return false;
+            }
+            long now = clock.nowMillis();
+            if (nextDueAt != Long.MIN_VALUE && now < nextDueAt) {
+                return false;
+            }
+            inFlight = true;
+            startedAt = now;
+            refreshes++;
+        }
+
+        // started outside the lock, so a refresh that finishes straight away can't deadlock
+        refresh.start(new Completion() {
+            private boolean called;
+
+            @Override
+            public void finished(boolean success) {
+                synchronized (RefreshScheduler.this) {
+                    if (called) {
+                        return;
+                    }
+                    called = true;
+                    onFinished(success);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Make a refresh due now, e.g. when the user asks for one. The next tick starts it, unless
+     * one is already in flight
+     */
+    public synchronized void refreshSoon() {
+        nextDueAt = Long.MIN_VALUE;
+    }
+
+    private void onFinished(boolean success) {
+        long now = clock.nowMillis();
+        inFlight = false;
+        lastLatencyMillis = now - startedAt;
+        if (success) {
+            consecutiveFailures = 0;
+            nextDueAt = now + intervalMillis;
+        } else {
+            failures++;
+            consecutiveFailures++;
+            nextDueAt = now + backoffMillis(consecutiveFailures);
+        }
+    }
+
+    /**
+     * @param failuresInARow failed refreshes since the last success
+     * @return wait before the next refresh
+     */
+    long backoffMillis(int failuresInARow) {
+        long delay = intervalMillis;
+        for (int i = 0; i < failuresInARow && delay < maxBackoffMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxBackoffMillis);
+    }
+
+    /**
+     * @return how long the owner should wait before the next tick. While a refresh is in flight
+     * its end time is unknown, so the normal interval is returned
+     */
+    public synchronized long millisUntilDue() {
+        if (inFlight) {
+            return intervalMillis;
+        }
+        if (nextDueAt == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.max(0, nextDueAt - clock.nowMillis());
+    }
+
+    /**
+     * @return true while a refresh is running
+     */
+    public synchronized boolean isInFlight() { return inFlight; }
+
+    /**
+     * @return number of refreshes started
+     */
+    public synchronized long getRefreshes() { return refreshes; }
+
+    /**
+     * @return number of refreshes that failed
+     */
+    public synchronized long getFailures() { return failures; }
+
+    /**
+     * @return number of failures since the last success
+     */
+    public synchronized int getConsecutiveFailures() { return consecutiveFailures; }
+
+    /**
+     * @return number of ticks dropped because a refresh was already in flight
+     */
+    public synchronized long getSkippedTicks() { return skippedTicks; }
+
+    /**
+     * @return duration of the last finished refresh in milliseconds, or -1 if none has finished
+     */
+    public synchronized long getLastLatencyMillis() { return lastLatencyMillis; }
+}
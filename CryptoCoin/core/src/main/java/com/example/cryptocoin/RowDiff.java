@@ -0,0 +1,70 @@
+package com.example.cryptocoin;
+
+/**
+ * Compares two selections of rows shown in some order, for updating a list on screen. A refresh
+ * nearly always shows the same coins in the same places with a few new prices, so that case is
+ * found with one pass over both lists; anything else is left to a full diff
+ */
+public class RowDiff {
+
+    private RowDiff() {}
+
+    /**
+     * @return true if two rows show the same coin
+     */
+    public static boolean sameCoin(CryptoRows oldRows, int oldRow, CryptoRows newRows, int newRow) {
+        return oldRows.id(oldRow).equals(newRows.id(newRow));
+    }
+
+    /**
+     * @return true if two rows of the same coin look the same, so the newer one needs no rebind.
+     * Only what a row shows, or the price it opens with, counts
+     */
+    public static boolean sameContents(CryptoRows oldRows, int oldRow, CryptoRows newRows, int newRow) {
+        return oldRows.priceFixed(oldRow) == newRows.priceFixed(newRow)
+                && oldRows.dailyChangeText(oldRow).equals(newRows.dailyChangeText(newRow))
+                && oldRows.name(oldRow).equals(newRows.name(newRow));
+    }
+
+    /**
+     * Find the positions that need rebinding, if both lists show the same coins in the same order
+     * @param oldRows rows on screen
+     * @param oldPositions rows on screen, in display order
+     * @param newRows rows to show
+     * @param newPositions rows to show, in display order
+     * @param changed filled with the positions whose contents changed, ascending; must be at
+     *                least as long as newPositions
+     * @return number of changed positions, or -1 if the coins or their order differ
+     */
+    public static int changedPositions(CryptoRows oldRows, int[] oldPositions, CryptoRows newRows,
+                                       int[] newPositions, int[] changed) {
+        return changedPositions(oldRows, oldPositions, oldPositions.length, newRows, newPositions,
+                newPositions.length, changed);
+    }
+
+    /**
+     * Find the positions that need rebinding, for lists that use only the start of their arrays
+     * @param oldCount positions in use in oldPositions
+     * @param newCount positions in use in newPositions
+     * @param changed must be at least newCount long
+     * @return number of changed positions, or -1 if the coins or their order differ
+     */
+    public static int changedPositions(CryptoRows oldRows, int[] oldPositions, int oldCount, CryptoRows newRows,
+                                       int[] newPositions, int newCount, int[] changed) {
+        if (oldCount != newCount) {
+            return -1;
+        }
+        int count = 0;
+        for (int position = 0; position < newCount; position++) {
+            int oldRow = oldPositions[position];
+            int newRow = newPositions[position];
+            if (!sameCoin(oldRows, oldRow, newRows, newRow)) {
+                return -1;
+            }
+            if (!sameContents(oldRows, oldRow, newRows, newRow)) {
+                changed[count++] = position;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.cryptocoin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the last good ticker snapshot on disk so it can be shown straight away on the next
+ * launch, or when the network is unavailable.
+ *
+ * The file is a small header (magic, version, fetch time, coin count) followed by one
+ * length-prefixed record per coin. Each record holds the coin's already parsed numbers,
+ * followed by its strings as length-prefixed UTF-8.
+ * It is read back through a memory-mapped FileChannel.
+ */
+public class SnapshotCache {
+
+    private static final int MAGIC = 0x43524950; // "CRIP"
+    private static final int VERSION = 3;
+    private static final int FIELDS_PER_RECORD = 6;
+    // smallest a record can be: its length, its numbers and a length for each empty string
+    private static final int MIN_RECORD_BYTES = 4 + 8 + 8 + 8 + 2 * FIELDS_PER_RECORD;
+
+    private final File file;
+
+    public SnapshotCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the saved snapshot
+     * @return the saved snapshot, or null if there is none or it can't be read
+     */
+    public TickerSnapshot read() {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long fetchedAt = buffer.getLong();
+            int count = buffer.getInt();
+            // a damaged count mustn't allocate more coins than the file could possibly hold
+            if (count < 0 || count > buffer.remaining() / MIN_RECORD_BYTES) {
+                return null;
+            }
+
+            Crypto[] cryptos = new Crypto[count];
+            byte[] scratch = new byte[256];
+            String[] fields = new String[FIELDS_PER_RECORD];
+            for (int i = 0; i < count; i++) {
+                int recordLength = buffer.getInt();
+                int recordEnd = buffer.position() + recordLength;
+                long priceFixed = buffer.getLong();
+                double dailyChange = buffer.getDouble();
+                double hourlyChange = buffer.getDouble();
+                for (int f = 0; f < FIELDS_PER_RECORD; f++) {
+                    int length = buffer.getShort() & 0xFFFF;
+                    if (length > scratch.length) {
+                        scratch = new byte[length];
+                    }
+                    buffer.get(scratch, 0, length);
+                    fields[f] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+                // skip anything a newer writer appended to the record
+                buffer.position(recordEnd);
+                cryptos[i] = new Crypto(fields[5], fields[0], fields[1], fields[2], priceFixed,
+                        dailyChange, fields[3], hourlyChange, fields[4]);
+            }
+            return TickerSnapshot.of(cryptos, fetchedAt);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // a missing or damaged cache just means there is nothing to show yet
+            return null;
+        }
+    }
+
+    /**
+     * Save a snapshot, replacing the previous one. The new file is written next to the old one
+     * and renamed over it, so a crash part way through never leaves a damaged cache behind
+     * @param snapshot snapshot to save
+     * @throws IOException file could not be written
+     */
+    public void write(TickerSnapshot snapshot) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.fetchedAt);
+            CryptoRows rows = snapshot.rows;
+            out.writeInt(rows.size());
+
+            byte[][] fields = new byte[FIELDS_PER_RECORD][];
+            for (int i = 0; i < rows.size(); i++) {
+                fields[0] = encode(rows.symbol(i));
+                fields[1] = encode(rows.name(i));
+                fields[2] = encode(rows.priceText(i));
+                fields[3] = encode(rows.dailyChangeText(i));
+                fields[4] = encode(rows.hourlyChangeText(i));
+                fields[5] = encode(rows.id(i));
+
+                int recordLength = 8 + 8 + 8;
+                for (byte[] field : fields) {
+                    recordLength += 2 + field.length;
+                }
+                out.writeInt(recordLength);
+                out.writeLong(rows.priceFixed(i));
+                out.writeDouble(rows.dailyChange(i));
+                out.writeDouble(rows.hourlyChange(i));
+                for (byte[] field : fields) {
+                    out.writeShort(field.length);
+                    out.write(field);
+                }
+            }
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private static byte[] encode(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Field too long to cache");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Downloads the whole ticker list one page at a time from a PriceSource, handing over each page
+ * as soon as it has been parsed
+ */
+public class TickerPager {
+
+    /**
+     * Receives each page as it arrives, on the thread that called fetchAll
+     */
+    public interface PageListener {
+        void onPage(Crypto[] page, int start);
+    }
+
+    // the largest page the coinlore API will serve
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final PriceSource source;
+    private final int pageSize;
+    private final int maxCoins;
+
+    // length of the list returned by the last fetchAll, or -1 before the first one
+    private int lastCount = -1;
+
+    /**
+     * Page through the coinlore tickers endpoint
+     * @param fetcher fetcher used for every page, which remembers validators between fetches
+     * @param baseUrl url of the tickers endpoint, without any query
+     * @param pageSize number of coins to request per page
+     * @param maxCoins stop after this many coins even if the API has more
+     */
+    public TickerPager(HttpFetcher fetcher, String baseUrl, int pageSize, int maxCoins) {
+        this(new CoinloreSource("coinlore", fetcher, baseUrl), pageSize, maxCoins);
+    }
+
+    /**
+     * @param source where pages are fetched from
+     * @param pageSize number of coins to request per page
+     * @param maxCoins stop after this many coins even if the source has more
+     */
+    public TickerPager(PriceSource source, int pageSize, int maxCoins) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxCoins = maxCoins;
+    }
+
+    /**
+     * Fetch pages one after another until the API runs out of coins or maxCoins is reached
+     * @param listener receives each page as soon as it has been parsed, may be null
+     * @return every coin that was fetched, in API order. notModified is set if the server reported
+     * every page as unchanged since the previous call
+     * @throws IOException a page could not be fetched. The pages before it have already been
+     * handed to the listener, but a list missing its later pages is never returned as complete
+     * @throws InterruptedIOException the calling thread was interrupted, checked between pages
+     */
+    public synchronized HttpFetcher.Result<Crypto[]> fetchAll(PageListener listener) throws IOException {
+        ArrayList<Crypto> all = new ArrayList<>();
+        boolean unchanged = true;
+
+        int start = 0;
+        while (start < maxCoins) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Ticker fetch cancelled");
+            }
+            int limit = Math.min(pageSize, maxCoins - start);
+            HttpFetcher.Result<Crypto[]> result = fetchPage(start, limit);
+            Crypto[] page = result.value;
+            unchanged &= result.notModified;
+
+            if (page.length > 0) {
+                all.addAll(Arrays.asList(page));
+                if (listener != null) {
+                    listener.onPage(page, start);
+                }
+            }
+
+            // a short page means the end of the list has been reached
+            if (page.length < limit) {
+                break;
+            }
+            start += page.length;
+        }
+
+        if (unchanged && lastCount == all.size()) {
+            return new HttpFetcher.Result<>(all.toArray(new Crypto[0]), true);
+        }
+        lastCount = all.size();
+        return new HttpFetcher.Result<>(all.toArray(new Crypto[0]), false);
+    }
+
+    /**
+     * Fetch and parse a single page
+     * @param start index of the first coin
+     * @param limit number of coins to request
+     * @return the coins on that page, and whether they were reused from the last fetch
+     * @throws IOException page could not be fetched or parsed
+     */
+    public HttpFetcher.Result<Crypto[]> fetchPage(int start, int limit) throws IOException {
+        return source.fetchPage(start, limit);
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Streaming parser for the coinlore ticker payload, either the tickers list with its 'data'
+ * array or the bare array the single coin endpoint sends. Coins are read token by token
+ * straight from the response stream and each coin is handed over as soon as it is complete,
+ * so the payload is never held in memory as a whole String or JSON tree
+ */
+public class TickerParser {
+
+    /**
+     * Receives each coin as it is parsed
+     */
+    public interface Callback {
+        void onCrypto(Crypto crypto);
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    // characters of the stream before the ones in the buffer, for reporting where errors are
+    private long buffered = 0;
+
+    // reused for every key and value, only turned into a String when the field is kept
+    private final StringBuilder token = new StringBuilder(64);
+
+    private TickerParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parse a UTF-8 ticker response into a list of crypto items
+     * @param in stream of the http response
+     * @return list of crypto objects in the order the API returned them
+     * @throws IOException stream could not be read or payload was not valid
+     */
+    public static Crypto[] parse(InputStream in) throws IOException {
+        return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a ticker response into a list of crypto items
+     * @param reader reader over the JSON payload
+     * @return list of crypto objects in the order the API returned them
+     * @throws IOException reader could not be read or payload was not valid
+     */
+    public static Crypto[] parse(Reader reader) throws IOException {
+        final ArrayList<Crypto> cryptos = new ArrayList<>();
+        parse(reader, new Callback() {
+            @Override
+            public void onCrypto(Crypto crypto) {
+                cryptos.add(crypto);
+            }
+        });
+        return cryptos.toArray(new Crypto[0]);
+    }
+
+    /**
+     * Parse a ticker response, passing each coin to the callback as soon as it has been read
+     * @param reader reader over the JSON payload
+     * @param callback receiver for each parsed coin
+     * @throws IOException reader could not be read or payload was not valid
+     */
+    public static void parse(Reader reader, Callback callback) throws IOException {
+        new TickerParser(reader).readRoot(callback);
+    }
+
+    private void readRoot(Callback callback) throws IOException {
+        // the single coin endpoint (/api/ticker/?id=) answers with a bare array of coins
+        if (peek() == '[') {
+            readDataArray(callback);
+            return;
+        }
+        expect('{');
+        if (peek() == '}') {
+            return;
+        }
+        do {
+            readString();
+            expect(':');
+            if (keyIs("data")) {
+                readDataArray(callback);
+            } else {
+                skipValue();
+            }
+        } while (nextMember('}'));
+    }
+
+    private void readDataArray(Callback callback) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        do {
+            callback.onCrypto(readCrypto());
+        } while (nextMember(']'));
+    }
+
+    private Crypto readCrypto() throws IOException {
+        String coinId = null;
+        String coinSymbol = null;
+        String coinName = null;
+        String coinPrice = null;
+        String dailyPercentageChange = null;
+        String hourlyPercentageChange = null;
+
+        expect('{');
+        if (peek() != '}') {
+            do {
+                readString();
+                expect(':');
+                // only the fields shown by the app are turned into Strings, the rest are skipped.
+                // thinly traded coins come with nulls, which are shown as blank or as no change
+                if (keyIs("id")) {
+                    coinId = readValue();
+                } else if (keyIs("symbol")) {
+                    coinSymbol = readValue("");
+                } else if (keyIs("name")) {
+                    coinName = readValue("");
+                } else if (keyIs("price_usd")) {
+                    coinPrice = readValue("0");
+                } else if (keyIs("percent_change_24h")) {
+                    dailyPercentageChange = readValue("0");
+                } else if (keyIs("percent_change_1h")) {
+                    hourlyPercentageChange = readValue("0");
+                } else {
+                    skipValue();
+                }
+            } while (nextMember('}'));
+        } else {
+            pos++;
+        }
+
+        if (coinSymbol == null || coinName == null || coinPrice == null
+                || dailyPercentageChange == null || hourlyPercentageChange == null) {
+            throw new IOException("Ticker entry is missing a field");
+        }
+        // the id is what the app looks coins up by; without one the symbol has to do
+        return new Crypto(coinId != null ? coinId : coinSymbol, coinSymbol, coinName, coinPrice,
+                dailyPercentageChange, hourlyPercentageChange);
+    }
+
+    /**
+     * Read a string or bare (number, boolean, null) value as a String
+     * @param ifNull returned for a JSON null
+     * @return value text, or ifNull for a JSON null
+     */
+    private String readValue(String ifNull) throws IOException {
+        String value = readValue();
+        return value != null ? value : ifNull;
+    }
+
+    /**
+     * Read a string or bare (number, boolean, null) value as a String
+     * @return value text, or null for a JSON null
+     */
+    private String readValue() throws IOException {
+        char c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            throw new IOException("Expected a primitive value at character " + offset());
+        } else {
+            readLiteral();
+            if (keyIs("null")) {
+                return null;
+            }
+        }
+        return token.toString();
+    }
+
+    private boolean keyIs(String name) {
+        return name.contentEquals(token);
+    }
+
+    /**
+     * After a member of an object or array, move past the ',' or the closing bracket
+     * @param close closing bracket of the current container
+     * @return true if another member follows
+     */
+    private boolean nextMember(char close) throws IOException {
+        char c = peek();
+        pos++;
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw new IOException("Unexpected '" + c + "' at character " + (offset() - 1));
+    }
+
+    private void skipValue() throws IOException {
+        char c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            // skip a whole container by tracking bracket depth, ignoring brackets inside strings
+            int depth = 0;
+            do {
+                c = peek();
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            while (fill() && !isDelimiter(buffer[pos])) {
+                pos++;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        pos++;
+        while (true) {
+            if (!fill()) {
+                throw new IOException("Unterminated string");
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                if (!fill()) {
+                    throw new IOException("Unterminated string");
+                }
+                pos++;
+            }
+        }
+    }
+
+    private void readString() throws IOException {
+        expect('"');
+        token.setLength(0);
+        while (true) {
+            if (!fill()) {
+                throw new IOException("Unterminated string");
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                token.append(readEscape());
+            } else {
+                token.append(c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (!fill()) {
+            throw new IOException("Unterminated escape");
+        }
+        char c = buffer[pos++];
+        switch (c) {
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (!fill()) {
+                        throw new IOException("Unterminated escape");
+                    }
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit < 0) {
+                        throw new IOException("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                // covers \" \\ and \/
+                return c;
+        }
+    }
+
+    private void readLiteral() throws IOException {
+        token.setLength(0);
+        while (fill() && !isDelimiter(buffer[pos])) {
+            token.append(buffer[pos++]);
+        }
+        if (token.length() == 0) {
+            throw new IOException("Expected a value at character " + offset());
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == '}' || c == ']' || c == ':' || isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private void expect(char expected) throws IOException {
+        char c = peek();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found '" + c + "' at character " + offset());
+        }
+        pos++;
+    }
+
+    /**
+     * Skip whitespace and return the next character without consuming it
+     */
+    private char peek() throws IOException {
+        while (fill()) {
+            char c = buffer[pos];
+            if (!isWhitespace(c)) {
+                return c;
+            }
+            pos++;
+        }
+        throw new IOException("Unexpected end of payload");
+    }
+
+    /**
+     * @return position of the next character in the whole stream, counted from 0
+     */
+    private long offset() {
+        return buffered + pos;
+    }
+
+    /**
+     * Make sure at least one character is buffered
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        if (pos < limit) {
+            return true;
+        }
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        buffered += limit;
+        pos = 0;
+        limit = read;
+        return true;
+    }
+}
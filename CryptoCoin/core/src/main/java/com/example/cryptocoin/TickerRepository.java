@@ -0,0 +1,439 @@
+package com.example.cryptocoin;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the ticker data independently of any activity. It is meant to live for the whole process,
+ * so an activity recreated after a rotation registers again, is handed the latest snapshot
+ * straight away, and finds the refresh timing exactly where the old activity left it.
+ *
+ * Each refresh runs on a small bounded thread pool as a series of stages:
+ * fetch (pages are parsed as they stream in and handed to listeners as they arrive), pack (the
+ * parsed list becomes a TickerSnapshot), index (the search index is built), indicators (each
+ * coin's rolling indicators move on a tick), sort (every sort order is computed), analytics
+ * (market-wide figures are worked out on a fork/join pool), and publish (listeners get the
+ * snapshot, index and sort orders, and the snapshot is saved to disk and recorded in the price
+ * history). A cancelled refresh stops at the next page or stage boundary and publishes nothing
+ */
+public class TickerRepository {
+
+    /**
+     * Receives ticker updates, on the executor it was registered with
+     */
+    public interface Listener {
+        void onPage(Crypto[] page, int start);
+        void onSnapshot(TickerSnapshot snapshot, CryptoSearchIndex searchIndex, CryptoSortOrders sortOrders);
+        void onRefreshFailed(IOException e);
+    }
+
+    // one thread for a refresh and one for reading the disk cache is all the pipeline ever needs
+    private static final int POOL_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 4;
+
+    private final TickerPager pager;
+    private final SnapshotCache cache;
+    private final RefreshScheduler scheduler;
+    private final ThreadPoolExecutor executor;
+    private final CoinRegistry registry = new CoinRegistry();
+    // records every refreshed list, if set
+    private volatile PriceHistoryStore history;
+    // moved on a tick by every refreshed list, if set
+    private volatile CoinIndicators indicators;
+    // works out market-wide figures for every published list, if set
+    private volatile MarketAnalytics analytics;
+
+    // listeners and the executor each one is called on, in registration order
+    private final LinkedHashMap<Listener, Executor> listeners = new LinkedHashMap<>();
+    private TickerSnapshot snapshot;
+    private CryptoSearchIndex searchIndex;
+    private CryptoSortOrders sortOrders;
+    private MarketAnalytics.Summary marketSummary;
+    private boolean cacheRequested;
+    private RefreshJob currentJob;
+
+    /**
+     * @param pager downloads the ticker list
+     * @param cache where the last good snapshot is saved
+     * @param clock time source for refresh timing
+     * @param intervalMillis time between refreshes
+     * @param maxBackoffMillis longest wait between refreshes after failures
+     */
+    public TickerRepository(TickerPager pager, SnapshotCache cache, RefreshScheduler.Clock clock,
+                            long intervalMillis, long maxBackoffMillis) {
+        this.pager = pager;
+        this.cache = cache;
+        this.scheduler = new RefreshScheduler(new RefreshScheduler.Refresh() {
+            @Override
+            public void start(RefreshScheduler.Completion done) {
+                startRefresh(done);
+            }
+        }, clock, intervalMillis, maxBackoffMillis);
+
+        executor = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ticker-pipeline");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // idle threads go away between refreshes
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the scheduler deciding when refreshes run. Its owner ticks it, and starts and stops
+     * it as the data becomes visible or hidden
+     */
+    public RefreshScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Record the prices of every list refreshed from now on
+     * @param history where to record them, or null to stop recording
+     */
+    public void setPriceHistory(PriceHistoryStore history) {
+        this.history = history;
+    }
+
+    /**
+     * @return where refreshed prices are recorded, or null if they aren't
+     */
+    public PriceHistoryStore getPriceHistory() {
+        return history;
+    }
+
+    /**
+     * Keep rolling indicators for every coin, moved on by each list refreshed from now on. Lists
+     * are then sorted by them as well
+     * @param indicators the indicators, or null to stop keeping them
+     */
+    public void setIndicators(CoinIndicators indicators) {
+        this.indicators = indicators;
+    }
+
+    /**
+     * @return rolling indicators of every coin, or null if they aren't kept
+     */
+    public CoinIndicators getIndicators() {
+        return indicators;
+    }
+
+    /**
+     * Work out market-wide figures for every list published from now on, before listeners hear
+     * about it
+     * @param analytics the analytics, or null to stop working them out
+     */
+    public void setAnalytics(MarketAnalytics analytics) {
+        this.analytics = analytics;
+    }
+
+    /**
+     * @return market-wide figures for the latest snapshot, or null if there are none. Check
+     * which list they describe before showing them
+     */
+    public synchronized MarketAnalytics.Summary getMarketSummary() {
+        return marketSummary;
+    }
+
+    /**
+     * @return lookup of the latest data for each coin by id
+     */
+    public CoinRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the latest snapshot, or null if there is none yet
+     */
+    public synchronized TickerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Start sending updates to a listener. If a snapshot is already loaded it is sent straight
+     * away; the first listener also causes the saved snapshot to be read from disk
+     * @param listener listener to add
+     * @param deliverOn executor the listener is called on, e.g. the main thread
+     */
+    public synchronized void addListener(final Listener listener, Executor deliverOn) {
+        listeners.put(listener, deliverOn);
+        if (snapshot != null) {
+            final TickerSnapshot current = snapshot;
+            final CryptoSearchIndex currentIndex = searchIndex;
+            final CryptoSortOrders currentOrders = sortOrders;
+            deliverOn.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isRegistered(listener)) {
+                        listener.onSnapshot(current, currentIndex, currentOrders);
+                    }
+                }
+            });
+        } else if (!cacheRequested) {
+            cacheRequested = true;
+            loadCache();
+        }
+    }
+
+    /**
+     * Stop sending updates to a listener. Updates already queued for it are dropped
+     * @param listener listener to remove
+     */
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Cancel the refresh in flight, if any. The next tick of the scheduler starts a new one
+     */
+    public synchronized void cancel() {
+        if (currentJob != null) {
+            currentJob.cancel();
+        }
+    }
+
+    private synchronized boolean isRegistered(Listener listener) {
+        return listeners.containsKey(listener);
+    }
+
+    private void loadCache() {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    TickerSnapshot saved = cache.read();
+                    Metrics.count(saved != null ? Metrics.SNAPSHOT_HITS : Metrics.SNAPSHOT_MISSES, 1);
+                    if (saved != null) {
+                        publish(saved, new CryptoSearchIndex(saved.rows), new CryptoSortOrders(saved.rows),
+                                summarize(saved));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the network refresh will fill the list instead
+        }
+    }
+
+    private void startRefresh(RefreshScheduler.Completion done) {
+        RefreshJob job = new RefreshJob(done);
+        try {
+            synchronized (this) {
+                currentJob = job;
+                executor.execute(job);
+            }
+        } catch (RejectedExecutionException e) {
+            done.finished(false);
+        }
+    }
+
+    /**
+     * One run through the refresh stages
+     */
+    private class RefreshJob implements Runnable {
+        private final RefreshScheduler.Completion done;
+        private boolean cancelled;
+        private Thread thread;
+
+        RefreshJob(RefreshScheduler.Completion done) {
+            this.done = done;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+
+            boolean success = false;
+            boolean interrupted = false;
+            try {
+                checkCancelled();
+
+                // fetch: pages are parsed while they download and shown as they arrive
+                HttpFetcher.Result<Crypto[]> result = pager.fetchAll(new TickerPager.PageListener() {
+                    @Override
+                    public void onPage(Crypto[] page, int start) {
+                        if (!isCancelled()) {
+                            publishPage(page, start);
+                        }
+                    }
+                });
+                if (result.notModified && getSnapshot() != null) {
+                    // nothing changed, listeners already have this list
+                    success = true;
+                    return;
+                }
+                checkCancelled();
+
+                // pack: large lists are stored in columns, see TickerSnapshot.of
+                long stageStart = Metrics.start();
+                TickerSnapshot fresh = TickerSnapshot.of(result.value, System.currentTimeMillis());
+                Metrics.stop(Metrics.PACK, stageStart);
+                checkCancelled();
+
+                // index: built here so the main thread never waits for it
+                stageStart = Metrics.start();
+                CryptoSearchIndex freshIndex = new CryptoSearchIndex(fresh.rows);
+                Metrics.stop(Metrics.INDEX, stageStart);
+                checkCancelled();
+
+                // indicators: every coin moves on a tick, before sorting so the list can be sorted by them
+                CoinIndicators coinIndicators = indicators;
+                CoinIndicators.Values freshIndicators = coinIndicators == null ? null
+                        : coinIndicators.update(fresh.rows);
+                checkCancelled();
+
+                // sort: so changing the sort order on screen never sorts
+                stageStart = Metrics.start();
+                CryptoSortOrders freshOrders = new CryptoSortOrders(fresh.rows, freshIndicators);
+                Metrics.stop(Metrics.SORT, stageStart);
+                checkCancelled();
+
+                // analytics: market-wide figures, split over the analytics pool
+                MarketAnalytics.Summary freshSummary = summarize(fresh);
+                checkCancelled();
+
+                // publish, then save the new list for the next launch or for when the network is down
+                publish(fresh, freshIndex, freshOrders, freshSummary);
+                try {
+                    cache.write(fresh);
+                } catch (IOException e) {
+                    // not being able to save only costs the next cold start
+                }
+                PriceHistoryStore priceHistory = history;
+                if (priceHistory != null) {
+                    try {
+                        priceHistory.record(fresh);
+                    } catch (IOException e) {
+                        // a gap in the history only shows as a straight line in the chart
+                    }
+                }
+                success = true;
+            } catch (IOException e) {
+                // an interrupted download can also surface as some other IOException
+                if (e instanceof InterruptedIOException || isCancelled()) {
+                    interrupted = true;
+                } else {
+                    publishFailure(e);
+                }
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                // don't leave an interrupt behind for the next task on this pool thread
+                Thread.interrupted();
+                synchronized (TickerRepository.this) {
+                    if (currentJob == this) {
+                        currentJob = null;
+                    }
+                }
+                done.finished(success);
+                if (interrupted) {
+                    // a cancelled refresh isn't a failure, so don't back off because of it
+                    scheduler.refreshSoon();
+                }
+            }
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (isCancelled() || Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Ticker refresh cancelled");
+            }
+        }
+    }
+
+    private void publishPage(final Crypto[] page, final int start) {
+        registry.addPage(page);
+        for (final Map.Entry<Listener, Executor> entry : registrations()) {
+            entry.getValue().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isRegistered(entry.getKey())) {
+                        entry.getKey().onPage(page, start);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return market-wide figures for a list, or null if they aren't worked out
+     */
+    private MarketAnalytics.Summary summarize(TickerSnapshot fresh) {
+        MarketAnalytics marketAnalytics = analytics;
+        if (marketAnalytics == null) {
+            return null;
+        }
+        long start = Metrics.start();
+        MarketAnalytics.Summary summary = marketAnalytics.summarize(fresh.rows);
+        Metrics.stop(Metrics.ANALYTICS, start);
+        return summary;
+    }
+
+    private void publish(final TickerSnapshot fresh, final CryptoSearchIndex freshIndex,
+                         final CryptoSortOrders freshOrders, MarketAnalytics.Summary freshSummary) {
+        synchronized (this) {
+            // the disk cache can finish after a newer list has already arrived from the network
+            if (snapshot != null && snapshot.fetchedAt > fresh.fetchedAt) {
+                return;
+            }
+            snapshot = fresh;
+            searchIndex = freshIndex;
+            sortOrders = freshOrders;
+            marketSummary = freshSummary;
+            // updated under the same lock, so the registry never goes back to an older list
+            registry.setSnapshot(fresh);
+        }
+        for (final Map.Entry<Listener, Executor> entry : registrations()) {
+            entry.getValue().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isRegistered(entry.getKey())) {
+                        entry.getKey().onSnapshot(fresh, freshIndex, freshOrders);
+                    }
+                }
+            });
+        }
+    }
+
+    private void publishFailure(final IOException e) {
+        for (final Map.Entry<Listener, Executor> entry : registrations()) {
+            entry.getValue().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isRegistered(entry.getKey())) {
+                        entry.getKey().onRefreshFailed(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private synchronized ArrayList<Map.Entry<Listener, Executor>> registrations() {
+        return new ArrayList<>(listeners.entrySet());
+    }
+}
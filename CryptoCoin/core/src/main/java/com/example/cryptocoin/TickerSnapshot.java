@@ -0,0 +1,30 @@
+package com.example.cryptocoin;
+
+/**
+ * TickerSnapshot objects hold one parsed response from the API along with when it was fetched
+ */
+public class TickerSnapshot {
+    // lists at least this long are kept in columns rather than as one object per coin
+    static final int COLUMN_STORE_THRESHOLD = 1000;
+
+    public final CryptoRows rows;
+    public final long fetchedAt;
+
+    public TickerSnapshot(CryptoRows rows, long fetchedAt){
+        this.rows = rows;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Create a snapshot, choosing how to store the list from its length
+     * @param cryptos parsed coins
+     * @param fetchedAt when the coins were fetched
+     * @return new snapshot
+     */
+    public static TickerSnapshot of(Crypto[] cryptos, long fetchedAt){
+        CryptoRows rows = cryptos.length >= COLUMN_STORE_THRESHOLD
+                ? new CryptoColumnStore(cryptos)
+                : new CryptoArrayRows(cryptos);
+        return new TickerSnapshot(rows, fetchedAt);
+    }
+}
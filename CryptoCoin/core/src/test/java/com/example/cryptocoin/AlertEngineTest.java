@@ -0,0 +1,218 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the price alert engine, checked against a loop over every alert and coin
+ */
+public class AlertEngineTest {
+
+    private final List<String> fired = new ArrayList<>();
+    private final AlertEngine.Listener recorder = new AlertEngine.Listener() {
+        @Override
+        public void onAlert(PriceAlert alert, long value) {
+            fired.add(alert.id + "@" + value);
+        }
+    };
+
+    @Test
+    public void priceAlerts_fireOnceWhenCrossedAndRearmPastTheMargin() {
+        AlertEngine engine = new AlertEngine();
+        engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("45000")));
+        engine.add(new PriceAlert(2, "90", "BTC", PriceAlert.PRICE, false, Crypto.parseFixed("40000")));
+
+        assertEquals(0, engine.evaluate(btc("42000", "0"), recorder));
+        assertEquals(1, engine.evaluate(btc("45000.01", "0"), recorder));
+        // hovering around the threshold doesn't fire again
+        assertEquals(0, engine.evaluate(btc("44900", "0"), recorder));
+        assertEquals(0, engine.evaluate(btc("45100", "0"), recorder));
+        // 1% below the threshold rearms it
+        assertEquals(0, engine.evaluate(btc("44550", "0"), recorder));
+        assertEquals(1, engine.evaluate(btc("46000", "0"), recorder));
+        // falling straight through the other threshold fires that one
+        assertEquals(1, engine.evaluate(btc("39000", "0"), recorder));
+
+        assertEquals(3, fired.size());
+        assertEquals("1@" + Crypto.parseFixed("45000.01"), fired.get(0));
+        assertEquals("2@" + Crypto.parseFixed("39000"), fired.get(2));
+    }
+
+    @Test
+    public void changeAlerts_useHundredthsOfAPercent() {
+        AlertEngine engine = new AlertEngine();
+        engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.HOURLY_CHANGE, false, -500));
+        assertEquals("BTC 1h change is below -5%", new PriceAlert(1, "90", "BTC",
+                PriceAlert.HOURLY_CHANGE, false, -500).describe());
+
+        assertEquals(0, engine.evaluate(btc("42000", "-4.99"), recorder));
+        assertEquals(1, engine.evaluate(btc("42000", "-5.2"), recorder));
+        // half a percentage point back is needed to rearm
+        assertEquals(0, engine.evaluate(btc("42000", "-4.6"), recorder));
+        assertEquals(0, engine.evaluate(btc("42000", "-5.3"), recorder));
+        assertEquals(0, engine.evaluate(btc("42000", "-4.5"), recorder));
+        assertEquals(1, engine.evaluate(btc("42000", "-6"), recorder));
+    }
+
+    @Test
+    public void add_reportsAConditionThatAlreadyHolds() {
+        AlertEngine engine = new AlertEngine();
+        engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("50000")));
+        engine.evaluate(btc("42000", "0"), recorder);
+
+        assertTrue(engine.add(new PriceAlert(2, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("41000"))));
+        assertFalse(engine.add(new PriceAlert(3, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("43000"))));
+        assertEquals(1, engine.evaluate(btc("43500", "0"), recorder));
+        assertEquals("3@" + Crypto.parseFixed("43500"), fired.get(0));
+    }
+
+    @Test
+    public void evaluate_checksANewValueOfACoinThatDidNotMove() {
+        AlertEngine engine = new AlertEngine();
+        engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("50000")));
+        assertEquals(0, engine.evaluate(btc("42000", "-4"), recorder));
+        assertEquals(0, engine.evaluate(btc("42000", "-4"), recorder));
+
+        // the coin is unchanged, but nothing had looked at its hourly change before, so it is
+        // armed by this list rather than the next
+        engine.add(new PriceAlert(2, "90", "BTC", PriceAlert.HOURLY_CHANGE, false, -500));
+        assertEquals(0, engine.evaluate(btc("42000", "-4"), recorder));
+        assertEquals(1, engine.evaluate(btc("42000", "-6"), recorder));
+        assertEquals(1, engine.evaluate(btc("50000.01", "-6"), recorder));
+    }
+
+    @Test
+    public void evaluate_waitsForTheOtherSideBeforeFiringAnAlertThatAlreadyHeld() {
+        AlertEngine engine = new AlertEngine();
+        // nothing has been seen of the coin, so add can't tell the condition already holds
+        assertFalse(engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("40000"))));
+        engine.add(new PriceAlert(2, "90", "BTC", PriceAlert.PRICE, false, Crypto.parseFixed("45000")));
+
+        assertEquals(0, engine.evaluate(btc("42000", "0"), recorder));
+        assertEquals(0, engine.evaluate(btc("41000", "0"), recorder));
+        // each fires once the price has been back past its margin and crosses again
+        assertEquals(0, engine.evaluate(btc("39000", "0"), recorder));
+        assertEquals(1, engine.evaluate(btc("40500", "0"), recorder));
+        assertEquals(0, engine.evaluate(btc("46000", "0"), recorder));
+        assertEquals(1, engine.evaluate(btc("44000", "0"), recorder));
+        assertEquals("1@" + Crypto.parseFixed("40500"), fired.get(0));
+        assertEquals("2@" + Crypto.parseFixed("44000"), fired.get(1));
+    }
+
+    @Test
+    public void remove_stopsTheAlert() {
+        AlertEngine engine = new AlertEngine();
+        engine.add(new PriceAlert(1, "90", "BTC", PriceAlert.PRICE, true, Crypto.parseFixed("45000")));
+        engine.evaluate(btc("42000", "0"), recorder);
+
+        assertTrue(engine.remove(1));
+        assertFalse(engine.remove(1));
+        assertEquals(0, engine.size());
+        assertEquals(0, engine.evaluate(btc("46000", "0"), recorder));
+    }
+
+    @Test
+    public void tenThousandAlerts_matchALoopOverEveryAlert() {
+        Random random = new Random(17);
+        int coins = 5000;
+        int alerts = 10000;
+        long[] prices = new long[coins];
+        double[] hourly = new double[coins];
+        for (int i = 0; i < coins; i++) {
+            prices[i] = (1 + random.nextInt(100000)) * Crypto.PRICE_SCALE / 100;
+            hourly[i] = (random.nextInt(2001) - 1000) / 100.0;
+        }
+
+        AlertEngine engine = new AlertEngine();
+        PriceAlert[] all = new PriceAlert[alerts];
+        for (int i = 0; i < alerts; i++) {
+            // alerts bunch on the popular coins at the top of the list
+            int coin = Math.min(random.nextInt(coins), random.nextInt(coins));
+            boolean onPrice = random.nextInt(3) > 0;
+            long threshold = onPrice
+                    ? prices[coin] + (random.nextInt(41) - 20) * prices[coin] / 100
+                    : random.nextInt(2001) - 1000;
+            all[i] = new PriceAlert(i, String.valueOf(coin), "C" + coin,
+                    onPrice ? PriceAlert.PRICE : PriceAlert.HOURLY_CHANGE, random.nextBoolean(), threshold);
+            engine.add(all[i]);
+        }
+        NaiveAlerts naive = new NaiveAlerts(all);
+
+        List<String> naiveFired = new ArrayList<>();
+        int refreshes = 200;
+        for (int refresh = 0; refresh < refreshes; refresh++) {
+            // about 2% of coins move on each refresh, some by a lot
+            for (int change = 0; change < coins / 50; change++) {
+                int coin = random.nextInt(coins);
+                prices[coin] = Math.max(1, prices[coin] + (random.nextInt(21) - 10) * prices[coin] / 100);
+                hourly[coin] = (random.nextInt(2001) - 1000) / 100.0;
+            }
+            TickerSnapshot snapshot = snapshot(prices, hourly, refresh);
+
+            fired.clear();
+            naiveFired.clear();
+            engine.evaluate(snapshot, recorder);
+            naive.evaluate(snapshot, naiveFired);
+
+            // the engine fires in threshold order, the loop in alert order
+            Collections.sort(fired);
+            Collections.sort(naiveFired);
+            assertEquals("refresh " + refresh, naiveFired, fired);
+        }
+    }
+
+    private static TickerSnapshot btc(String price, String hourly) {
+        return TickerSnapshot.of(new Crypto[] { new Crypto("90", "BTC", "Bitcoin", price, "0", hourly) }, 1);
+    }
+
+    private static TickerSnapshot snapshot(long[] prices, double[] hourly, long fetchedAt) {
+        Crypto[] cryptos = new Crypto[prices.length];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, "", prices[i], 0, "0%", hourly[i], hourly[i] + "%");
+        }
+        return TickerSnapshot.of(cryptos, fetchedAt);
+    }
+
+    /**
+     * Every alert checked against its coin on every list, with the same hysteresis
+     */
+    private static class NaiveAlerts {
+        private final PriceAlert[] alerts;
+        private final boolean[] armed;
+        private boolean seen;
+
+        NaiveAlerts(PriceAlert[] alerts) {
+            this.alerts = alerts;
+            armed = new boolean[alerts.length];
+        }
+
+        void evaluate(TickerSnapshot snapshot, List<String> fired) {
+            CryptoRows rows = snapshot.rows;
+            HashMap<String, Integer> rowsById = CoinRegistry.index(rows);
+            for (int i = 0; i < alerts.length; i++) {
+                PriceAlert alert = alerts[i];
+                long value = PriceAlert.valueOf(rows, rowsById.get(alert.coinId), alert.field);
+                long rearm = AlertEngine.rearmLevel(alert.field, alert.above, alert.threshold);
+                boolean past = alert.holdsAt(value);
+                boolean back = alert.above ? value <= rearm : value >= rearm;
+                if (!seen) {
+                    // the first list only arms the alerts that haven't crossed yet
+                    armed[i] = !past;
+                } else if (armed[i] && past) {
+                    armed[i] = false;
+                    fired.add(alert.id + "@" + value);
+                } else if (!armed[i] && back) {
+                    armed[i] = true;
+                }
+            }
+            seen = true;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests merging single coin requests into batches, against a local stand-in for the API
+ */
+public class CoinFetchCoordinatorTest {
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> queries = new ArrayList<>();
+    // when set, the server holds every response until it is counted down
+    private volatile CountDownLatch hold;
+    private final LinkedBlockingQueue<String> results = new LinkedBlockingQueue<>();
+    private final CoinFetchCoordinator.Callback recorder = new CoinFetchCoordinator.Callback() {
+        @Override
+        public void onCoin(Crypto coin) {
+            results.add(coin.coinId + "=" + coin.coinPrice);
+        }
+
+        @Override
+        public void onFailure(String coinId, IOException e) {
+            results.add(coinId + " failed");
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/ticker/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                calls.incrementAndGet();
+                String query = exchange.getRequestURI().getQuery();
+                synchronized (queries) {
+                    queries.add(query);
+                }
+                CountDownLatch latch = hold;
+                if (latch != null) {
+                    try {
+                        latch.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                // the API leaves out ids it doesn't know, here any id starting with x
+                StringBuilder json = new StringBuilder("[");
+                for (String id : query.substring("id=".length()).split(",")) {
+                    if (id.startsWith("x")) {
+                        continue;
+                    }
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    json.append("{\"id\":\"").append(id).append("\",\"symbol\":\"C").append(id)
+                            .append("\",\"name\":\"Coin\",\"price_usd\":\"").append(id)
+                            .append(".5\",\"percent_change_24h\":\"0\",\"percent_change_1h\":\"0\"}");
+                }
+                byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/ticker/";
+    }
+
+    @After
+    public void tearDown() {
+        CountDownLatch latch = hold;
+        if (latch != null) {
+            latch.countDown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void requestsInOneWindow_shareOneCall() throws Exception {
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 100);
+        coordinator.request("90", recorder);
+        coordinator.request("80", recorder);
+        coordinator.request("90", recorder);
+        coordinator.request("2", recorder);
+
+        List<String> received = take(4);
+        assertEquals(1, calls.get());
+        // ids are sorted so the same coins always make the same url
+        assertEquals("id=2,80,90", queries.get(0));
+        assertTrue(received.contains("80=80.5"));
+        assertEquals(2, count(received, "90=90.5"));
+
+        assertEquals(4, coordinator.getRequests());
+        assertEquals(1, coordinator.getCalls());
+        assertEquals(3, coordinator.getRequestsSaved());
+        assertEquals(1, coordinator.getJoinedPending());
+    }
+
+    @Test
+    public void requestsForACoinBeingFetched_waitForThatFetch() throws Exception {
+        hold = new CountDownLatch(1);
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 10);
+        coordinator.request("90", recorder);
+        waitForCalls(1);
+
+        // 90 joins the running call, 80 waits for a call of its own
+        coordinator.request("90", recorder);
+        coordinator.request("80", recorder);
+        hold.countDown();
+
+        List<String> received = take(3);
+        assertEquals(2, count(received, "90=90.5"));
+        assertEquals(2, calls.get());
+        assertEquals("id=80", queries.get(1));
+        assertEquals(1, coordinator.getJoinedInFlight());
+        assertEquals(1, coordinator.getRequestsSaved());
+
+        // once answered, asking again fetches again
+        coordinator.request("90", recorder);
+        take(1);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void manyCoins_areSplitIntoBatchesTheUrlCanHold() throws Exception {
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 50);
+        int coins = CoinFetchCoordinator.MAX_IDS_PER_REQUEST * 2 + 10;
+        for (int i = 0; i < coins; i++) {
+            coordinator.request(String.valueOf(1000 + i), recorder);
+        }
+
+        take(coins);
+        assertEquals(3, calls.get());
+        assertEquals(coins - 3, coordinator.getRequestsSaved());
+        int ids = 0;
+        for (String query : queries) {
+            int inQuery = query.split(",").length;
+            assertTrue(query, inQuery <= CoinFetchCoordinator.MAX_IDS_PER_REQUEST);
+            ids += inQuery;
+        }
+        assertEquals(coins, ids);
+    }
+
+    @Test
+    public void coinsMissingFromTheResponse_fail() throws Exception {
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 20);
+        coordinator.request("90", recorder);
+        coordinator.request("x1", recorder);
+
+        List<String> received = take(2);
+        assertTrue(received.contains("90=90.5"));
+        assertTrue(received.contains("x1 failed"));
+    }
+
+    @Test
+    public void failedCalls_failEveryRequestInTheBatch() throws Exception {
+        server.stop(0);
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 20);
+        coordinator.request("90", recorder);
+        coordinator.request("80", recorder);
+
+        List<String> received = take(2);
+        assertTrue(received.contains("90 failed"));
+        assertTrue(received.contains("80 failed"));
+    }
+
+    @Test
+    public void parserThrowing_failsTheBatchAndLetsTheCoinsBeFetchedAgain() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        CoinFetchCoordinator coordinator = new CoinFetchCoordinator(new HttpFetcher(), base, 20,
+                new HttpFetcher.BodyParser<Crypto[]>() {
+                    @Override
+                    public Crypto[] parse(InputStream in) throws IOException {
+                        if (parses.getAndIncrement() == 0) {
+                            throw new NumberFormatException("malformed entry");
+                        }
+                        return TickerParser.parse(in);
+                    }
+                });
+        coordinator.request("90", recorder);
+        coordinator.request("80", recorder);
+        List<String> received = take(2);
+        assertTrue(received.contains("90 failed"));
+        assertTrue(received.contains("80 failed"));
+
+        // nothing is left in flight, so the next request makes a new call and is answered
+        coordinator.request("90", recorder);
+        assertEquals("90=90.5", results.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    private List<String> take(int count) throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String result = results.poll(5, TimeUnit.SECONDS);
+            assertNotNull("result " + i + " of " + count, result);
+            received.add(result);
+        }
+        return received;
+    }
+
+    private static int count(List<String> values, String value) {
+        int count = 0;
+        for (String each : values) {
+            if (each.equals(value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void waitForCalls(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (calls.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the rolling indicators, checked against recomputing them from every price seen
+ */
+public class CoinIndicatorsTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    public void update_matchesRecomputingFromHistory() {
+        Random random = new Random(3);
+        int window = 7;
+        CoinIndicators indicators = new CoinIndicators(window);
+        HashMap<String, ArrayList<Double>> history = new HashMap<>();
+        HashMap<String, Double> ema = new HashMap<>();
+        double alpha = 2.0 / (window + 1);
+
+        // more coins than the first allocation, some of which miss ticks
+        int coins = 400;
+        for (int tick = 0; tick < 60; tick++) {
+            ArrayList<Crypto> list = new ArrayList<>();
+            for (int coin = 0; coin < coins; coin++) {
+                if (random.nextInt(10) == 0) {
+                    continue;
+                }
+                String id = String.valueOf(coin);
+                double price = (coin + 1) * (1 + random.nextGaussian() * 0.05);
+                String priceText = String.format(Locale.US, "%.8f", Math.max(0.01, price));
+                list.add(new Crypto(id, "C" + coin, "Coin " + coin, priceText, "0", "0"));
+            }
+            CryptoRows rows = new CryptoArrayRows(list.toArray(new Crypto[0]));
+            CoinIndicators.Values values = indicators.update(rows);
+
+            for (int row = 0; row < rows.size(); row++) {
+                String id = rows.id(row);
+                double price = rows.priceFixed(row) / (double) Crypto.PRICE_SCALE;
+                ArrayList<Double> prices = history.get(id);
+                if (prices == null) {
+                    prices = new ArrayList<>();
+                    history.put(id, prices);
+                    ema.put(id, price);
+                } else {
+                    ema.put(id, ema.get(id) + alpha * (price - ema.get(id)));
+                }
+                prices.add(price);
+
+                double sma = sma(prices, window);
+                assertEquals(sma, indicators.sma(id), TOLERANCE);
+                assertEquals(ema.get(id), indicators.ema(id), TOLERANCE);
+                assertEquals(prices.size(), indicators.ticks(id));
+                assertSameIndicator(values.trend[row], indicators.trend(id));
+                assertSameIndicator(values.volatility[row], indicators.volatility(id));
+                if (prices.size() < 2) {
+                    assertTrue(Double.isNaN(values.trend[row]));
+                } else {
+                    assertEquals((price / sma - 1) * 100, values.trend[row], TOLERANCE);
+                }
+                assertSameIndicator(volatility(prices, window), values.volatility[row]);
+            }
+        }
+    }
+
+    @Test
+    public void update_countsARepeatedCoinOnce() {
+        CoinIndicators indicators = new CoinIndicators(3);
+        CryptoRows rows = new CryptoArrayRows(new Crypto[] {
+                new Crypto("a", "A", "A", "10", "0", "0"),
+                new Crypto("a", "A", "A", "99", "0", "0"),
+        });
+        indicators.update(rows);
+
+        assertEquals(1, indicators.ticks("a"));
+        assertEquals(10, indicators.sma("a"), TOLERANCE);
+        assertTrue(Double.isNaN(indicators.sma("unknown")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void window_mustCoverAMove() {
+        new CoinIndicators(1);
+    }
+
+    private static void assertSameIndicator(double expected, double actual) {
+        if (Double.isNaN(expected)) {
+            assertTrue(Double.isNaN(actual));
+        } else {
+            assertEquals(expected, actual, TOLERANCE);
+        }
+    }
+
+    private static double sma(ArrayList<Double> prices, int window) {
+        int from = Math.max(0, prices.size() - window);
+        double sum = 0;
+        for (int i = from; i < prices.size(); i++) {
+            sum += prices.get(i);
+        }
+        return sum / (prices.size() - from);
+    }
+
+    // sample standard deviation of the last window percentage moves
+    private static double volatility(ArrayList<Double> prices, int window) {
+        int moves = Math.min(prices.size() - 1, window);
+        if (moves < 2) {
+            return Double.NaN;
+        }
+        double[] values = new double[moves];
+        for (int i = 0; i < moves; i++) {
+            int to = prices.size() - moves + i;
+            values[i] = (prices.get(to) - prices.get(to - 1)) / prices.get(to - 1) * 100;
+        }
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= moves;
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(squares / (moves - 1));
+    }
+}
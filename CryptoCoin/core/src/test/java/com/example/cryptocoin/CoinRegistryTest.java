@@ -0,0 +1,64 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for looking coins up by id
+ */
+public class CoinRegistryTest {
+
+    @Test
+    public void get_findsCoinsWithTheSameNameBySeparateIds() {
+        Crypto[] cryptos = {
+                new Crypto("1", "BTC", "Bitcoin", "41230.55", "-1.32", "0.21"),
+                new Crypto("2", "BTCX", "Bitcoin", "0.5", "3", "1"),
+        };
+        CoinRegistry registry = new CoinRegistry();
+        registry.setSnapshot(TickerSnapshot.of(cryptos, 1));
+
+        assertEquals("BTC", registry.get("1").coinSymbol);
+        assertEquals("BTCX", registry.get("2").coinSymbol);
+        assertNull(registry.get("3"));
+    }
+
+    @Test
+    public void get_followsTheLatestSnapshot() {
+        CoinRegistry registry = new CoinRegistry();
+        registry.setSnapshot(TickerSnapshot.of(new Crypto[] {
+                new Crypto("90", "BTC", "Bitcoin", "41230.55", "-1.32", "0.21") }, 1));
+        registry.setSnapshot(TickerSnapshot.of(new Crypto[] {
+                new Crypto("80", "ETH", "Ethereum", "2700.1", "3.5", "-0.02"),
+                new Crypto("90", "BTC", "Bitcoin", "42000", "0.5", "0.1") }, 2));
+
+        assertEquals(4200000000000L, registry.get("90").priceFixed);
+    }
+
+    @Test
+    public void get_findsLargeListsStoredInColumns() {
+        Crypto[] cryptos = new Crypto[TickerSnapshot.COLUMN_STORE_THRESHOLD * 2];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin", "1." + i, "0", "0");
+        }
+        CoinRegistry registry = new CoinRegistry();
+        registry.setSnapshot(TickerSnapshot.of(cryptos, 1));
+
+        assertEquals("C1999", registry.get("1999").coinSymbol);
+        assertEquals("1.1999", registry.get("1999").coinPrice);
+    }
+
+    @Test
+    public void addPage_isOnlyUsedUntilTheFirstSnapshot() {
+        CoinRegistry registry = new CoinRegistry();
+        registry.addPage(new Crypto[] { new Crypto("90", "BTC", "Bitcoin", "41230.55", "-1.32", "0.21") });
+        assertEquals("BTC", registry.get("90").coinSymbol);
+
+        registry.setSnapshot(TickerSnapshot.of(new Crypto[] {
+                new Crypto("80", "ETH", "Ethereum", "2700.1", "3.5", "-0.02") }, 1));
+        registry.addPage(new Crypto[] { new Crypto("90", "BTC", "Bitcoin", "41230.55", "-1.32", "0.21") });
+
+        assertNull(registry.get("90"));
+        assertEquals("ETH", registry.get("80").coinSymbol);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the column-oriented coin list
+ */
+public class CryptoColumnStoreTest {
+
+    @Test
+    public void everyField_matchesTheObjectList() {
+        Crypto[] cryptos = randomCryptos(new Random(7), 2000);
+        CryptoRows objects = new CryptoArrayRows(cryptos);
+        CryptoRows columns = new CryptoColumnStore(cryptos);
+
+        assertEquals(objects.size(), columns.size());
+        for (int i = 0; i < objects.size(); i++) {
+            assertEquals(objects.id(i), columns.id(i));
+            assertEquals(objects.symbol(i), columns.symbol(i));
+            assertEquals(objects.name(i), columns.name(i));
+            assertEquals(objects.priceText(i), columns.priceText(i));
+            assertEquals(objects.priceFixed(i), columns.priceFixed(i));
+            assertEquals(objects.dailyChange(i), columns.dailyChange(i), 0);
+            assertEquals(objects.hourlyChange(i), columns.hourlyChange(i), 0);
+            assertEquals(objects.dailyChangeText(i), columns.dailyChangeText(i));
+            assertEquals(objects.hourlyChangeText(i), columns.hourlyChangeText(i));
+            assertEquals(objects.dailyNegative(i), columns.dailyNegative(i));
+            assertEquals(objects.hourlyNegative(i), columns.hourlyNegative(i));
+            assertEquals(objects.name(i), columns.get(i).coinName);
+        }
+    }
+
+    @Test
+    public void repeatedStrings_areStoredOnce() {
+        Crypto[] cryptos = new Crypto[100];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new Crypto("C" + i, "Coin " + i, "1", "0.5", "0.5");
+        }
+
+        // 100 symbols (also used as ids), 100 names, one price and one change text
+        assertEquals(202, new CryptoColumnStore(cryptos).distinctStrings());
+    }
+
+    @Test
+    public void snapshot_usesColumnsForLongLists() {
+        Random random = new Random(3);
+        assertTrue(TickerSnapshot.of(randomCryptos(random, TickerSnapshot.COLUMN_STORE_THRESHOLD), 0).rows
+                instanceof CryptoColumnStore);
+        assertTrue(TickerSnapshot.of(randomCryptos(random, 10), 0).rows instanceof CryptoArrayRows);
+    }
+
+    private static Crypto[] randomCryptos(Random random, int size) {
+        Crypto[] cryptos = new Crypto[size];
+        for (int i = 0; i < size; i++) {
+            String daily = (random.nextBoolean() ? "-" : "") + random.nextInt(20) + "." + random.nextInt(100);
+            String hourly = (random.nextBoolean() ? "-" : "") + random.nextInt(5) + "." + random.nextInt(10);
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, random.nextInt(50000) + "." + random.nextInt(100),
+                    daily, hourly);
+        }
+        return cryptos;
+    }
+}
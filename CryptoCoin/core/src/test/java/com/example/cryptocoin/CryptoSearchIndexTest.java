@@ -0,0 +1,90 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the coin search index, checked against a plain scan of the list
+ */
+public class CryptoSearchIndexTest {
+
+    private static final String[] WORDS = {"Bit", "coin", "Ether", "eum", "Doge", "Lite", "Cash", "Gold",
+            "Swap", "Chain", "Link", "Moon", "Token", "X", "Shiba", "Inu"};
+
+    @Test
+    public void search_matchesNameOrSymbolIgnoringCase() {
+        Crypto[] cryptos = {
+                new Crypto("BTC", "Bitcoin", "1", "1", "1"),
+                new Crypto("ETH", "Ethereum", "1", "1", "1"),
+                new Crypto("BCH", "Bitcoin Cash", "1", "1", "1"),
+        };
+        CryptoSearchIndex index = new CryptoSearchIndex(new CryptoArrayRows(cryptos));
+        int[] out = new int[cryptos.length];
+
+        assertEquals(2, index.search("COIN", out));
+        assertArrayEquals(new int[] {0, 2}, Arrays.copyOf(out, 2));
+        assertEquals(1, index.search("eth", out));
+        assertEquals(1, out[0]);
+        // symbols are searched too, and a match in both name and symbol is only listed once
+        assertEquals(1, index.search("bch", out));
+        assertEquals(2, out[0]);
+        assertEquals(0, index.search("dog", out));
+        // a query can't match across the end of a name into the symbol
+        assertEquals(0, index.search("coinbtc", out));
+    }
+
+    @Test
+    public void search_agreesWithAPlainScan() {
+        Random random = new Random(42);
+        String[] queries = {"b", "co", "coin", "eth", "x", "inu", "in", "gold swap", "zzz", "T", "oge", "k"};
+
+        for (int size : new int[] {100, 2000, 10000}) {
+            Crypto[] cryptos = randomCryptos(random, size);
+            CryptoSearchIndex index = new CryptoSearchIndex(new CryptoArrayRows(cryptos));
+            int[] out = new int[size];
+
+            for (String query : queries) {
+                int count = index.search(query, out);
+                assertArrayEquals("query '" + query + "' at " + size + " coins",
+                        scan(cryptos, query), Arrays.copyOf(out, count));
+            }
+        }
+    }
+
+    @Test
+    public void search_emptyQueryReturnsEverything() {
+        Crypto[] cryptos = randomCryptos(new Random(1), 50);
+        int[] out = new int[cryptos.length];
+
+        assertEquals(50, new CryptoSearchIndex(new CryptoArrayRows(cryptos)).search("", out));
+        assertEquals(49, out[49]);
+    }
+
+    private static int[] scan(Crypto[] cryptos, String query) {
+        String lower = query.toLowerCase();
+        int[] found = new int[cryptos.length];
+        int count = 0;
+        for (int i = 0; i < cryptos.length; i++) {
+            if (cryptos[i].coinName.toLowerCase().contains(lower)
+                    || cryptos[i].coinSymbol.toLowerCase().contains(lower)) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private static Crypto[] randomCryptos(Random random, int size) {
+        Crypto[] cryptos = new Crypto[size];
+        for (int i = 0; i < size; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + (random.nextBoolean() ? " " : "")
+                    + WORDS[random.nextInt(WORDS.length)];
+            String symbol = name.substring(0, Math.min(3, name.length())).toUpperCase() + i;
+            cryptos[i] = new Crypto(symbol, name, "1", "0", "0");
+        }
+        return cryptos;
+    }
+}
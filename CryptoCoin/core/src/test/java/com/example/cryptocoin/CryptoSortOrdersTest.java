@@ -0,0 +1,159 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the precomputed sort orders, checked against a plain comparator sort
+ */
+public class CryptoSortOrdersTest {
+
+    private static final int[] KEYS = {
+            CryptoSortOrders.PRICE, CryptoSortOrders.DAILY_CHANGE, CryptoSortOrders.HOURLY_CHANGE };
+
+    @Test
+    public void order_matchesAComparatorSort() {
+        Random random = new Random(11);
+        for (int size : new int[] {0, 1, 15, 16, 17, 500, TickerSnapshot.COLUMN_STORE_THRESHOLD * 3}) {
+            CryptoRows rows = TickerSnapshot.of(randomCryptos(random, size), 0).rows;
+            CryptoSortOrders orders = new CryptoSortOrders(rows);
+            for (int key : KEYS) {
+                for (boolean highestFirst : new boolean[] {false, true}) {
+                    assertArrayEquals("size " + size + " key " + key + " highest first " + highestFirst,
+                            naiveOrder(rows, key, highestFirst), orders.order(key, highestFirst));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void select_sortsASearchResultLikeAComparatorSort() {
+        Random random = new Random(5);
+        CryptoRows rows = new CryptoArrayRows(randomCryptos(random, 3000));
+        CryptoSortOrders orders = new CryptoSortOrders(rows);
+        int[] selected = new int[rows.size()];
+        int[] out = new int[rows.size()];
+
+        for (int round = 0; round < 20; round++) {
+            // matches arrive in list order, as the search index returns them
+            int count = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                if (random.nextInt(10) == 0) {
+                    selected[count++] = i;
+                }
+            }
+            for (int key : KEYS) {
+                boolean highestFirst = random.nextBoolean();
+                int written = orders.select(key, highestFirst, selected, count, out);
+
+                int[] expected = naiveOrder(rows, key, highestFirst);
+                int[] expectedSelected = new int[count];
+                int next = 0;
+                for (int row : expected) {
+                    if (Arrays.binarySearch(selected, 0, count, row) >= 0) {
+                        expectedSelected[next++] = row;
+                    }
+                }
+                assertEquals(count, written);
+                assertArrayEquals(expectedSelected, Arrays.copyOf(out, written));
+            }
+        }
+    }
+
+    @Test
+    public void order_keepsListOrderForEqualValuesBothWays() {
+        Crypto[] cryptos = {
+                new Crypto("a", "A", "A", "2", "-0", "1"),
+                new Crypto("b", "B", "B", "1", "0", "1"),
+                new Crypto("c", "C", "C", "2", "-3", "1"),
+                new Crypto("d", "D", "D", "1", "0", "1"),
+        };
+        CryptoSortOrders orders = new CryptoSortOrders(new CryptoArrayRows(cryptos));
+
+        assertArrayEquals(new int[] {1, 3, 0, 2}, orders.order(CryptoSortOrders.PRICE, false));
+        assertArrayEquals(new int[] {0, 2, 1, 3}, orders.order(CryptoSortOrders.PRICE, true));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, orders.order(CryptoSortOrders.HOURLY_CHANGE, true));
+        // a negative change sorts below zero
+        assertArrayEquals(new int[] {2, 0, 1, 3}, orders.order(CryptoSortOrders.DAILY_CHANGE, false));
+    }
+
+    @Test
+    public void order_byIndicators_putsCoinsWithoutThemLast() {
+        CoinIndicators indicators = new CoinIndicators(5);
+        indicators.update(new CryptoArrayRows(new Crypto[] {
+                new Crypto("a", "A", "A", "100", "0", "0"),
+                new Crypto("b", "B", "B", "100", "0", "0"),
+                new Crypto("c", "C", "C", "100", "0", "0"),
+        }));
+        // a rises, b falls, c stays put and d is new
+        CryptoRows rows = new CryptoArrayRows(new Crypto[] {
+                new Crypto("a", "A", "A", "110", "0", "0"),
+                new Crypto("b", "B", "B", "80", "0", "0"),
+                new Crypto("c", "C", "C", "100", "0", "0"),
+                new Crypto("d", "D", "D", "5", "0", "0"),
+        });
+        CryptoSortOrders orders = new CryptoSortOrders(rows, indicators.update(rows));
+
+        assertArrayEquals(new int[] {0, 2, 1, 3}, orders.order(CryptoSortOrders.TREND, true));
+        assertArrayEquals(new int[] {1, 2, 0, 3}, orders.order(CryptoSortOrders.TREND, false));
+        // without indicators, sorting by one keeps the list order
+        CryptoSortOrders plain = new CryptoSortOrders(rows);
+        assertArrayEquals(new int[] {0, 1, 2, 3}, plain.order(CryptoSortOrders.VOLATILITY, true));
+    }
+
+    @Test
+    public void sorts_onlyTheListTheOrdersWereComputedFor() {
+        CryptoRows rows = new CryptoArrayRows(randomCryptos(new Random(1), 10));
+        CryptoSortOrders orders = new CryptoSortOrders(rows);
+
+        assertTrue(orders.sorts(rows));
+        assertFalse(orders.sorts(new CryptoArrayRows(randomCryptos(new Random(1), 10))));
+    }
+
+    /**
+     * Sort boxed positions with a comparator, the way the adapter would have without precomputed
+     * orders. Arrays.sort on objects is stable, so equal values keep list order
+     */
+    private static int[] naiveOrder(final CryptoRows rows, final int key, final boolean highestFirst) {
+        Integer[] boxed = new Integer[rows.size()];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int cmp;
+                if (key == CryptoSortOrders.PRICE) {
+                    cmp = Long.compare(rows.priceFixed(a), rows.priceFixed(b));
+                } else if (key == CryptoSortOrders.DAILY_CHANGE) {
+                    cmp = Double.compare(rows.dailyChange(a), rows.dailyChange(b));
+                } else {
+                    cmp = Double.compare(rows.hourlyChange(a), rows.hourlyChange(b));
+                }
+                return highestFirst ? -cmp : cmp;
+            }
+        });
+        int[] order = new int[boxed.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private static Crypto[] randomCryptos(Random random, int size) {
+        Crypto[] cryptos = new Crypto[size];
+        for (int i = 0; i < size; i++) {
+            // few distinct values, so there are plenty of ties
+            String price = random.nextInt(200) + "." + random.nextInt(4);
+            String daily = (random.nextBoolean() ? "-" : "") + random.nextInt(20) + "." + random.nextInt(3);
+            String hourly = (random.nextBoolean() ? "-" : "") + random.nextInt(3);
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, price, daily, hourly);
+        }
+        return cryptos;
+    }
+}
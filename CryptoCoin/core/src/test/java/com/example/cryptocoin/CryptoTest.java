@@ -0,0 +1,47 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for parsing the numbers of a coin
+ */
+public class CryptoTest {
+
+    @Test
+    public void parseFixed_keepsEveryDecimalPlace() {
+        assertEquals(4123055000000L, Crypto.parseFixed("41230.55"));
+        assertEquals(123L, Crypto.parseFixed("0.00000123"));
+        assertEquals(100000000L, Crypto.parseFixed("1"));
+        assertEquals(50000000L, Crypto.parseFixed(".5"));
+        assertEquals(-250000000L, Crypto.parseFixed("-2.5"));
+    }
+
+    @Test
+    public void parseFixed_roundsPastTheEighthDecimalPlace() {
+        assertEquals(2L, Crypto.parseFixed("0.000000015"));
+        assertEquals(1L, Crypto.parseFixed("0.0000000149"));
+    }
+
+    @Test
+    public void parseFixed_readsExponentsAndTreatsJunkAsZero() {
+        assertEquals(12L, Crypto.parseFixed("1.2E-7"));
+        assertEquals(0L, Crypto.parseFixed(""));
+        assertEquals(0L, Crypto.parseFixed("n/a"));
+        assertEquals(0L, Crypto.parseFixed("99999999999999999999"));
+    }
+
+    @Test
+    public void constructor_preparesDisplayTextAndSign() {
+        Crypto crypto = new Crypto("BTC", "Bitcoin", "41230.55", "-1.32", "0.21");
+
+        assertEquals(4123055000000L, crypto.priceFixed);
+        assertEquals(41230.55, crypto.getPrice(), 1e-9);
+        assertEquals("-1.32%", crypto.dailyChangeText);
+        assertTrue(crypto.dailyNegative);
+        assertEquals("+0.21%", crypto.hourlyChangeText);
+        assertFalse(crypto.hourlyNegative);
+        assertEquals(0.21, crypto.hourlyPercentageChange, 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.cryptocoin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Price feed for tests, which delivers whatever the test pushes on the pushing thread
+ */
+class FakePriceFeed implements PriceFeed {
+    private final HashMap<Listener, String> subscriptions = new HashMap<>();
+
+    @Override
+    public synchronized void subscribe(String coinId, Listener listener) {
+        subscriptions.put(listener, coinId);
+    }
+
+    @Override
+    public synchronized void unsubscribe(Listener listener) {
+        subscriptions.remove(listener);
+    }
+
+    /**
+     * Deliver a price to every listener following the coin
+     * @param coin coin's new data
+     */
+    void push(Crypto coin) {
+        HashMap<Listener, String> current;
+        synchronized (this) {
+            current = new HashMap<>(subscriptions);
+        }
+        for (Map.Entry<Listener, String> entry : current.entrySet()) {
+            if (entry.getValue().equals(coin.coinId)) {
+                entry.getKey().onPrice(coin);
+            }
+        }
+    }
+}
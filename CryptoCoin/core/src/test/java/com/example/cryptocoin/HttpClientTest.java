@@ -0,0 +1,212 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests connection reuse, timeouts, retries and the connection limit against a local server,
+ * which notes the port every request arrives from so new connections can be counted
+ */
+public class HttpClientTest {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final Set<Integer> remotePorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final AtomicInteger requests = new AtomicInteger();
+    // answers with 503 until this runs out
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger mostOpen = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMillis;
+    private byte[] body;
+
+    @Before
+    public void startServer() throws IOException {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"symbol\":\"C").append(i).append("\",\"name\":\"Coin ")
+                    .append(i).append("\",\"price_usd\":\"1.5\",\"percent_change_24h\":\"1.0\",\"percent_change_1h\":\"-0.1\"}");
+        }
+        body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/tickers/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                remotePorts.add(exchange.getRemoteAddress().getPort());
+                requests.incrementAndGet();
+                int now = open.incrementAndGet();
+                while (true) {
+                    int most = mostOpen.get();
+                    if (now <= most || mostOpen.compareAndSet(most, now)) {
+                        break;
+                    }
+                }
+                try {
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                int code = failuresLeft.getAndDecrement() > 0 ? 503 : status;
+                exchange.sendResponseHeaders(code, body.length);
+                OutputStream stream = exchange.getResponseBody();
+                stream.write(body);
+                stream.close();
+                open.decrementAndGet();
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void repeatedRefreshes_reuseOneConnection() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher(new HttpClient());
+        for (int i = 0; i < 20; i++) {
+            HttpFetcher.Result<Crypto[]> result = fetcher.fetch(url(), new HttpFetcher.BodyParser<Crypto[]>() {
+                @Override
+                public Crypto[] parse(InputStream in) throws IOException {
+                    return TickerParser.parse(in);
+                }
+            });
+            assertEquals(100, result.value.length);
+        }
+
+        assertEquals(20, requests.get());
+        assertEquals(1, remotePorts.size());
+    }
+
+    @Test
+    public void unreadBody_stillLeavesItsConnectionReusable() throws IOException {
+        HttpClient client = new HttpClient();
+        for (int i = 0; i < 5; i++) {
+            HttpClient.Response response = client.get(url());
+            assertEquals(200, response.code);
+            response.close();
+        }
+
+        assertEquals(1, remotePorts.size());
+    }
+
+    @Test
+    public void serverErrors_areRetried() throws IOException {
+        HttpClient client = new HttpClient(1000, 1000, 2, 2, 10);
+        failuresLeft.set(2);
+
+        HttpClient.Response response = client.get(url());
+        response.close();
+
+        assertEquals(200, response.code);
+        assertEquals(3, requests.get());
+        assertEquals(2, client.getRetries());
+    }
+
+    @Test
+    public void retries_stopAfterTheLimit() throws IOException {
+        HttpClient client = new HttpClient(1000, 1000, 2, 1, 10);
+        failuresLeft.set(5);
+
+        HttpClient.Response response = client.get(url());
+        response.close();
+
+        assertEquals(503, response.code);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() throws IOException {
+        HttpClient client = new HttpClient(1000, 1000, 2, 2, 10);
+        status = 404;
+
+        HttpClient.Response response = client.get(url());
+        response.close();
+
+        assertEquals(404, response.code);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void slowServer_timesOutWithoutRetrying() throws IOException {
+        HttpClient client = new HttpClient(1000, 100, 2, 2, 10);
+        delayMillis = 1000;
+
+        long start = System.nanoTime();
+        try {
+            client.get(url()).close();
+            fail("expected a timeout");
+        } catch (SocketTimeoutException expected) {
+            // the server never answered in time
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800);
+        assertEquals(1, requests.get());
+        assertEquals(0, client.getRetries());
+    }
+
+    @Test
+    public void concurrentRequests_keepToTheConnectionLimit() throws Exception {
+        final HttpClient client = new HttpClient(1000, 5000, 2, 0, 10);
+        delayMillis = 50;
+        final CountDownLatch done = new CountDownLatch(6);
+        final AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        client.get(url()).close();
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, failed.get());
+        assertEquals(6, requests.get());
+        assertTrue("open at once " + mostOpen.get(), mostOpen.get() <= 2);
+        assertTrue("connections " + remotePorts.size(), remotePorts.size() <= 2);
+    }
+
+    private URL url() {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests conditional requests and gzip handling against a local stand-in for the API
+ */
+public class HttpFetcherTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 09 Mar 2022 11:50:37 GMT";
+
+    private HttpServer server;
+    private final AtomicInteger bodiesSent = new AtomicInteger();
+    private volatile boolean sendValidators = true;
+    private volatile String lastIfNoneMatch;
+    private volatile String lastIfModifiedSince;
+    private byte[] body;
+
+    @Before
+    public void startServer() throws IOException {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 200; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"symbol\":\"C").append(i).append("\",\"name\":\"Coin ")
+                    .append(i).append("\",\"price_usd\":\"1.5\",\"percent_change_24h\":\"1.0\",\"percent_change_1h\":\"-0.1\"}");
+        }
+        body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/tickers/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                lastIfModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                if (ETAG.equals(lastIfNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] out = body;
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    out = gzip(body);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                if (sendValidators) {
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+                    exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                }
+                bodiesSent.incrementAndGet();
+                exchange.sendResponseHeaders(200, out.length);
+                OutputStream stream = exchange.getResponseBody();
+                stream.write(out);
+                stream.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetch_decompressesGzipAndCountsWireBytes() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher();
+
+        HttpFetcher.Result<Crypto[]> result = fetcher.fetch(url(), parser());
+
+        assertFalse(result.notModified);
+        assertEquals(200, result.value.length);
+        assertEquals("C199", result.value[199].coinSymbol);
+        long wireBytes = fetcher.getStats().getBytesDownloaded();
+        assertEquals(gzip(body).length, wireBytes);
+        assertTrue(wireBytes < body.length / 4);
+        assertEquals(1, fetcher.getStats().getDownloads());
+    }
+
+    @Test
+    public void fetch_reusesThePreviousResultOn304() throws IOException {
+        HttpFetcher fetcher = new HttpFetcher();
+        final AtomicInteger parses = new AtomicInteger();
+        HttpFetcher.BodyParser<Crypto[]> counting = new HttpFetcher.BodyParser<Crypto[]>() {
+            @Override
+            public Crypto[] parse(InputStream in) throws IOException {
+                parses.incrementAndGet();
+                return TickerParser.parse(in);
+            }
+        };
+
+        HttpFetcher.Result<Crypto[]> first = fetcher.fetch(url(), counting);
+        long bytesAfterFirst = fetcher.getStats().getBytesDownloaded();
+        HttpFetcher.Result<Crypto[]> second = fetcher.fetch(url(), counting);
+
+        assertEquals(ETAG, lastIfNoneMatch);
+        assertEquals(LAST_MODIFIED, lastIfModifiedSince);
+        assertTrue(second.notModified);
+        assertSame(first.value, second.value);
+        assertEquals(1, parses.get());
+        assertEquals(1, bodiesSent.get());
+        assertEquals(bytesAfterFirst, fetcher.getStats().getBytesDownloaded());
+        assertEquals(1, fetcher.getStats().getNotModified());
+    }
+
+    @Test
+    public void fetch_sendsNoValidatorsWhenTheServerGaveNone() throws IOException {
+        sendValidators = false;
+        HttpFetcher fetcher = new HttpFetcher();
+
+        fetcher.fetch(url(), parser());
+        HttpFetcher.Result<Crypto[]> second = fetcher.fetch(url(), parser());
+
+        assertFalse(second.notModified);
+        assertNull(lastIfNoneMatch);
+        assertNull(lastIfModifiedSince);
+        assertEquals(2, bodiesSent.get());
+    }
+
+    @Test
+    public void fetch_keepsValidatorsForEveryPageOfARefresh() throws IOException {
+        // more pages than the default cache holds, walked in order as a refresh does
+        int pages = HttpFetcher.DEFAULT_CACHED_URLS + 36;
+        HttpFetcher fetcher = new HttpFetcher(new HttpClient(), pages + 16);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int page = 0; page < pages; page++) {
+                HttpFetcher.Result<Crypto[]> result = fetcher.fetch(pageUrl(page), parser());
+                assertEquals("pass " + pass + " page " + page, pass == 1, result.notModified);
+            }
+        }
+
+        assertEquals(pages, bodiesSent.get());
+        assertEquals(pages, fetcher.getStats().getNotModified());
+    }
+
+    private URL pageUrl(int page) throws IOException {
+        return new URL(url() + "?start=" + (page * 100 + 1) + "&limit=100");
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/");
+    }
+
+    private static HttpFetcher.BodyParser<Crypto[]> parser() {
+        return new HttpFetcher.BodyParser<Crypto[]>() {
+            @Override
+            public Crypto[] parse(InputStream in) throws IOException {
+                return TickerParser.parse(in);
+            }
+        };
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.cryptocoin;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for applying live prices to the detail screen, fed from a fake price feed
+ */
+public class LivePriceTest {
+
+    private final FakePriceFeed feed = new FakePriceFeed();
+    private final LivePrice livePrice = new LivePrice();
+    private final RecordingDisplay display = new RecordingDisplay();
+    // number of times the screen would have been asked to apply prices
+    private final AtomicInteger posts = new AtomicInteger();
+
+    private void follow(String coinId) {
+        feed.subscribe(coinId, new PriceFeed.Listener() {
+            @Override
+            public void onPrice(Crypto coin) {
+                if (livePrice.offer(coin)) {
+                    posts.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void ticks_beforeTheScreenCatchesUp_areCoalescedToTheLatest() throws Exception {
+        follow("90");
+        Thread feedThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                feed.push(coin("41000", "1.0", "0.1"));
+                feed.push(coin("41100", "1.2", "0.1"));
+                feed.push(coin("41230.55", "-1.32", "0.21"));
+            }
+        });
+        feedThread.start();
+        feedThread.join();
+
+        assertEquals(1, posts.get());
+        assertEquals(3, livePrice.applyPending(display));
+        assertEquals("$41230.55", display.price);
+        assertEquals("-1.32%", display.daily);
+        assertTrue(display.dailyNegative);
+        assertEquals(0, livePrice.applyPending(display));
+    }
+
+    @Test
+    public void apply_updatesOnlyWhatChanged() {
+        livePrice.apply(coin("41230.55", "-1.32", "0.21"), display);
+        display.updates = 0;
+
+        assertEquals(0, livePrice.apply(coin("41230.55", "-1.32", "0.21"), display));
+        assertEquals(1, livePrice.apply(coin("41230.56", "-1.32", "0.21"), display));
+        assertEquals("$41230.56", display.price);
+        assertEquals(1, livePrice.apply(coin("41230.56", "-1.32", "0.3"), display));
+        assertEquals("+0.3%", display.hourly);
+        assertEquals(2, display.updates);
+    }
+
+    @Test
+    public void converted_followsEveryNewPrice() {
+        livePrice.apply(coin("2000", "0", "0"), display);
+        livePrice.setConvertCoins(Crypto.parseFixed("1.5"), display);
+        assertEquals("$3000.00", display.converted);
+
+        livePrice.apply(coin("2000.5", "0", "0"), display);
+        assertEquals("$3000.75", display.converted);
+    }
+
+    @Test
+    public void formatDollars_keepsTwoToEightDecimals() {
+        assertEquals("$41230.55", format(4123055000000L));
+        assertEquals("$0.00000123", format(123));
+        assertEquals("$0.00", format(0));
+        assertEquals("$1.10", format(110000000L));
+        assertEquals("-$2.50", format(-250000000L));
+        assertEquals("-$92233720368.54775808", format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void applyingTicks_allocatesNothing() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // coins are created on the feed thread, so build them before measuring
+        Crypto[] ticks = new Crypto[64];
+        for (int i = 0; i < ticks.length; i++) {
+            ticks[i] = coin("41230." + i, (i % 2 == 0 ? "-" : "") + "1." + i, "0." + i);
+        }
+        LivePrice.Display nothing = new LivePrice.Display() {
+            @Override
+            public void showPrice(char[] text, int length) {}
+
+            @Override
+            public void showDailyChange(String text, boolean negative) {}
+
+            @Override
+            public void showHourlyChange(String text, boolean negative) {}
+
+            @Override
+            public void showConverted(char[] text, int length) {}
+        };
+        livePrice.setConvertCoins(Crypto.parseFixed("0.25"), nothing);
+        // warm up so class loading and compilation don't count
+        for (int i = 0; i < 20000; i++) {
+            livePrice.offer(ticks[i % ticks.length]);
+            livePrice.applyPending(nothing);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            livePrice.offer(ticks[i % ticks.length]);
+            livePrice.applyPending(nothing);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes for 100000 ticks", allocated < 1024);
+    }
+
+    private static Crypto coin(String price, String daily, String hourly) {
+        return new Crypto("90", "BTC", "Bitcoin", price, daily, hourly);
+    }
+
+    private static String format(long fixed) {
+        char[] out = new char[32];
+        return new String(out, 0, LivePrice.formatDollars(fixed, out));
+    }
+
+    /**
+     * Display that records the last text shown in each part
+     */
+    private static class RecordingDisplay implements LivePrice.Display {
+        String price;
+        String daily;
+        boolean dailyNegative;
+        String hourly;
+        String converted;
+        int updates;
+
+        @Override
+        public void showPrice(char[] text, int length) {
+            price = new String(text, 0, length);
+            updates++;
+        }
+
+        @Override
+        public void showDailyChange(String text, boolean negative) {
+            daily = text;
+            dailyNegative = negative;
+            updates++;
+        }
+
+        @Override
+        public void showHourlyChange(String text, boolean negative) {
+            hourly = text;
+            updates++;
+        }
+
+        @Override
+        public void showConverted(char[] text, int length) {
+            converted = new String(text, 0, length);
+            updates++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.cryptocoin;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the market figures against a plain sequential reference: a loop for the totals and a
+ * full sort for the gainers, losers and percentile bands
+ */
+public class MarketAnalyticsTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void summarize_matchesASequentialReference() {
+        Random random = new Random(17);
+        MarketAnalytics analytics = new MarketAnalytics(pool, 10);
+        // below, at and well above the size a single task reads, with plenty of tied changes
+        for (int size : new int[] {0, 1, 2, 9, 10, 11, 100, MarketAnalytics.LEAF_ROWS, MarketAnalytics.LEAF_ROWS + 1, 50000}) {
+            CryptoRows rows = TickerSnapshot.of(randomCryptos(random, size), 0).rows;
+            assertMatchesReference(rows, analytics.summarize(rows));
+        }
+    }
+
+    @Test
+    public void summarize_sameResultOnOneThreadOrMany() {
+        CryptoRows rows = TickerSnapshot.of(randomCryptos(new Random(2), 30000), 0).rows;
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            MarketAnalytics.Summary one = new MarketAnalytics(single, 5).summarize(rows);
+            MarketAnalytics.Summary many = new MarketAnalytics(pool, 5).summarize(rows);
+            assertArrayEquals(one.gainers, many.gainers);
+            assertArrayEquals(one.losers, many.losers);
+            assertArrayEquals(one.bands, many.bands, 0);
+            assertEquals(one.advancers, many.advancers);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void topRows_breakTiesByListOrder() {
+        Crypto[] cryptos = {
+                new Crypto("a", "A", "A", "1", "5", "0"),
+                new Crypto("b", "B", "B", "1", "9", "0"),
+                new Crypto("c", "C", "C", "1", "5", "0"),
+                new Crypto("d", "D", "D", "1", "-2", "0"),
+                new Crypto("e", "E", "E", "1", "0", "0"),
+        };
+        CryptoRows rows = new CryptoArrayRows(cryptos);
+        MarketAnalytics.Summary summary = new MarketAnalytics(pool, 3).summarize(rows);
+
+        assertArrayEquals(new int[] {1, 0, 2}, summary.gainers);
+        assertArrayEquals(new int[] {3, 4, 0}, summary.losers);
+        assertEquals(3, summary.advancers);
+        assertEquals(1, summary.decliners);
+        assertEquals(17 / 5.0, summary.meanChange, 1e-9);
+        assertTrue(summary.describes(rows));
+    }
+
+    private static void assertMatchesReference(final CryptoRows rows, MarketAnalytics.Summary summary) {
+        int size = rows.size();
+        double sum = 0;
+        int advancers = 0;
+        int decliners = 0;
+        double[] sorted = new double[size];
+        Integer[] order = new Integer[size];
+        for (int row = 0; row < size; row++) {
+            double change = rows.dailyChange(row);
+            sum += change;
+            advancers += change > 0 ? 1 : 0;
+            decliners += change < 0 ? 1 : 0;
+            sorted[row] = change;
+            order[row] = row;
+        }
+        Arrays.sort(sorted);
+        // stable, so equal changes keep list order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareChanges(rows, b, a);
+            }
+        });
+
+        String message = "size " + size;
+        assertEquals(message, size, summary.coins);
+        assertEquals(message, advancers, summary.advancers);
+        assertEquals(message, decliners, summary.decliners);
+        assertEquals(message, size == 0 ? 0 : sum / size, summary.meanChange, 1e-9);
+        for (int i = 0; i < MarketAnalytics.BANDS.length; i++) {
+            double expected = size == 0 ? 0 : sorted[MarketAnalytics.rank(MarketAnalytics.BANDS[i], size)];
+            assertEquals(message + " band " + i, expected, summary.bands[i], 0);
+        }
+
+        int top = Math.min(10, size);
+        int[] gainers = new int[top];
+        for (int i = 0; i < top; i++) {
+            gainers[i] = order[i];
+        }
+        assertArrayEquals(gainers, summary.gainers);
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int cmp = compareChanges(rows, a, b);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            }
+        });
+        int[] losers = new int[top];
+        for (int i = 0; i < top; i++) {
+            losers[i] = order[i];
+        }
+        assertArrayEquals(losers, summary.losers);
+    }
+
+    // compares as numbers do, so -0 and 0 are equal
+    private static int compareChanges(CryptoRows rows, int a, int b) {
+        double changeA = rows.dailyChange(a);
+        double changeB = rows.dailyChange(b);
+        return changeA < changeB ? -1 : changeA > changeB ? 1 : 0;
+    }
+
+    private static Crypto[] randomCryptos(Random random, int size) {
+        Crypto[] cryptos = new Crypto[size];
+        for (int i = 0; i < size; i++) {
+            // two decimal places over a narrow range, so many coins share a change
+            String daily = (random.nextBoolean() ? "-" : "") + random.nextInt(30) + "." + random.nextInt(100);
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, "1", daily, "0");
+        }
+        return cryptos;
+    }
+}
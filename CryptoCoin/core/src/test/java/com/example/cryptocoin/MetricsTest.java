@@ -0,0 +1,75 @@
+package com.example.cryptocoin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the metrics counters and stage timers
+ */
+public class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.setEnabled(true);
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void stagesAndCounters_areRecorded() throws IOException {
+        long start = Metrics.start();
+        assertTrue(start != 0);
+        Metrics.stop(Metrics.PARSE, start);
+        Metrics.count(Metrics.BYTES_DOWNLOADED, 1500);
+        Metrics.count(Metrics.HTTP_DOWNLOADS, 1);
+        Metrics.count(Metrics.HTTP_NOT_MODIFIED, 3);
+
+        assertEquals(1, Metrics.stage(Metrics.PARSE).getCount());
+        assertEquals(1500, Metrics.counter(Metrics.BYTES_DOWNLOADED));
+        assertEquals(0.75, Metrics.httpCacheHitRatio(), 1e-9);
+
+        StringWriter out = new StringWriter();
+        Metrics.dump(out);
+        assertTrue(out.toString(), out.toString().contains("http cache hits    75.0%"));
+        assertTrue(out.toString(), out.toString().contains("bytes downloaded   1500"));
+    }
+
+    @Test
+    public void firstRow_isTimedOnceFromTheStart() throws InterruptedException {
+        Metrics.startFirstRow();
+        Thread.sleep(20);
+        Metrics.rowBound();
+        Metrics.rowBound();
+
+        LatencyHistogram firstRow = Metrics.stage(Metrics.FIRST_ROW);
+        assertEquals(1, firstRow.getCount());
+        assertTrue(firstRow.getMaxMillis() >= 20);
+        assertEquals(2, Metrics.counter(Metrics.ROWS_BOUND));
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        Metrics.setEnabled(false);
+        long start = Metrics.start();
+        assertEquals(0, start);
+        Metrics.stop(Metrics.BIND, start);
+        Metrics.count(Metrics.BYTES_DOWNLOADED, 100);
+        Metrics.startFirstRow();
+        Metrics.rowBound();
+
+        assertEquals(0, Metrics.stage(Metrics.BIND).getCount());
+        assertEquals(0, Metrics.counter(Metrics.BYTES_DOWNLOADED));
+        assertEquals(0, Metrics.stage(Metrics.FIRST_ROW).getCount());
+    }
+}
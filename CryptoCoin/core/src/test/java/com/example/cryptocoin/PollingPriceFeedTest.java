@@ -0,0 +1,115 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests polling single coin prices from a local stand-in for the API
+ */
+public class PollingPriceFeedTest {
+
+    private HttpServer server;
+    private final AtomicInteger polls = new AtomicInteger();
+    private volatile String price = "41230.55";
+    private volatile String lastQuery;
+    private PollingPriceFeed feed;
+    private final LinkedBlockingQueue<Crypto> delivered = new LinkedBlockingQueue<>();
+    private final PriceFeed.Listener listener = new PriceFeed.Listener() {
+        @Override
+        public void onPrice(Crypto coin) {
+            delivered.add(coin);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/ticker/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                polls.incrementAndGet();
+                lastQuery = exchange.getRequestURI().getQuery();
+                String current = price;
+                String eTag = "\"" + current + "\"";
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = ("[{\"id\":\"90\",\"symbol\":\"BTC\",\"name\":\"Bitcoin\",\"price_usd\":\"" + current
+                        + "\",\"percent_change_24h\":\"-1.32\",\"percent_change_1h\":\"0.21\"}]")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", eTag);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/ticker/";
+        feed = new PollingPriceFeed(new HttpFetcher(), base, 20);
+    }
+
+    @After
+    public void tearDown() {
+        feed.unsubscribe(listener);
+        server.stop(0);
+    }
+
+    @Test
+    public void subscribe_deliversOnlyChangedPrices() throws Exception {
+        feed.subscribe("90", listener);
+
+        Crypto first = delivered.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals("id=90", lastQuery);
+        assertEquals(4123055000000L, first.priceFixed);
+
+        // unchanged prices come back as 304s and are not delivered again
+        waitForPolls(polls.get() + 3);
+        assertNull(delivered.poll());
+
+        price = "41300";
+        Crypto second = delivered.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(4130000000000L, second.priceFixed);
+    }
+
+    @Test
+    public void unsubscribe_stopsPolling() throws Exception {
+        feed.subscribe("90", listener);
+        assertNotNull(delivered.poll(5, TimeUnit.SECONDS));
+
+        feed.unsubscribe(listener);
+        // a poll already running, or waiting to be merged into a batch, may still finish
+        Thread.sleep(150);
+        int after = polls.get();
+        Thread.sleep(200);
+        assertEquals(after, polls.get());
+    }
+
+    private void waitForPolls(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (polls.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // let the last poll's response be handled
+        Thread.sleep(30);
+    }
+}
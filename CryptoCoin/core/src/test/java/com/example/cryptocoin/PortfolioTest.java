@@ -0,0 +1,216 @@
+package com.example.cryptocoin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the portfolio and its incremental totals
+ */
+public class PortfolioTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("portfolio", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void updatePrices_valuesPositionsExactly() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("90", "BTC", Crypto.parseFixed("0.1"), Crypto.parseFixed("3000"));
+        portfolio.add("80", "ETH", Crypto.parseFixed("3"), Crypto.parseFixed("9000"));
+        assertEquals(0, portfolio.getTotalValue());
+        assertEquals(0, portfolio.getTotalProfit());
+
+        assertEquals(2, portfolio.updatePrices(snapshot("41230.55", "2700.1")));
+
+        // 0.1 * 41230.55 and 3 * 2700.1, to the last digit
+        assertEquals(Crypto.parseFixed("4123.055"), portfolio.value(0));
+        assertEquals(Crypto.parseFixed("8100.3"), portfolio.value(1));
+        assertEquals(Crypto.parseFixed("12223.355"), portfolio.getTotalValue());
+        assertEquals(Crypto.parseFixed("223.355"), portfolio.getTotalProfit());
+        assertEquals(Crypto.parseFixed("-899.7"), portfolio.profit(1));
+    }
+
+    @Test
+    public void updatePrices_onlyRecomputesPositionsWhosePriceChanged() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("90", "BTC", Crypto.parseFixed("1"), 0);
+        portfolio.add("80", "ETH", Crypto.parseFixed("1"), 0);
+        portfolio.updatePrices(snapshot("41230.55", "2700.1"));
+
+        assertEquals(0, portfolio.updatePrices(snapshot("41230.55", "2700.1")));
+        assertEquals(1, portfolio.updatePrices(snapshot("41230.55", "2800")));
+        assertEquals(Crypto.parseFixed("44030.55"), portfolio.getTotalValue());
+        assertTrue(portfolio.updatePrice("90", Crypto.parseFixed("40000")));
+        assertFalse(portfolio.updatePrice("90", Crypto.parseFixed("40000")));
+        assertEquals(Crypto.parseFixed("42800"), portfolio.getTotalValue());
+    }
+
+    @Test
+    public void updatePrices_findsCoinsThatChangedRows() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("80", "ETH", Crypto.parseFixed("1"), 0);
+        portfolio.updatePrices(snapshot("41230.55", "2700.1"));
+
+        // ETH moves to the top and BTC drops out of the list
+        portfolio.updatePrices(TickerSnapshot.of(new Crypto[] {
+                new Crypto("80", "ETH", "Ethereum", "2800", "0", "0") }, 2));
+        assertEquals(Crypto.parseFixed("2800"), portfolio.value(0));
+
+        portfolio.updatePrices(TickerSnapshot.of(new Crypto[0], 3));
+        assertEquals(Crypto.parseFixed("2800"), portfolio.price(0));
+    }
+
+    @Test
+    public void remove_takesThePositionOutOfTheTotals() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("90", "BTC", Crypto.parseFixed("1"), Crypto.parseFixed("40000"));
+        portfolio.add("80", "ETH", Crypto.parseFixed("2"), Crypto.parseFixed("5000"));
+        portfolio.add("7", "NEW", Crypto.parseFixed("5"), Crypto.parseFixed("5"));
+        portfolio.updatePrices(snapshot("41230.55", "2700.1"));
+
+        assertTrue(portfolio.remove("90"));
+        assertFalse(portfolio.remove("90"));
+        assertEquals(2, portfolio.size());
+        assertEquals("NEW", portfolio.symbol(portfolio.indexOf("7")));
+        assertEquals(Crypto.parseFixed("5400.2"), portfolio.getTotalValue());
+        assertEquals(Crypto.parseFixed("5005"), portfolio.getTotalCost());
+        // the unpriced position's cost isn't counted against the profit
+        assertEquals(Crypto.parseFixed("400.2"), portfolio.getTotalProfit());
+    }
+
+    @Test
+    public void incrementalTotals_matchARecomputationAfterManyRefreshes() {
+        Random random = new Random(9);
+        int coins = 3000;
+        Portfolio portfolio = new Portfolio();
+        for (int i = 0; i < coins; i += 2) {
+            portfolio.add(String.valueOf(i), "C" + i, random.nextInt(1000000) * 1000L, random.nextInt(100000000));
+        }
+        String[] prices = new String[coins];
+        for (int i = 0; i < coins; i++) {
+            prices[i] = random.nextInt(50000) + "." + random.nextInt(100000000);
+        }
+
+        for (int refresh = 0; refresh < 50; refresh++) {
+            // a few coins change price on each refresh
+            for (int change = 0; change < 30; change++) {
+                prices[random.nextInt(coins)] = random.nextInt(50000) + "." + random.nextInt(100000000);
+            }
+            Crypto[] cryptos = new Crypto[coins];
+            for (int i = 0; i < coins; i++) {
+                cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, prices[i], "0", "0");
+            }
+            portfolio.updatePrices(TickerSnapshot.of(cryptos, refresh));
+
+            BigDecimal total = BigDecimal.ZERO;
+            for (int p = 0; p < portfolio.size(); p++) {
+                total = total.add(BigDecimal.valueOf(portfolio.quantity(p), 8)
+                        .multiply(BigDecimal.valueOf(portfolio.price(p), 8))
+                        .setScale(8, RoundingMode.HALF_UP));
+            }
+            assertEquals(total.movePointRight(8).longValueExact(), portfolio.getTotalValue());
+        }
+    }
+
+    @Test
+    public void value_staysExactPastWhatALongProductHolds() {
+        long quantity = Crypto.parseFixed("250000.12345678");
+        long price = Crypto.parseFixed("98765.4321");
+        BigDecimal expected = new BigDecimal("250000.12345678").multiply(new BigDecimal("98765.4321"))
+                .setScale(8, RoundingMode.HALF_UP);
+
+        assertEquals(expected.movePointRight(8).longValueExact(), Portfolio.value(quantity, price));
+        assertEquals(Long.MAX_VALUE, Portfolio.value(Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void totalValue_saturatesRatherThanWrapping() {
+        Portfolio portfolio = new Portfolio();
+        // each is worth about 0.6 of what a long holds, together more than it holds
+        long quantity = Long.MAX_VALUE / 5 * 3 / Crypto.PRICE_SCALE * Portfolio.QUANTITY_SCALE;
+        portfolio.add("90", "BTC", quantity, 0);
+        portfolio.add("80", "ETH", quantity, 0);
+        portfolio.add("70", "SOL", Crypto.parseFixed("1"), 0);
+        portfolio.updatePrices(snapshot("1", "0.5"));
+        long each = portfolio.value(0);
+        assertEquals(each + portfolio.value(1), portfolio.getTotalValue());
+
+        portfolio.updatePrice("80", Crypto.parseFixed("1"));
+        assertEquals(Long.MAX_VALUE, portfolio.getTotalValue());
+        assertTrue(portfolio.getTotalProfit() > 0);
+
+        // a price moving while saturated keeps it there, and the exact total comes back once it fits
+        portfolio.updatePrice("70", Crypto.parseFixed("2"));
+        assertEquals(Long.MAX_VALUE, portfolio.getTotalValue());
+        assertTrue(portfolio.remove("90"));
+        assertEquals(each + Crypto.parseFixed("2"), portfolio.getTotalValue());
+    }
+
+    @Test
+    public void add_keepsZeroQuantityPositionsAsAWatchlist() throws IOException {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("90", "BTC", 0, 0);
+        portfolio.updatePrices(snapshot("41230.55", "2700.1"));
+        assertEquals(1, portfolio.size());
+        assertEquals(Crypto.parseFixed("41230.55"), portfolio.price(0));
+        assertEquals(0, portfolio.value(0));
+        assertEquals(0, portfolio.getTotalProfit());
+
+        new PortfolioStore(file).write(portfolio);
+        Portfolio read = new PortfolioStore(file).read();
+        assertEquals(1, read.size());
+        assertEquals("90", read.coinId(0));
+        assertEquals(0, read.quantity(0));
+    }
+
+    @Test
+    public void store_keepsHoldingsAcrossLaunches() throws IOException {
+        Portfolio portfolio = new Portfolio();
+        portfolio.add("90", "BTC", Crypto.parseFixed("0.5"), Crypto.parseFixed("20000"));
+        portfolio.add("80", "ETH", Crypto.parseFixed("3"), Crypto.parseFixed("9000"));
+        new PortfolioStore(file).write(portfolio);
+
+        Portfolio read = new PortfolioStore(file).read();
+        assertEquals(2, read.size());
+        int btc = read.indexOf("90");
+        assertEquals("BTC", read.symbol(btc));
+        assertEquals(Crypto.parseFixed("0.5"), read.quantity(btc));
+        assertEquals(Crypto.parseFixed("29000"), read.getTotalCost());
+        // prices come from the next list
+        assertEquals(Portfolio.NO_PRICE, read.price(btc));
+    }
+
+    @Test
+    public void store_readsADamagedFileAsEmpty() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {0x50, 0x46, 0x4f, 0x4c, 0, 0, 0, 1, 0, 0, 0, 5});
+        }
+        assertEquals(0, new PortfolioStore(file).read().size());
+    }
+
+    private static TickerSnapshot snapshot(String btcPrice, String ethPrice) {
+        return TickerSnapshot.of(new Crypto[] {
+                new Crypto("90", "BTC", "Bitcoin", btcPrice, "0", "0"),
+                new Crypto("80", "ETH", "Ethereum", ethPrice, "0", "0"),
+        }, 1);
+    }
+}
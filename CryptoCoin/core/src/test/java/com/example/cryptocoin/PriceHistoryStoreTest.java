@@ -0,0 +1,216 @@
+package com.example.cryptocoin;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the per-coin price history
+ */
+public class PriceHistoryStoreTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // a whole day, so buckets line up with the start
+    private static final long START = 19000 * DAY;
+    // as many points as the detail screen's chart asks for
+    private static final int CHART_POINTS = 200;
+
+    private File dir;
+    private PriceHistoryStore store;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = File.createTempFile("price", ".history");
+        dir.delete();
+        store = new PriceHistoryStore(dir, 2);
+    }
+
+    @After
+    public void deleteDir() {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void query_returnsTheTicksInRange() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            store.append("90", START + i * 1000, 100 + i);
+        }
+
+        long[] times = new long[20];
+        long[] prices = new long[20];
+        int count = store.query("90", START + 2000, START + 5000, times, prices);
+
+        assertEquals(4, count);
+        assertEquals(START + 2000, times[0]);
+        assertEquals(102, prices[0]);
+        assertEquals(105, prices[3]);
+        assertEquals(0, store.query("80", START, START + 10000, times, prices));
+    }
+
+    @Test
+    public void append_dropsTicksOlderThanTheLast() throws IOException {
+        store.append("90", START + 2000, 1);
+        store.append("90", START + 1000, 2);
+        store.append("90", START + 2000, 3);
+
+        long[] times = new long[4];
+        long[] prices = new long[4];
+        assertEquals(2, store.query("90", START, START + 5000, times, prices));
+        assertEquals(1, prices[0]);
+        assertEquals(3, prices[1]);
+    }
+
+    @Test
+    public void query_samplesEvenlyAndKeepsTheLatestPoint() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            store.append("90", START + i, i);
+        }
+
+        long[] times = new long[300];
+        long[] prices = new long[300];
+        int count = store.query("90", START, START + 999, times, prices);
+
+        // every 4th tick fits
+        assertEquals(250, count);
+        assertEquals(999, prices[count - 1]);
+        assertEquals(3, prices[0]);
+        assertEquals(7, prices[1]);
+    }
+
+    @Test
+    public void compact_rollsOldTicksIntoMinutesAndHours() throws IOException {
+        // two ticks in each of the first two minutes
+        store.append("90", START, 10);
+        store.append("90", START + 20 * 1000, 30);
+        store.append("90", START + MINUTE, 5);
+        store.append("90", START + MINUTE + 20 * 1000, 7);
+
+        store.compact(START + 2 * DAY);
+        long[] times = new long[10];
+        long[] prices = new long[10];
+        assertEquals(2, store.query("90", START, START + DAY, times, prices));
+        assertEquals(START, times[0]);
+        assertEquals(30, prices[0]);
+        assertEquals(START + MINUTE, times[1]);
+        assertEquals(7, prices[1]);
+
+        // a week later both minutes are one hour, closing at the last price
+        store.compact(START + 9 * DAY);
+        assertEquals(1, store.query("90", START, START + DAY, times, prices));
+        assertEquals(START, times[0]);
+        assertEquals(7, prices[0]);
+    }
+
+    @Test
+    public void query_joinsResolutionsOldestFirst() throws IOException {
+        store.append("90", START, 1);
+        store.append("90", START + 2 * DAY, 2);
+        store.compact(START + 2 * DAY);
+        store.append("90", START + 2 * DAY + 1000, 3);
+
+        long[] times = new long[10];
+        long[] prices = new long[10];
+        assertEquals(3, store.query("90", START, START + 3 * DAY, times, prices));
+        assertEquals(1, prices[0]);
+        assertEquals(2, prices[1]);
+        assertEquals(3, prices[2]);
+    }
+
+    @Test
+    public void record_keepsTheTopCoinsAndSurvivesReopening() throws IOException {
+        Crypto[] cryptos = {
+                new Crypto("90", "BTC", "Bitcoin", "41230.55", "-1.32", "0.21"),
+                new Crypto("80", "ETH", "Ethereum", "2700.1", "3.5", "-0.02"),
+                new Crypto("7", "X/Y", "Third", "1", "0", "0"),
+        };
+        store.record(TickerSnapshot.of(cryptos, START));
+        store.close();
+
+        PriceHistoryStore reopened = new PriceHistoryStore(dir, 2);
+        long[] times = new long[4];
+        long[] prices = new long[4];
+        assertEquals(1, reopened.query("80", START, START, times, prices));
+        assertEquals(270010000000L, prices[0]);
+        // only the top two coins are recorded
+        assertEquals(0, reopened.query("7", START, START, times, prices));
+        reopened.close();
+    }
+
+    @Test
+    public void fileKey_replacesCharactersUnsafeInFileNames() {
+        assertEquals("wrapped-btc_1", PriceHistoryStore.fileKey("wrapped-btc_1"));
+        assertEquals("a_b__", PriceHistoryStore.fileKey("a/b.."));
+    }
+
+    @Test
+    public void record_keepsEveryRecordedCoinOpenBetweenRefreshes() throws IOException {
+        store.close();
+        store = new PriceHistoryStore(dir, 100);
+        Crypto[] cryptos = new Crypto[150];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, "1.5", "0", "0");
+        }
+        store.record(TickerSnapshot.of(cryptos, START));
+        int mappedByFirst = store.getMappedCount();
+        store.record(TickerSnapshot.of(cryptos, START + MINUTE));
+        store.record(TickerSnapshot.of(cryptos, START + 2 * MINUTE));
+
+        // only the top 100 are recorded, and later refreshes reuse their open series
+        assertTrue(mappedByFirst >= 100);
+        assertEquals(mappedByFirst, store.getMappedCount());
+    }
+
+    @Test
+    public void record_holdsNoFilesOpenBetweenCalls() throws IOException {
+        File descriptors = new File("/proc/self/fd");
+        Assume.assumeTrue(descriptors.isDirectory());
+        store.close();
+        store = new PriceHistoryStore(dir, 100);
+        Crypto[] cryptos = new Crypto[100];
+        for (int i = 0; i < cryptos.length; i++) {
+            cryptos[i] = new Crypto(String.valueOf(i), "C" + i, "Coin " + i, "1.5", "0", "0");
+        }
+
+        int before = descriptors.list().length;
+        store.record(TickerSnapshot.of(cryptos, START));
+        store.record(TickerSnapshot.of(cryptos, START + MINUTE));
+
+        // every series stays mapped, but none keeps its file open; a little slack for the JVM
+        assertTrue(store.getMappedCount() >= 100);
+        assertTrue(descriptors.list().length - before < 10);
+    }
+
+    @Test
+    public void rangeQuery_overMonthsOfHistoryFillsTheChart() throws IOException {
+        // a tick a minute for 90 days, then compacted as the app would
+        int ticks = 90 * 24 * 60;
+        for (int i = 0; i < ticks; i++) {
+            store.append("90", START + i * MINUTE, 1000 + i % 500);
+        }
+        long end = START + ticks * MINUTE;
+        store.compact(end);
+
+        long[] times = new long[CHART_POINTS];
+        long[] prices = new long[CHART_POINTS];
+        int count = store.query("90", end - 7 * DAY, end, times, prices);
+
+        // a whole number of points are skipped between each one kept, so the chart may not be full
+        assertTrue(count > CHART_POINTS / 2 && count <= CHART_POINTS);
+        assertEquals(end - MINUTE, times[count - 1]);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests hedging and failing over between two local stand-ins for price APIs, whose delays and
+ * failures the tests control
+ */
+public class PriceSourceRouterTest {
+
+    private StubSource primary;
+    private StubSource backup;
+
+    @Before
+    public void setUp() throws IOException {
+        primary = new StubSource("1");
+        backup = new StubSource("2");
+    }
+
+    @After
+    public void tearDown() {
+        primary.stop();
+        backup.stop();
+    }
+
+    @Test
+    public void fastPrimary_isTheOnlySourceAsked() throws IOException {
+        PriceSourceRouter router = router(1000);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("1", price(router.fetchPage(0, 100)));
+        }
+        assertEquals(5, primary.hits.get());
+        assertEquals(0, backup.hits.get());
+        assertEquals(0, router.getHedges());
+        assertEquals(5, router.getPrimaryLatency().getCount());
+    }
+
+    @Test
+    public void slowPrimary_isHedgedAndTheBackupAnswers() throws IOException {
+        primary.delayMillis = 1000;
+        PriceSourceRouter router = router(50);
+
+        long start = System.nanoTime();
+        assertEquals("2", price(router.fetchPage(0, 100)));
+        long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + tookMillis + " ms", tookMillis < 800);
+        assertEquals(1, router.getHedges());
+        assertEquals(1, router.getBackupWins());
+        // the primary's lost request still counts towards its latency
+        assertEquals(1, router.getPrimaryLatency().getCount());
+    }
+
+    @Test
+    public void hedgeDelay_followsThePrimarysLatency() throws IOException {
+        PriceSourceRouter router = router(5000);
+        assertEquals(5000, router.getHedgeDelayMillis());
+        for (int i = 0; i < PriceSourceRouter.MIN_SAMPLES; i++) {
+            router.fetchPage(0, 100);
+        }
+        assertTrue(router.getHedgeDelayMillis() < 200);
+
+        // well past its usual latency, the backup is asked long before the default delay
+        primary.delayMillis = 2000;
+        long start = System.nanoTime();
+        assertEquals("2", price(router.fetchPage(0, 100)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        assertEquals(1, router.getHedges());
+    }
+
+    @Test
+    public void failingPrimary_failsOverWithoutWaitingForTheHedge() throws IOException {
+        primary.fail = true;
+        PriceSourceRouter router = router(5000);
+
+        long start = System.nanoTime();
+        assertEquals("2", price(router.fetchPage(0, 100)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(1, router.getFailovers());
+        assertEquals(0, router.getHedges());
+        // the failure isn't a latency, or the hedge delay would shrink towards it
+        assertEquals(0, router.getPrimaryLatency().getCount());
+        assertEquals(1, router.getBackupLatency().getCount());
+    }
+
+    @Test
+    public void failingBackup_waitsForTheSlowPrimary() throws IOException {
+        primary.delayMillis = 300;
+        backup.fail = true;
+        PriceSourceRouter router = router(20);
+
+        assertEquals("1", price(router.fetchPage(0, 100)));
+        assertEquals(1, router.getHedges());
+        assertEquals(0, router.getBackupWins());
+    }
+
+    @Test(expected = IOException.class)
+    public void bothFailing_fails() throws IOException {
+        primary.fail = true;
+        backup.fail = true;
+        router(20).fetchPage(0, 100);
+    }
+
+    @Test
+    public void pager_fetchesThroughTheRouter() throws IOException {
+        primary.delayMillis = 1000;
+        Crypto[] all = new TickerPager(router(20), 100, 1000).fetchAll(null).value;
+        assertEquals(1, all.length);
+        assertEquals("2", all[0].coinPrice);
+    }
+
+    @Test
+    public void histogram_readsPercentilesBackWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(0.95));
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        long p95 = histogram.percentileMicros(0.95);
+        assertTrue(String.valueOf(p95), p95 >= 95000 && p95 <= 95000 * 1.19);
+        long p50 = histogram.percentileMicros(0.5);
+        assertTrue(String.valueOf(p50), p50 >= 50000 && p50 <= 50000 * 1.19);
+        assertEquals(100000, histogram.percentileMicros(1));
+        assertEquals(100, histogram.getMaxMillis());
+    }
+
+    private PriceSourceRouter router(long defaultHedgeMillis) {
+        return new PriceSourceRouter(primary.source, backup.source, defaultHedgeMillis);
+    }
+
+    private static String price(HttpFetcher.Result<Crypto[]> result) {
+        return result.value[0].coinPrice;
+    }
+
+    /**
+     * A tickers endpoint that answers every page with one coin at a fixed price, after a delay
+     */
+    private static class StubSource {
+        final HttpServer server;
+        final PriceSource source;
+        final AtomicInteger hits = new AtomicInteger();
+        volatile long delayMillis;
+        volatile boolean fail;
+
+        StubSource(final String price) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/api/tickers/", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    hits.incrementAndGet();
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (fail) {
+                        exchange.sendResponseHeaders(503, -1);
+                        exchange.close();
+                        return;
+                    }
+                    byte[] body = ("{\"data\":[{\"id\":\"90\",\"symbol\":\"BTC\",\"name\":\"Bitcoin\",\"price_usd\":\""
+                            + price + "\",\"percent_change_24h\":\"0\",\"percent_change_1h\":\"0\"}]}")
+                            .getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+            });
+            server.start();
+            source = new CoinloreSource("stub" + price, new HttpFetcher(),
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/");
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests refresh timing with a fake clock, fetching from a local stand-in for the API
+ */
+public class RefreshSchedulerTest {
+
+    private static final long INTERVAL = 60000;
+    private static final long MAX_BACKOFF = 300000;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    // when set, the server holds every response until it is counted down
+    private volatile CountDownLatch release;
+
+    private final FakeClock clock = new FakeClock();
+    private RefreshScheduler scheduler;
+    // counted down whenever a refresh finishes
+    private volatile CountDownLatch finished;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/tickers/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                CountDownLatch latch = release;
+                if (latch != null) {
+                    await(latch);
+                }
+                byte[] body = ("{\"data\":[{\"symbol\":\"BTC\",\"name\":\"Bitcoin\",\"price_usd\":\"41230.55\","
+                        + "\"percent_change_24h\":\"-1.32\",\"percent_change_1h\":\"0.21\"}]}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/");
+        final HttpFetcher fetcher = new HttpFetcher();
+        scheduler = new RefreshScheduler(new RefreshScheduler.Refresh() {
+            @Override
+            public void start(final RefreshScheduler.Completion done) {
+                // fetch in the background like the app does, advancing the clock as "network time"
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean success;
+                        try {
+                            fetcher.fetch(url, new HttpFetcher.BodyParser<Crypto[]>() {
+                                @Override
+                                public Crypto[] parse(InputStream in) throws IOException {
+                                    return TickerParser.parse(in);
+                                }
+                            });
+                            success = true;
+                        } catch (IOException e) {
+                            success = false;
+                        }
+                        clock.advance(250);
+                        done.finished(success);
+                        finished.countDown();
+                    }
+                }).start();
+            }
+        }, clock, INTERVAL, MAX_BACKOFF);
+        scheduler.start();
+    }
+
+    @After
+    public void stopServer() {
+        CountDownLatch latch = release;
+        if (latch != null) {
+            latch.countDown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void tick_refreshesOncePerInterval() throws Exception {
+        assertTrue(tickAndWait());
+        assertEquals(1, requests.get());
+        assertEquals(250, scheduler.getLastLatencyMillis());
+        assertEquals(INTERVAL, scheduler.millisUntilDue());
+
+        clock.advance(INTERVAL - 1);
+        assertFalse(scheduler.tick());
+        assertEquals(1, scheduler.millisUntilDue());
+
+        clock.advance(1);
+        assertTrue(tickAndWait());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void tick_whileInFlight_isSkippedNotQueued() throws Exception {
+        release = new CountDownLatch(1);
+        finished = new CountDownLatch(1);
+        assertTrue(scheduler.tick());
+
+        // however late the response is, ticking again must not start a second request
+        for (int i = 0; i < 5; i++) {
+            clock.advance(INTERVAL);
+            assertFalse(scheduler.tick());
+        }
+        scheduler.refreshSoon();
+        assertFalse(scheduler.tick());
+        assertTrue(scheduler.isInFlight());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertEquals(6, scheduler.getSkippedTicks());
+        assertFalse(scheduler.isInFlight());
+    }
+
+    @Test
+    public void failures_backOffExponentiallyThenRecover() throws Exception {
+        status = 500;
+        assertTrue(tickAndWait());
+        assertEquals(1, scheduler.getFailures());
+        assertEquals(2 * INTERVAL, scheduler.millisUntilDue());
+
+        clock.advance(2 * INTERVAL);
+        assertTrue(tickAndWait());
+        assertEquals(4 * INTERVAL, scheduler.millisUntilDue());
+
+        clock.advance(4 * INTERVAL);
+        assertTrue(tickAndWait());
+        // 8 intervals would pass the limit
+        assertEquals(MAX_BACKOFF, scheduler.millisUntilDue());
+        assertEquals(3, scheduler.getConsecutiveFailures());
+
+        status = 200;
+        clock.advance(MAX_BACKOFF);
+        assertTrue(tickAndWait());
+        assertEquals(0, scheduler.getConsecutiveFailures());
+        assertEquals(3, scheduler.getFailures());
+        assertEquals(INTERVAL, scheduler.millisUntilDue());
+    }
+
+    @Test
+    public void stop_pausesUntilStartedAgain() throws Exception {
+        assertTrue(tickAndWait());
+        scheduler.stop();
+
+        clock.advance(10 * INTERVAL);
+        assertFalse(scheduler.tick());
+        assertEquals(1, requests.get());
+
+        // a refresh that became due while stopped runs on the first tick after starting
+        scheduler.start();
+        assertTrue(tickAndWait());
+        assertEquals(2, requests.get());
+        assertEquals(0, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void refreshSoon_makesARefreshDueNow() throws Exception {
+        assertTrue(tickAndWait());
+        assertFalse(scheduler.tick());
+
+        scheduler.refreshSoon();
+        assertEquals(0, scheduler.millisUntilDue());
+        assertTrue(tickAndWait());
+        assertEquals(2, scheduler.getRefreshes());
+    }
+
+    private boolean tickAndWait() throws InterruptedException {
+        finished = new CountDownLatch(1);
+        if (!scheduler.tick()) {
+            return false;
+        }
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        return true;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Clock that only moves when the test moves it
+     */
+    private static class FakeClock implements RefreshScheduler.Clock {
+        private long now = 1000;
+
+        @Override
+        public synchronized long nowMillis() {
+            return now;
+        }
+
+        synchronized void advance(long millis) {
+            now += millis;
+        }
+    }
+}
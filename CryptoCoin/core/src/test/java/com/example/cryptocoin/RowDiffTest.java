@@ -0,0 +1,56 @@
+package com.example.cryptocoin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for finding the rows a refresh changed
+ */
+public class RowDiffTest {
+
+    private static final int[] IN_ORDER = {0, 1, 2};
+
+    @Test
+    public void changedPositions_findsRowsWithNewPricesOrChanges() {
+        CryptoRows before = rows("41000", "-1.5", "2700");
+        CryptoRows after = rows("41000", "-1.2", "2750");
+        int[] changed = new int[3];
+
+        assertEquals(2, RowDiff.changedPositions(before, IN_ORDER, after, IN_ORDER, changed));
+        assertEquals(0, changed[0]);
+        assertEquals(1, changed[1]);
+        assertEquals(0, RowDiff.changedPositions(before, IN_ORDER, before, IN_ORDER, changed));
+    }
+
+    @Test
+    public void changedPositions_givesUpWhenCoinsMoveOrChange() {
+        CryptoRows before = rows("41000", "-1.5", "2700");
+        int[] changed = new int[3];
+
+        assertEquals(-1, RowDiff.changedPositions(before, IN_ORDER, before, new int[] {1, 0, 2}, changed));
+        assertEquals(-1, RowDiff.changedPositions(before, IN_ORDER, before, new int[] {0, 1}, changed));
+    }
+
+    @Test
+    public void changedPositions_onlyLooksAtThePositionsInUse() {
+        CryptoRows before = rows("41000", "-1.5", "2700");
+        CryptoRows after = rows("41000", "-1.5", "2750");
+        int[] changed = new int[3];
+        // what is past the count is left over from an earlier list
+        int[] reused = {0, 1, 0};
+
+        assertEquals(1, RowDiff.changedPositions(before, IN_ORDER, 2, after, reused, 2, changed));
+        assertEquals(1, changed[0]);
+        assertEquals(-1, RowDiff.changedPositions(before, IN_ORDER, 3, after, reused, 2, changed));
+        assertEquals(-1, RowDiff.changedPositions(before, IN_ORDER, 3, after, reused, 3, changed));
+    }
+
+    private static CryptoRows rows(String btcPrice, String btcChange, String ethPrice) {
+        return TickerSnapshot.of(new Crypto[] {
+                new Crypto("90", "BTC", "Bitcoin", btcPrice, btcChange, "0"),
+                new Crypto("80", "ETH", "Ethereum", ethPrice, "0.5", "0"),
+                new Crypto("2", "DOGE", "Dogecoin", "0.13", "1", "0"),
+        }, 1).rows;
+    }
+}
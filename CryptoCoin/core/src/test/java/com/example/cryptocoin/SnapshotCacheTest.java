@@ -0,0 +1,93 @@
+package com.example.cryptocoin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the on-disk snapshot cache
+ */
+public class SnapshotCacheTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("ticker", ".snapshot");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void read_returnsNullWithoutAFile() {
+        assertNull(new SnapshotCache(file).read());
+    }
+
+    @Test
+    public void write_thenRead_roundTripsEveryField() throws IOException {
+        Crypto[] cryptos = {
+                new Crypto("BTC", "Bitcoin", "41230.55", "-1.32", "0.21"),
+                new Crypto("80", "\u00c9TH", "Ether \u2603", "2700.1", "3.5", "-0.02"),
+        };
+        new SnapshotCache(file).write(TickerSnapshot.of(cryptos, 1646820000000L));
+
+        TickerSnapshot read = new SnapshotCache(file).read();
+
+        assertNotNull(read);
+        assertEquals(1646820000000L, read.fetchedAt);
+        assertEquals(2, read.rows.size());
+        assertEquals("80", read.rows.id(1));
+        assertEquals("\u00c9TH", read.rows.symbol(1));
+        assertEquals("Ether \u2603", read.rows.name(1));
+        assertEquals("2700.1", read.rows.priceText(1));
+        assertEquals(270010000000L, read.rows.priceFixed(1));
+        assertEquals(3.5, read.rows.dailyChange(1), 0);
+        assertEquals("+3.5%", read.rows.dailyChangeText(1));
+        assertEquals(-0.02, read.rows.hourlyChange(1), 0);
+        assertEquals("-0.02%", read.rows.hourlyChangeText(1));
+        assertTrue(read.rows.hourlyNegative(1));
+    }
+
+    @Test
+    public void read_returnsNullForADamagedFile() throws IOException {
+        Crypto[] cryptos = { new Crypto("BTC", "Bitcoin", "41230.55", "-1.32", "0.21") };
+        new SnapshotCache(file).write(TickerSnapshot.of(cryptos, 1L));
+
+        // cut the file off part way through the record
+        byte[] truncated = new byte[(int) file.length() - 4];
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertEquals(truncated.length, in.read(truncated));
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(truncated);
+        }
+
+        assertNull(new SnapshotCache(file).read());
+    }
+
+    @Test
+    public void read_returnsNullForACountLargerThanTheFile() throws IOException {
+        Crypto[] cryptos = { new Crypto("BTC", "Bitcoin", "41230.55", "-1.32", "0.21") };
+        new SnapshotCache(file).write(TickerSnapshot.of(cryptos, 1L));
+
+        // the count follows the magic, version and fetch time
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4 + 4 + 8);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(new SnapshotCache(file).read());
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the paged ticker download against a local stub of the coinlore API
+ */
+public class TickerPagerTest {
+
+    private HttpServer server;
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    private volatile int totalCoins;
+    private volatile long latencyMs;
+    // pages starting at or after this fail with a server error
+    private volatile int failFrom = Integer.MAX_VALUE;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/tickers/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                queries.add(query);
+                int start = Integer.parseInt(param(query, "start"));
+                int limit = Integer.parseInt(param(query, "limit"));
+                sleep(latencyMs);
+                if (start >= failFrom) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] body = page(start, Math.min(limit, Math.max(0, totalCoins - start)));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetchAll_requestsPagesUntilAShortPage() throws IOException {
+        totalCoins = 250;
+
+        final List<Integer> starts = new ArrayList<>();
+        Crypto[] all = pager(100, 10000).fetchAll(new TickerPager.PageListener() {
+            @Override
+            public void onPage(Crypto[] page, int start) {
+                starts.add(start);
+                assertEquals("C" + start, page[0].coinSymbol);
+            }
+        }).value;
+
+        assertEquals(250, all.length);
+        assertEquals("C249", all[249].coinSymbol);
+        assertEquals(3, starts.size());
+        assertEquals(Integer.valueOf(200), starts.get(2));
+        assertEquals("start=0&limit=100", queries.get(0));
+        assertEquals("start=200&limit=100", queries.get(2));
+    }
+
+    @Test
+    public void fetchAll_stopsAtMaxCoins() throws IOException {
+        totalCoins = 1000;
+
+        Crypto[] all = pager(100, 150).fetchAll(null).value;
+
+        assertEquals(150, all.length);
+        assertEquals(2, queries.size());
+        assertEquals("start=100&limit=50", queries.get(1));
+    }
+
+    @Test
+    public void fetchAll_firstPageArrivesBeforeTheRest() throws IOException {
+        totalCoins = 500;
+        latencyMs = 60;
+
+        final long begin = System.nanoTime();
+        final long[] firstPageAt = {-1};
+        pager(100, 10000).fetchAll(new TickerPager.PageListener() {
+            @Override
+            public void onPage(Crypto[] page, int start) {
+                if (start == 0) {
+                    firstPageAt[0] = System.nanoTime() - begin;
+                }
+            }
+        });
+        long total = System.nanoTime() - begin;
+
+        // five pages at 60ms each, the first one must not wait for the other four
+        assertTrue(firstPageAt[0] > 0);
+        assertTrue("first page after " + firstPageAt[0] + "ns of " + total, firstPageAt[0] < total / 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchAll_failsWhenTheFirstPageFails() throws IOException {
+        server.stop(0);
+        pager(100, 10000).fetchAll(null);
+    }
+
+    @Test
+    public void fetchAll_failsWhenALaterPageFails() throws IOException {
+        totalCoins = 1000;
+        failFrom = 200;
+        final List<Integer> starts = new ArrayList<>();
+        try {
+            pager(100, 10000).fetchAll(new TickerPager.PageListener() {
+                @Override
+                public void onPage(Crypto[] page, int start) {
+                    starts.add(start);
+                }
+            });
+            fail("expected the third page to fail the fetch");
+        } catch (IOException expected) {
+            // the list is incomplete, so it isn't returned
+        }
+        assertEquals(2, starts.size());
+    }
+
+    private TickerPager pager(int pageSize, int maxCoins) {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/";
+        return new TickerPager(new HttpFetcher(), base, pageSize, maxCoins);
+    }
+
+    private static byte[] page(int start, int count) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < count; i++) {
+            int n = start + i;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(n).append("\",\"symbol\":\"C").append(n)
+                    .append("\",\"name\":\"Coin ").append(n).append("\",\"price_usd\":\"").append(n + 1)
+                    .append(".5\",\"percent_change_24h\":\"1.0\",\"percent_change_1h\":\"-0.1\"}");
+        }
+        json.append("],\"info\":{\"coins_num\":").append(count).append("}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String param(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.cryptocoin;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming ticker parser
+ */
+public class TickerParserTest {
+
+    // one entry as captured from https://api.coinlore.net/api/tickers/
+    private static final String CAPTURED_ENTRY = "{\"id\":\"90\",\"symbol\":\"BTC\",\"name\":\"Bitcoin\","
+            + "\"nameid\":\"bitcoin\",\"rank\":1,\"price_usd\":\"41230.55\",\"percent_change_24h\":\"-1.32\","
+            + "\"percent_change_1h\":\"0.21\",\"percent_change_7d\":\"4.86\",\"price_btc\":\"1.00\","
+            + "\"market_cap_usd\":\"781553246105.46\",\"volume24\":21430829370.12,\"volume24a\":24568711553.84,"
+            + "\"csupply\":\"18956012.00\",\"tsupply\":\"18956012\",\"msupply\":\"21000000\"}";
+
+    @Test
+    public void parse_readsDisplayedFields() throws IOException {
+        String payload = "{\"data\":[" + CAPTURED_ENTRY + "],\"info\":{\"coins_num\":1,\"time\":1646820000}}";
+
+        Crypto[] cryptos = TickerParser.parse(new StringReader(payload));
+
+        assertEquals(1, cryptos.length);
+        assertEquals("90", cryptos[0].coinId);
+        assertEquals("BTC", cryptos[0].coinSymbol);
+        assertEquals("Bitcoin", cryptos[0].coinName);
+        assertEquals("41230.55", cryptos[0].coinPrice);
+        assertEquals(-1.32, cryptos[0].dailyPercentageChange, 0);
+        assertEquals(0.21, cryptos[0].hourlyPercentageChange, 0);
+    }
+
+    @Test
+    public void parse_readsTheSingleCoinEndpointsBareArray() throws IOException {
+        Crypto[] cryptos = TickerParser.parse(new StringReader("[" + CAPTURED_ENTRY + "]"));
+
+        assertEquals(1, cryptos.length);
+        assertEquals("90", cryptos[0].coinId);
+        assertEquals(4123055000000L, cryptos[0].priceFixed);
+    }
+
+    @Test
+    public void parse_handlesEscapesAndNestedValues() throws IOException {
+        String payload = "{ \"info\" : { \"nested\" : [1, {\"a\" : \"]}\"}] },\n \"data\" : [ "
+                + "{\"symbol\":\"X\\\"Y\",\"name\":\"Caf\\u00e9 \\/ Coin\",\"price_usd\":12.5,"
+                + "\"percent_change_24h\":\"3\",\"percent_change_1h\":-0.5,\"extra\":{\"k\":[true,null]}} ] }";
+
+        Crypto[] cryptos = TickerParser.parse(new StringReader(payload));
+
+        assertEquals(1, cryptos.length);
+        assertEquals("X\"Y", cryptos[0].coinSymbol);
+        assertEquals("Caf\u00e9 / Coin", cryptos[0].coinName);
+        assertEquals("12.5", cryptos[0].coinPrice);
+        assertEquals("-0.5%", cryptos[0].hourlyChangeText);
+    }
+
+    @Test
+    public void parse_readsNullFieldsAsBlankOrNoChange() throws IOException {
+        String payload = "{\"data\":[" + CAPTURED_ENTRY + ",{\"id\":\"7\",\"symbol\":\"THN\",\"name\":null,"
+                + "\"price_usd\":null,\"percent_change_24h\":null,\"percent_change_1h\":\"0.5\"}]}";
+
+        Crypto[] cryptos = TickerParser.parse(new StringReader(payload));
+
+        assertEquals(2, cryptos.length);
+        assertEquals("7", cryptos[1].coinId);
+        assertEquals("", cryptos[1].coinName);
+        assertEquals(0, cryptos[1].priceFixed);
+        assertEquals(0, cryptos[1].dailyPercentageChange, 0);
+        assertEquals(0.5, cryptos[1].hourlyPercentageChange, 0);
+    }
+
+    @Test
+    public void parse_reportsWhereInTheStreamAnErrorIs() {
+        // long enough that the error is well past the first buffer
+        StringBuilder payload = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < 50; i++) {
+            payload.append(i == 0 ? "" : ",").append(CAPTURED_ENTRY);
+        }
+        int at = payload.length();
+        payload.append("}");
+
+        try {
+            TickerParser.parse(new StringReader(payload.toString()));
+            fail("expected the unclosed array to be rejected");
+        } catch (IOException e) {
+            assertEquals("Unexpected '}' at character " + at, e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsTruncatedPayload() throws IOException {
+        TickerParser.parse(new StringReader("{\"data\":[" + CAPTURED_ENTRY.substring(0, 40)));
+    }
+
+    @Test
+    public void parse_largePayloadAllocatesLessThanThePayload() throws IOException {
+        // the old Scanner + JSONObject path held the payload at least three times over
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int coins = 10000;
+        StringBuilder builder = new StringBuilder(coins * (CAPTURED_ENTRY.length() + 1) + 64);
+        builder.append("{\"data\":[");
+        for (int i = 0; i < coins; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(CAPTURED_ENTRY);
+        }
+        builder.append("],\"info\":{\"coins_num\":").append(coins).append("}}");
+        String payload = builder.toString();
+        long payloadBytes = payload.length() * 2L;
+        assertTrue(payloadBytes > 4 * 1024 * 1024);
+
+        final int[] count = {0};
+        TickerParser.Callback counter = new TickerParser.Callback() {
+            @Override
+            public void onCrypto(Crypto crypto) {
+                count[0]++;
+            }
+        };
+
+        // warm up once so class loading is not counted
+        TickerParser.parse(new StringReader(payload), counter);
+        count[0] = 0;
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        TickerParser.parse(new StringReader(payload), counter);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(coins, count[0]);
+        // only the coins themselves are allocated, which is less than a single copy of the payload
+        assertTrue("allocated " + allocated + " bytes for a " + payloadBytes + " byte payload",
+                allocated < payloadBytes);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.cryptocoin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the ticker pipeline outlives the activities listening to it, using a local
+ * stand-in for the API. Removing one listener and adding another stands in for a rotation
+ */
+public class TickerRepositoryTest {
+
+    private static final long INTERVAL = 60 * 60 * 1000L;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    // when set, the server holds every response until it is counted down
+    private volatile CountDownLatch release;
+    // when set, every page after the first fails with a server error
+    private volatile boolean failLaterPages;
+    private File cacheFile;
+    private TickerRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/tickers/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if (failLaterPages && !exchange.getRequestURI().getQuery().startsWith("start=0&")) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                CountDownLatch latch = release;
+                if (latch != null) {
+                    try {
+                        latch.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = ("{\"data\":[{\"symbol\":\"BTC\",\"name\":\"Bitcoin\",\"price_usd\":\"41230.55\","
+                        + "\"percent_change_24h\":\"-1.32\",\"percent_change_1h\":\"0.21\"}]}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        cacheFile = File.createTempFile("ticker", ".snapshot");
+        cacheFile.delete();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/";
+        repository = new TickerRepository(new TickerPager(new HttpFetcher(), base, 100, 1000),
+                new SnapshotCache(cacheFile), RefreshScheduler.SYSTEM_CLOCK, INTERVAL, 4 * INTERVAL);
+    }
+
+    @After
+    public void tearDown() {
+        CountDownLatch latch = release;
+        if (latch != null) {
+            latch.countDown();
+        }
+        server.stop(0);
+        cacheFile.delete();
+    }
+
+    @Test
+    public void rotation_afterARefresh_doesNotFetchAgain() throws Exception {
+        RecordingListener first = new RecordingListener();
+        repository.addListener(first, DIRECT);
+        RefreshScheduler scheduler = repository.getScheduler();
+        scheduler.start();
+        assertTrue(scheduler.tick());
+        TickerSnapshot loaded = first.nextSnapshot();
+        assertEquals("BTC", loaded.rows.symbol(0));
+
+        // the old activity stops and goes away, the new one starts
+        scheduler.stop();
+        repository.removeListener(first);
+        RecordingListener second = new RecordingListener();
+        repository.addListener(second, DIRECT);
+        scheduler.start();
+        assertFalse(scheduler.tick());
+
+        assertSame(loaded, second.nextSnapshot());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void rotation_duringARefresh_joinsTheRefreshInFlight() throws Exception {
+        release = new CountDownLatch(1);
+        RecordingListener first = new RecordingListener();
+        repository.addListener(first, DIRECT);
+        RefreshScheduler scheduler = repository.getScheduler();
+        scheduler.start();
+        assertTrue(scheduler.tick());
+
+        scheduler.stop();
+        repository.removeListener(first);
+        RecordingListener second = new RecordingListener();
+        repository.addListener(second, DIRECT);
+        scheduler.start();
+        assertFalse(scheduler.tick());
+
+        release.countDown();
+        assertEquals("BTC", second.nextSnapshot().rows.symbol(0));
+        assertEquals(1, requests.get());
+        assertEquals(0, first.snapshots.size());
+        assertEquals(1, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void cancel_publishesNothingAndLeavesARefreshDue() throws Exception {
+        release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener();
+        repository.addListener(listener, DIRECT);
+        RefreshScheduler scheduler = repository.getScheduler();
+        scheduler.start();
+        assertTrue(scheduler.tick());
+
+        repository.cancel();
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.isInFlight() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(scheduler.isInFlight());
+        assertNull(listener.snapshots.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, listener.pages.get());
+        assertEquals(0, listener.failures.get());
+        assertNull(repository.getSnapshot());
+        assertEquals(0, scheduler.millisUntilDue());
+    }
+
+    @Test
+    public void firstListener_getsTheSavedSnapshotWithoutFetching() throws Exception {
+        Crypto[] saved = { new Crypto("ETH", "Ethereum", "2700.1", "3.5", "-0.02") };
+        new SnapshotCache(cacheFile).write(TickerSnapshot.of(saved, 1646820000000L));
+
+        RecordingListener listener = new RecordingListener();
+        repository.addListener(listener, DIRECT);
+
+        TickerSnapshot snapshot = listener.nextSnapshot();
+        assertEquals("ETH", snapshot.rows.symbol(0));
+        assertEquals(1646820000000L, snapshot.fetchedAt);
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void laterPageFailing_leavesTheSavedSnapshotAlone() throws Exception {
+        Crypto[] saved = { new Crypto("ETH", "Ethereum", "2700.1", "3.5", "-0.02") };
+        new SnapshotCache(cacheFile).write(TickerSnapshot.of(saved, 1646820000000L));
+        // one coin per page, so the server's single coin is a full page and a second is asked for
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/tickers/";
+        repository = new TickerRepository(new TickerPager(new HttpFetcher(), base, 1, 1000),
+                new SnapshotCache(cacheFile), RefreshScheduler.SYSTEM_CLOCK, INTERVAL, 4 * INTERVAL);
+        failLaterPages = true;
+
+        RecordingListener listener = new RecordingListener();
+        repository.addListener(listener, DIRECT);
+        TickerSnapshot snapshot = listener.nextSnapshot();
+        RefreshScheduler scheduler = repository.getScheduler();
+        scheduler.start();
+        assertTrue(scheduler.tick());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.failures.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, listener.failures.get());
+        assertEquals(2, requests.get());
+        assertNull(listener.snapshots.poll(200, TimeUnit.MILLISECONDS));
+        assertSame(snapshot, repository.getSnapshot());
+        TickerSnapshot cached = new SnapshotCache(cacheFile).read();
+        assertEquals(1, cached.rows.size());
+        assertEquals("ETH", cached.rows.symbol(0));
+        assertEquals(1646820000000L, cached.fetchedAt);
+    }
+
+    /**
+     * Listener that records what it receives
+     */
+    private static class RecordingListener implements TickerRepository.Listener {
+        final LinkedBlockingQueue<TickerSnapshot> snapshots = new LinkedBlockingQueue<>();
+        final AtomicInteger pages = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void onPage(Crypto[] page, int start) {
+            pages.incrementAndGet();
+        }
+
+        @Override
+        public void onSnapshot(TickerSnapshot snapshot, CryptoSearchIndex searchIndex, CryptoSortOrders sortOrders) {
+            assertTrue(searchIndex.indexes(snapshot.rows));
+            assertTrue(sortOrders.sorts(snapshot.rows));
+            snapshots.add(snapshot);
+        }
+
+        @Override
+        public void onRefreshFailed(IOException e) {
+            failures.incrementAndGet();
+        }
+
+        TickerSnapshot nextSnapshot() throws InterruptedException {
+            TickerSnapshot snapshot = snapshots.poll(5, TimeUnit.SECONDS);
+            assertNotNull(snapshot);
+            return snapshot;
+        }
+    }
+}